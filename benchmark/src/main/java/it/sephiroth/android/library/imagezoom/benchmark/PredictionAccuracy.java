@@ -0,0 +1,315 @@
+package it.sephiroth.android.library.imagezoom.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import it.sephiroth.android.library.imagezoom.core.TouchPredictor;
+import it.sephiroth.android.library.imagezoom.core.TouchTrace;
+
+/**
+ * Replays one finger drags and reports how far the image is from the finger when every frame is presented,
+ * with and without the {@link TouchPredictor}:
+ * <pre>
+ *   ./gradlew :benchmark:predictionAccuracy
+ *   ./gradlew :benchmark:predictionAccuracy -Ptraces=pan.trace,swipe.trace
+ * </pre>
+ * Traces are the files written by {@link TouchTrace#writeTo}, recorded on a device with
+ * <code>ImageViewTouch.startGestureRecording()</code>; the multi touch parts of a trace are skipped. Without
+ * traces a fixed set of synthetic drags is generated, from a fixed seed, so results are comparable between runs.<br />
+ * The events received up to a vsync are applied to its frame, which is presented one frame interval later.
+ * The finger position at presentation time is interpolated from the samples. The error is reported in pixels,
+ * and as latency: the error divided by the finger speed.
+ */
+public final class PredictionAccuracy {
+    private static final long FRAME_NANOS = 16666667L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final int PERCENTILE = 95;
+
+    // synthetic drags: touch sampling, in milliseconds, and noise
+    private static final int SAMPLE_INTERVAL_MS = 8;
+    private static final float POSITION_NOISE = 0.3f;
+    private static final long SEED = 42;
+
+    private PredictionAccuracy() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final List<Drag> drags = new ArrayList<>();
+        if (args.length == 0) {
+            addSyntheticDrags(drags);
+        } else {
+            for (String path : args) {
+                readTrace(path, drags);
+            }
+        }
+
+        System.out.println(String.format(Locale.US, "%-24s %6s | %-30s | %-30s", "drag", "frames",
+            "no prediction: mean p95 max ms", "prediction: mean p95 max ms"));
+        final Stats totalPlain = new Stats();
+        final Stats totalPredicted = new Stats();
+        for (Drag drag : drags) {
+            final Stats plain = new Stats();
+            final Stats predicted = new Stats();
+            replay(drag, plain, predicted);
+            totalPlain.addAll(plain);
+            totalPredicted.addAll(predicted);
+            print(drag.mName, plain, predicted);
+        }
+        print("total", totalPlain, totalPredicted);
+    }
+
+    private static void print(String name, Stats plain, Stats predicted) {
+        System.out.println(String.format(Locale.US, "%-24s %6d | %s | %s", name, plain.mCount, plain, predicted));
+    }
+
+    static void replay(Drag drag, Stats plain, Stats predicted) {
+        final TouchPredictor predictor = new TouchPredictor();
+        final float[] prediction = new float[2];
+        final float[] truth = new float[2];
+        final int count = drag.mTimes.length;
+        int next = 0;
+
+        // vsyncs are not aligned to the touch samples
+        for (long vsync = drag.mTimes[0] + FRAME_NANOS / 2; vsync + FRAME_NANOS <= drag.mTimes[count - 1];
+             vsync += FRAME_NANOS) {
+            while (next < count && drag.mTimes[next] <= vsync) {
+                predictor.addSample(drag.mTimes[next], drag.mX[next], drag.mY[next]);
+                next++;
+            }
+
+            final long presentation = vsync + FRAME_NANOS;
+            final float speed = drag.getPosition(presentation, truth);
+            final float x = drag.mX[next - 1];
+            final float y = drag.mY[next - 1];
+            predictor.predict(presentation, prediction);
+
+            plain.add(distance(truth[0] - x, truth[1] - y), speed);
+            predicted.add(distance(truth[0] - x - prediction[0], truth[1] - y - prediction[1]), speed);
+        }
+    }
+
+    private static float distance(float dx, float dy) {
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static void addSyntheticDrags(List<Drag> drags) {
+        final Random random = new Random(SEED);
+        final int constant = 600;
+        final int swipe = 400;
+        final int reversal = 1600;
+        final int circle = 1000;
+        final int stop = 900;
+
+        Drag drag = new Drag("constant speed", constant / SAMPLE_INTERVAL_MS);
+        for (int i = 0; i < drag.mTimes.length; i++) {
+            final float t = sampleTime(drag, i, random);
+            drag.mX[i] = 1.2f * t;
+            drag.mY[i] = 0.4f * t;
+        }
+        drags.add(addNoise(drag, random));
+
+        drag = new Drag("accelerating swipe", swipe / SAMPLE_INTERVAL_MS);
+        for (int i = 0; i < drag.mTimes.length; i++) {
+            final float t = sampleTime(drag, i, random);
+            drag.mX[i] = 0.006f * t * t;
+            drag.mY[i] = 0;
+        }
+        drags.add(addNoise(drag, random));
+
+        drag = new Drag("direction reversals", reversal / SAMPLE_INTERVAL_MS);
+        for (int i = 0; i < drag.mTimes.length; i++) {
+            final float t = sampleTime(drag, i, random);
+            drag.mX[i] = 200 * (float) Math.sin(2 * Math.PI * t / 800);
+            drag.mY[i] = 0;
+        }
+        drags.add(addNoise(drag, random));
+
+        drag = new Drag("circle", circle / SAMPLE_INTERVAL_MS);
+        for (int i = 0; i < drag.mTimes.length; i++) {
+            final float t = sampleTime(drag, i, random);
+            drag.mX[i] = 150 * (float) Math.cos(2 * Math.PI * t / circle);
+            drag.mY[i] = 150 * (float) Math.sin(2 * Math.PI * t / circle);
+        }
+        drags.add(addNoise(drag, random));
+
+        // the finger stops between 300 and 500 ms: no events are received meanwhile
+        drag = new Drag("stop and go", stop / SAMPLE_INTERVAL_MS);
+        int index = 0;
+        for (int i = 0; i < drag.mTimes.length; i++) {
+            final float t = sampleTime(drag, i, random);
+            if (t <= 300 || t >= 500) {
+                drag.mTimes[index] = drag.mTimes[i];
+                drag.mX[index] = t <= 300 ? t : 300 + (t - 500);
+                drag.mY[index] = 0;
+                index++;
+            }
+        }
+        drags.add(addNoise(drag.truncate(index), random));
+    }
+
+    // set the time of the i-th sample, with some jitter, and return it in milliseconds
+    private static float sampleTime(Drag drag, int i, Random random) {
+        final long jitter = i > 0 ? (long) (random.nextGaussian() * NANOS_PER_MILLI / 2) : 0;
+        drag.mTimes[i] = i * SAMPLE_INTERVAL_MS * NANOS_PER_MILLI + jitter;
+        return (float) drag.mTimes[i] / NANOS_PER_MILLI;
+    }
+
+    private static Drag addNoise(Drag drag, Random random) {
+        for (int i = 0; i < drag.mTimes.length; i++) {
+            drag.mX[i] += (float) random.nextGaussian() * POSITION_NOISE;
+            drag.mY[i] += (float) random.nextGaussian() * POSITION_NOISE;
+        }
+        return drag;
+    }
+
+    /**
+     * Read the one finger drags of a trace written by {@link TouchTrace#writeTo}
+     */
+    static void readTrace(String path, List<Drag> drags) throws IOException {
+        final TouchTrace trace;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+            trace = TouchTrace.read(in);
+        } catch (IOException e) {
+            throw new IOException(path + " is not a supported gesture trace", e);
+        }
+
+        final int count = trace.getEventCount();
+        Drag drag = null;
+        int samples = 0;
+        for (int i = 0; i < count; i++) {
+            final int action = trace.getAction(i);
+            final int pointerCount = trace.getPointerCount(i);
+
+            if (action == TouchTrace.ACTION_DOWN) {
+                drag = new Drag(path + "#" + (drags.size() + 1), count);
+                samples = 0;
+            }
+            if (null != drag && pointerCount == 1 && (action == TouchTrace.ACTION_DOWN || action == TouchTrace.ACTION_MOVE
+                || action == TouchTrace.ACTION_UP)) {
+                drag.mTimes[samples] = trace.getEventTime(i) * NANOS_PER_MILLI;
+                drag.mX[samples] = trace.getX(i, 0);
+                drag.mY[samples] = trace.getY(i, 0);
+                samples++;
+            } else if (null != drag) {
+                // a second finger: the drag ends here
+                addTraceDrag(drag, samples, drags);
+                drag = null;
+            }
+            if (null != drag && action == TouchTrace.ACTION_UP) {
+                addTraceDrag(drag, samples, drags);
+                drag = null;
+            }
+        }
+    }
+
+    private static void addTraceDrag(Drag drag, int samples, List<Drag> drags) {
+        // long enough for at least a frame
+        if (samples > 1 && drag.mTimes[samples - 1] - drag.mTimes[0] > FRAME_NANOS * 2) {
+            drags.add(drag.truncate(samples));
+        }
+    }
+
+    /**
+     * The samples of a drag, times in nanoseconds
+     */
+    static final class Drag {
+        final String mName;
+        long[] mTimes;
+        float[] mX;
+        float[] mY;
+
+        Drag(String name, int count) {
+            mName = name;
+            mTimes = new long[count];
+            mX = new float[count];
+            mY = new float[count];
+        }
+
+        Drag truncate(int count) {
+            mTimes = Arrays.copyOf(mTimes, count);
+            mX = Arrays.copyOf(mX, count);
+            mY = Arrays.copyOf(mY, count);
+            return this;
+        }
+
+        /**
+         * Interpolate the position at the given time
+         *
+         * @return the speed at the given time, in pixels per millisecond
+         */
+        float getPosition(long time, float[] out) {
+            int i = 1;
+            while (i < mTimes.length - 1 && mTimes[i] < time) {
+                i++;
+            }
+            final float dt = mTimes[i] - mTimes[i - 1];
+            final float f = dt > 0 ? Math.max(0, Math.min(1, (time - mTimes[i - 1]) / dt)) : 1;
+            out[0] = mX[i - 1] + (mX[i] - mX[i - 1]) * f;
+            out[1] = mY[i - 1] + (mY[i] - mY[i - 1]) * f;
+            return dt > 0 ? distance(mX[i] - mX[i - 1], mY[i] - mY[i - 1]) / dt * NANOS_PER_MILLI : 0;
+        }
+    }
+
+    /**
+     * Distance between the finger and the image at every frame
+     */
+    static final class Stats {
+        int mCount;
+        float[] mErrors = new float[64];
+        double mErrorSum;
+        double mSpeedSum;
+
+        void add(float error, float speed) {
+            if (mCount == mErrors.length) {
+                mErrors = Arrays.copyOf(mErrors, mCount * 2);
+            }
+            mErrors[mCount++] = error;
+            mErrorSum += error;
+            mSpeedSum += speed;
+        }
+
+        void addAll(Stats other) {
+            for (int i = 0; i < other.mCount; i++) {
+                add(other.mErrors[i], 0);
+            }
+            mSpeedSum += other.mSpeedSum;
+        }
+
+        float getMean() {
+            return mCount > 0 ? (float) (mErrorSum / mCount) : 0;
+        }
+
+        float getPercentile(int percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            final float[] sorted = Arrays.copyOf(mErrors, mCount);
+            Arrays.sort(sorted);
+            return sorted[Math.min(mCount - 1, mCount * percentile / 100)];
+        }
+
+        float getMax() {
+            return getPercentile(100);
+        }
+
+        /**
+         * Returns the average error as the time, in milliseconds, the image is behind the finger
+         */
+        float getLatency() {
+            return mSpeedSum > 0 ? (float) (mErrorSum / mSpeedSum) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%6.2fpx %6.2fpx %6.2fpx %5.1f", getMean(), getPercentile(PERCENTILE), getMax(),
+                getLatency());
+        }
+    }
+}
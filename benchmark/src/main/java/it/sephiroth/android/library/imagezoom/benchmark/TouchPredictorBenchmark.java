@@ -0,0 +1,59 @@
+package it.sephiroth.android.library.imagezoom.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import it.sephiroth.android.library.imagezoom.core.TouchPredictor;
+
+/**
+ * Measures the cost of the {@link TouchPredictor} for every touch sample and every frame of a drag.
+ * See {@link PredictionAccuracy} for the accuracy of the prediction
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class TouchPredictorBenchmark {
+    private static final long SAMPLE_INTERVAL_NANOS = 8000000L;
+
+    private final TouchPredictor mPredictor = new TouchPredictor();
+    private final float[] mOut = new float[2];
+    // not final, so javac cannot fold the computations into constants
+    private float mSpeed = 1.5f;
+    private long mFrameOffsetNanos = 16666667L;
+    private long mTime;
+
+    @Setup
+    public void setup() {
+        mPredictor.reset();
+        for (int i = 0; i < 8; i++) {
+            addSample();
+        }
+    }
+
+    @Benchmark
+    public TouchPredictor addSample() {
+        mTime += SAMPLE_INTERVAL_NANOS;
+        final float position = mSpeed * mTime / 1000000f;
+        mPredictor.addSample(mTime, position, position / 2);
+        return mPredictor;
+    }
+
+    @Benchmark
+    public float[] predict() {
+        mPredictor.predict(mTime + mFrameOffsetNanos, mOut);
+        return mOut;
+    }
+}
@@ -0,0 +1,97 @@
+package it.sephiroth.android.library.imagezoom.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import it.sephiroth.android.library.imagezoom.core.FitMode;
+import it.sephiroth.android.library.imagezoom.core.LayoutState;
+import it.sephiroth.android.library.imagezoom.core.Transform;
+import it.sephiroth.android.library.imagezoom.core.ZoomEngine;
+
+/**
+ * Measures the {@link ZoomEngine} operations run by the views: the layout of new content,
+ * and every step of a pinch, pan, fling or double tap
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class ZoomEngineBenchmark {
+    @Param ({"FIT_TO_SCREEN", "FIT_IF_BIGGER", "NONE"})
+    public FitMode mode;
+
+    private final ZoomEngine mEngine = new ZoomEngine();
+    private final Transform mDestination = new Transform();
+    private final float[] mFocus = new float[2];
+    private final float[] mBounds = new float[4];
+    private final LayoutState mSavedState = new LayoutState();
+    // not final, so javac cannot fold the computations into constants
+    private float mViewWidth = 1080;
+    private float mViewHeight = 1920;
+    private float mPinchStep = 1.02f;
+    private float mPanStep = 12;
+    private int mStep;
+
+    @Setup
+    public void setup() {
+        mEngine.setViewPort(0, 0, mViewWidth, mViewHeight);
+        mEngine.setContentSize(4000, 3000);
+        mEngine.setFitMode(mode);
+        mEngine.layoutContent(null);
+        mEngine.saveState(mSavedState);
+    }
+
+    @Benchmark
+    public float layoutContent() {
+        mEngine.resetZoomLimits();
+        mEngine.layoutContent(null);
+        return mEngine.getScale();
+    }
+
+    /**
+     * The alternative to {@link #layoutContent()} when a gallery page is displayed again
+     */
+    @Benchmark
+    public boolean restoreState() {
+        return mEngine.restoreState(mSavedState);
+    }
+
+    @Benchmark
+    public float pinchStep() {
+        // zoom in and out, so the scale stays within the limits
+        final float step = (mStep++ & 32) == 0 ? mPinchStep : 1 / mPinchStep;
+        mEngine.zoomTo(mEngine.getScale() * step, mViewWidth / 3, mViewHeight / 3);
+        return mEngine.getScale();
+    }
+
+    @Benchmark
+    public Transform panStep() {
+        final float step = (mStep++ & 32) == 0 ? mPanStep : -mPanStep;
+        mEngine.panBy(step, step);
+        return mEngine.getDisplay();
+    }
+
+    @Benchmark
+    public float[] flingBounds() {
+        mEngine.getFlingBounds(mBounds);
+        return mBounds;
+    }
+
+    @Benchmark
+    public Transform zoomDestination() {
+        return mEngine.getZoomDestination(mEngine.getMaxScale(), mViewWidth / 2, mViewHeight / 2, mDestination, mFocus);
+    }
+}
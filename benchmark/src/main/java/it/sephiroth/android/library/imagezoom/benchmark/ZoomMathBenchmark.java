@@ -0,0 +1,113 @@
+package it.sephiroth.android.library.imagezoom.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import it.sephiroth.android.library.imagezoom.core.FitMode;
+import it.sephiroth.android.library.imagezoom.core.Transform;
+import it.sephiroth.android.library.imagezoom.core.TransformState;
+import it.sephiroth.android.library.imagezoom.core.ZoomMath;
+
+/**
+ * Measures the computations done by the image views on layout, on every zoom
+ * step and on every double tap. See {@link ZoomMath}
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class ZoomMathBenchmark {
+    // image sizes: smaller than the view, landscape and portrait bigger than the view
+    @Param ({"640x480", "4000x3000", "3000x6000"})
+    public String imageSize;
+
+    // not final, so javac cannot fold the computations into constants
+    private float mViewWidth = 1080;
+    private float mViewHeight = 1920;
+    private final Transform mBase = new Transform();
+    private final Transform mSupport = new Transform();
+    private final TransformState mState = new TransformState();
+    private final float[] mCenter = new float[2];
+    private float mImageWidth;
+    private float mImageHeight;
+    private float mScale;
+    private float mMinScale;
+    private float mMaxScale;
+
+    @Setup
+    public void setup() {
+        final String[] size = imageSize.split("x");
+        mImageWidth = Float.parseFloat(size[0]);
+        mImageHeight = Float.parseFloat(size[1]);
+
+        ZoomMath.getBaseTransform(mImageWidth, mImageHeight, 0, 0, mViewWidth, mViewHeight, mBase);
+        mMinScale = ZoomMath.computeMinZoom(mBase.getScaleX());
+        mMaxScale = ZoomMath.computeMaxZoom(mImageWidth, mImageHeight, mViewWidth, mViewHeight);
+        mScale = (mMinScale + mMaxScale) / 2;
+
+        mState.setImageSize(mImageWidth, mImageHeight);
+        mState.setViewPort(0, 0, mViewWidth, mViewHeight);
+        mState.getBase().set(mBase);
+        mState.invalidate();
+
+        // zoomed and dragged past the top left corner, so the clamping has to move it back
+        mSupport.postScale(mScale, mScale, mViewWidth / 2, mViewHeight / 2);
+        mSupport.postTranslate(mViewWidth / 2, mViewHeight / 2);
+    }
+
+    @Benchmark
+    public Transform baseTransform() {
+        return ZoomMath.getBaseTransform(mImageWidth, mImageHeight, 0, 0, mViewWidth, mViewHeight, mBase);
+    }
+
+    @Benchmark
+    public float defaultScale(FitModeState state) {
+        return ZoomMath.getDefaultScale(
+            state.mode, mBase.getScaleX(), mBase.getScaleY(), mImageWidth, mImageHeight, mViewWidth, mViewHeight);
+    }
+
+    @Benchmark
+    public float minZoom() {
+        return ZoomMath.computeMinZoom(mBase.getScaleX());
+    }
+
+    @Benchmark
+    public float maxZoom() {
+        return ZoomMath.computeMaxZoom(mImageWidth, mImageHeight, mViewWidth, mViewHeight);
+    }
+
+    @Benchmark
+    public float[] centerClamp() {
+        // a support transform other than the current one is never served from cache, like during an animation
+        mState.getCenter(mSupport, true, true, mCenter);
+        return mCenter;
+    }
+
+    @Benchmark
+    public float doubleTapTarget() {
+        final float step = ZoomMath.getDoubleTapStep(mMinScale, mMaxScale);
+        return ZoomMath.getDoubleTapTarget(mScale, step, mMaxScale, mMinScale);
+    }
+
+    /**
+     * Only the default scale depends on the fit mode
+     */
+    @State (Scope.Thread)
+    public static class FitModeState {
+        @Param ({"FIT_TO_SCREEN", "FIT_IF_BIGGER", "FIT_HEIGHT", "FIT_WIDTH", "NONE"})
+        public FitMode mode;
+    }
+}
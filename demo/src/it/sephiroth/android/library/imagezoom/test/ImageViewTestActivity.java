@@ -28,11 +28,15 @@ import it.sephiroth.android.library.imagezoom.ImageViewTouch.OnImageViewTouchDou
 import it.sephiroth.android.library.imagezoom.ImageViewTouch.OnImageViewTouchSingleTapListener;
 import it.sephiroth.android.library.imagezoom.ImageViewTouchBase.DisplayType;
 import it.sephiroth.android.library.imagezoom.ImageViewTouchBase.OnDrawableChangeListener;
+import it.sephiroth.android.library.imagezoom.graphics.BitmapPool;
+import it.sephiroth.android.library.imagezoom.graphics.FastBitmapDrawable;
+import it.sephiroth.android.library.imagezoom.utils.DecodeScheduler;
 import it.sephiroth.android.library.imagezoom.test.utils.DecodeUtils;
 
 public class ImageViewTestActivity extends Activity {
 
     private static final String LOG_TAG = "image-test";
+    private static final int PREVIEW_RATIO = 4;
 
     ImageViewTouch mImage;
     Button mButton1;
@@ -56,6 +60,14 @@ public class ImageViewTestActivity extends Activity {
         // set the default image display type
         mImage.setDisplayType(DisplayType.FIT_IF_BIGGER);
 
+        // replaced bitmaps are reused by the next decode operations
+        mImage.setBitmapPool(BitmapPool.getInstance());
+
+        // gesture changes are applied once per frame
+        mImage.setBatchedCommitsEnabled(true);
+        // resizes (multi-window, freeform) are laid out once per frame
+        mImage.setLayoutCoalescingDelay(0);
+
         mButton1 = (Button) findViewById(R.id.button);
         mButton2 = (Button) findViewById(R.id.button2);
         mCheckBox = (CheckBox) findViewById(R.id.checkbox1);
@@ -143,34 +155,93 @@ public class ImageViewTestActivity extends Activity {
                     size /= 3;
                 }
 
-                Bitmap bitmap = DecodeUtils.decode(this, imageUri, size, size);
-                Bitmap overlay = getOverlayBitmap("circle-black-medium.png");
+                Log.d(LOG_TAG, "screen size: " + metrics.widthPixels + "x" + metrics.heightPixels);
 
-                if (null != bitmap) {
-                    Log.d(LOG_TAG, "screen size: " + metrics.widthPixels + "x" + metrics.heightPixels);
-                    Log.d(LOG_TAG, "bitmap size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+                // release the current bitmap, so it can be reused by the decoder
+                mImage.clear();
 
-                    mImage.setOnDrawableChangedListener(
-                        new OnDrawableChangeListener() {
-                            @Override
-                            public void onDrawableChanged(final Drawable drawable) {
-                                Log.v(LOG_TAG, "image scale: " + mImage.getScale() + "/" + mImage.getMinScale());
-                                Log.v(LOG_TAG, "scale type: " + mImage.getDisplayType() + "/" + mImage.getScaleType());
+                // decode a small preview first, then the full image
+                final Uri uri = imageUri;
+                final int fullSize = size;
+                final int previewSize = size / PREVIEW_RATIO;
 
-                            }
+                // pending decodes of the previous image are no more needed
+                DecodeScheduler.getInstance().cancel(this);
+                DecodeScheduler.getInstance().submit(
+                    new BitmapDecodeTask(uri, previewSize) {
+                        @Override
+                        protected void onComplete(final Bitmap preview) {
+                            onPreviewDecoded(uri, preview, fullSize);
                         }
-                    );
-                    mImage.setImageBitmap(bitmap, null, -1, -1);
-
-                } else {
-                    Toast.makeText(this, "Failed to load the image", Toast.LENGTH_LONG).show();
-                }
+                    }
+                );
             }
             c.close();
             return;
         }
     }
 
+    void onPreviewDecoded(final Uri uri, final Bitmap preview, final int fullSize) {
+        if (null == preview) {
+            Toast.makeText(this, "Failed to load the image", Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        Log.d(LOG_TAG, "preview size: " + preview.getWidth() + "x" + preview.getHeight());
+
+        mImage.setOnDrawableChangedListener(
+            new OnDrawableChangeListener() {
+                @Override
+                public void onDrawableChanged(final Drawable drawable) {
+                    Log.v(LOG_TAG, "image scale: " + mImage.getScale() + "/" + mImage.getMinScale());
+                    Log.v(LOG_TAG, "scale type: " + mImage.getDisplayType() + "/" + mImage.getScaleType());
+
+                }
+            }
+        );
+        // reopening the same image restores the zoom it was left at
+        mImage.setImageDrawable(new FastBitmapDrawable(preview), uri.toString());
+
+        DecodeScheduler.getInstance().submit(
+            new BitmapDecodeTask(uri, fullSize) {
+                @Override
+                protected void onComplete(final Bitmap bitmap) {
+                    if (null != bitmap) {
+                        Log.d(LOG_TAG, "bitmap size: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+                        Log.d(LOG_TAG, "pool: " + BitmapPool.getInstance());
+
+                        // keep the current zoom and pan
+                        mImage.replaceImageBitmap(bitmap);
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * Decodes the given image in background
+     */
+    abstract class BitmapDecodeTask extends DecodeScheduler.Task<Bitmap> {
+        private final Uri mUri;
+        private final int mSize;
+
+        BitmapDecodeTask(final Uri uri, final int size) {
+            super(DecodeScheduler.PRIORITY_VISIBLE, ImageViewTestActivity.this);
+            mUri = uri;
+            mSize = size;
+        }
+
+        @Override
+        protected Bitmap doInBackground() {
+            return DecodeUtils.decode(ImageViewTestActivity.this, mUri, mSize, mSize);
+        }
+
+        @Override
+        protected void onCancelled(final Bitmap result) {
+            BitmapPool.getInstance().put(result);
+        }
+    }
+
     private Bitmap getOverlayBitmap(String name) {
         String file = null;
 
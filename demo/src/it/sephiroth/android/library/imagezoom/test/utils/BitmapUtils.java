@@ -1,7 +1,12 @@
 package it.sephiroth.android.library.imagezoom.test.utils;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import it.sephiroth.android.library.imagezoom.graphics.BitmapPool;
 
 /**
  * Various bitmap utilities
@@ -33,7 +38,7 @@ public class BitmapUtils {
 	 *           Desired maximum width of the result bitmap
 	 * @param destHeight
 	 *           Desired maximum height of the result bitmap
-	 * @return A new resized bitmap
+	 * @return A new resized bitmap, taken from the {@link BitmapPool} when possible
 	 * @throws OutOfMemoryError
 	 *            if the operation exceeds the available vm memory
 	 */
@@ -66,16 +71,29 @@ public class BitmapUtils {
 		}
 
 		if ( needsResize || rotation != 0 ) {
-			Bitmap output;
+			Matrix matrix = new Matrix();
+			matrix.postScale( (float) dstWidth / srcWidth, (float) dstHeight / srcHeight );
+			matrix.postRotate( rotation );
 
-			if ( rotation == 0 ) {
-				output = Bitmap.createScaledBitmap( input, dstWidth, dstHeight, true );
+			// move the rotated image back to the origin
+			RectF rect = new RectF( 0, 0, srcWidth, srcHeight );
+			matrix.mapRect( rect );
+			matrix.postTranslate( -rect.left, -rect.top );
+
+			final int width = Math.max( 1, Math.round( rect.width() ) );
+			final int height = Math.max( 1, Math.round( rect.height() ) );
+			final Bitmap.Config config = null != input.getConfig() ? input.getConfig() : Bitmap.Config.ARGB_8888;
+
+			Bitmap output = BitmapPool.getInstance().get( width, height, config );
+			if ( null == output ) {
+				output = Bitmap.createBitmap( width, height, config );
 			} else {
-				Matrix matrix = new Matrix();
-				matrix.postScale( (float) dstWidth / srcWidth, (float) dstHeight / srcHeight );
-				matrix.postRotate( rotation );
-				output = Bitmap.createBitmap( input, 0, 0, srcWidth, srcHeight, matrix, true );
+				output.eraseColor( Color.TRANSPARENT );
 			}
+			output.setHasAlpha( input.hasAlpha() );
+
+			Canvas canvas = new Canvas( output );
+			canvas.drawBitmap( input, matrix, new Paint( Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG ) );
 			return output;
 		} else
 			return input;
@@ -12,11 +12,23 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
+import android.os.Build;
+import it.sephiroth.android.library.imagezoom.graphics.BitmapPool;
 
 public class DecodeUtils {
 
+	// decode buffer of every decode thread
+	private static final ThreadLocal<byte[]> sTempStorage = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[16 * 1024];
+		}
+	};
+
 	/**
-	 * Try to load a {@link Bitmap} from the passed {@link Uri} ( a file, a content or an url )
+	 * Try to load a {@link Bitmap} from the passed {@link Uri} ( a file, a content or an url ).<br />
+	 * The source is opened only once: orientation, size and pixels are all read from the same stream,
+	 * which is rewound between the reads and when the decode is retried with a bigger sample size.
 	 * 
 	 * @param context	the current app context
 	 * @param uri	the image source
@@ -25,19 +37,22 @@ public class DecodeUtils {
 	 * @return	the loaded and resized bitmap, if success, or null if load was unsuccesful
 	 */
 	public static Bitmap decode( Context context, Uri uri, int maxW, int maxH ) {
-		InputStream stream = openInputStream( context, uri );
-		if ( null == stream ) {
+		InputStream source = openInputStream( context, uri );
+		if ( null == source ) {
 			return null;
 		}
-		
-		int orientation = ExifUtils.getExifOrientation( context, uri );
 
-		Bitmap bitmap = null;
-		int[] imageSize = new int[2];
-		final boolean decoded = decodeImageBounds( stream, imageSize );
-		IOUtils.closeSilently( stream );
+		final RewindableInputStream stream = new RewindableInputStream( source );
+		try {
+			final int orientation = ExifUtils.getExifOrientation( stream );
+			stream.rewind();
+
+			int[] imageSize = new int[2];
+			if ( !decodeImageBounds( stream, imageSize ) ) {
+				return null;
+			}
+			stream.rewind();
 
-		if ( decoded ) {
 			int sampleSize;
 			if( maxW < 0 || maxH < 0 ) {
 				sampleSize = 1;
@@ -47,14 +62,15 @@ public class DecodeUtils {
 
 			BitmapFactory.Options options = getDefaultOptions();
 			options.inSampleSize = sampleSize;
+			setReusableBitmap( options, imageSize[0], imageSize[1] );
 
-			bitmap = decodeBitmap( context, uri, options, maxW, maxH, orientation, 0 );
+			return decodeBitmap( stream, options, maxW, maxH, orientation, 0 );
+		} finally {
+			IOUtils.closeSilently( stream );
 		}
-
-		return bitmap;
 	}
 
-	static Bitmap decodeBitmap( Context context, Uri uri, BitmapFactory.Options options, int maxW, int maxH,
+	static Bitmap decodeBitmap( RewindableInputStream stream, BitmapFactory.Options options, int maxW, int maxH,
 			int orientation, int pass ) {
 
 		Bitmap bitmap = null;
@@ -65,18 +81,17 @@ public class DecodeUtils {
 			return null;
 		}
 
-		InputStream stream = openInputStream( context, uri );
-		if( null == stream ) return null;
-		
+		// every pass reads the image from the beginning
+		stream.rewind();
+
 		try {
 			// decode the bitmap via android BitmapFactory
 			bitmap = BitmapFactory.decodeStream( stream, null, options );
-			IOUtils.closeSilently( stream );
 
 			if ( bitmap != null ) {
 				if( maxW > 0 && maxH > 0 ) {
 					newBitmap = BitmapUtils.resizeBitmap( bitmap, maxW, maxH, orientation );
-					if ( bitmap != newBitmap ) {
+					if ( bitmap != newBitmap && !BitmapPool.getInstance().put( bitmap ) ) {
 						bitmap.recycle();
 					}
 					bitmap = newBitmap;
@@ -84,12 +99,19 @@ public class DecodeUtils {
 			}
 
 		} catch ( OutOfMemoryError error ) {
-			IOUtils.closeSilently( stream );
 			if ( null != bitmap ) {
 				bitmap.recycle();
 			}
 			options.inSampleSize += 1;
-			bitmap = decodeBitmap( context, uri, options, maxW, maxH, orientation, pass + 1 );
+			bitmap = decodeBitmap( stream, options, maxW, maxH, orientation, pass + 1 );
+		} catch ( IllegalArgumentException error ) {
+			// the pooled bitmap cannot be reused for this image
+			if ( null == options.inBitmap ) {
+				throw error;
+			}
+			BitmapPool.getInstance().put( options.inBitmap );
+			options.inBitmap = null;
+			bitmap = decodeBitmap( stream, options, maxW, maxH, orientation, pass + 1 );
 		}
 		return bitmap;
 
@@ -131,6 +153,27 @@ public class DecodeUtils {
 		return false;
 	}
 
+	/**
+	 * Assign to the passed options a bitmap from the {@link BitmapPool}, if available,
+	 * which can be reused as {@link BitmapFactory.Options#inBitmap}
+	 * 
+	 * @param options	the decode options, with the inSampleSize already set
+	 * @param width	the source image width
+	 * @param height	the source image height
+	 */
+	static void setReusableBitmap( BitmapFactory.Options options, int width, int height ) {
+		// before KitKat only bitmaps of the same size, decoded without sampling, can be reused
+		if ( Build.VERSION.SDK_INT < 19 && options.inSampleSize > 1 ) return;
+
+		final int sampleSize = Integer.highestOneBit( Math.max( 1, options.inSampleSize ) );
+		Bitmap bitmap = BitmapPool.getInstance().get( ( width + sampleSize - 1 ) / sampleSize,
+				( height + sampleSize - 1 ) / sampleSize, options.inPreferredConfig );
+
+		if ( null != bitmap ) {
+			options.inBitmap = bitmap;
+		}
+	}
+
 	private static int computeSampleSize( final int bitmapW, final int bitmapH, final int maxW, final int maxH,
 			final int orientation ) {
 		double w, h;
@@ -232,9 +275,12 @@ public class DecodeUtils {
 		options.inPreferredConfig = Bitmap.Config.ARGB_8888;
 		options.inDither = false;
 		options.inJustDecodeBounds = false;
+		// mutable bitmaps can be returned to the BitmapPool
+		options.inMutable = true;
 		options.inPurgeable = true;
 		options.inInputShareable = true;
-		options.inTempStorage = new byte[16 * 1024];
+		// reused by all the decodes of the current thread
+		options.inTempStorage = sTempStorage.get();
 		return options;
 	}	
 }
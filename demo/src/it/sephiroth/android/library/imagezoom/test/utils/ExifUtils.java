@@ -1,6 +1,8 @@
 package it.sephiroth.android.library.imagezoom.test.utils;
 
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.Context;
@@ -12,6 +14,15 @@ import android.provider.MediaStore.Images;
 
 public class ExifUtils {
 
+	private static final int JPEG_SOI = 0xFFD8;
+	private static final int JPEG_SOS = 0xFFDA;
+	private static final int JPEG_EOI = 0xFFD9;
+	private static final int JPEG_APP1 = 0xFFE1;
+	private static final int TIFF_LITTLE_ENDIAN = 0x4949;
+	private static final int TIFF_BIG_ENDIAN = 0x4D4D;
+	private static final int TAG_ORIENTATION = 0x0112;
+	private static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+
 	public static final String[] EXIF_TAGS = {
 		"FNumber", ExifInterface.TAG_DATETIME, "ExposureTime", ExifInterface.TAG_FLASH, ExifInterface.TAG_FOCAL_LENGTH,
 		"GPSAltitude", "GPSAltitudeRef", ExifInterface.TAG_GPS_DATESTAMP, ExifInterface.TAG_GPS_LATITUDE,
@@ -39,25 +50,101 @@ public class ExifUtils {
 	}
 
 	public static int getExifOrientation( final ExifInterface exif ) {
-		int degree = 0;
-
 		if ( exif != null ) {
-			final int orientation = exif.getAttributeInt( ExifInterface.TAG_ORIENTATION, -1 );
-			if ( orientation != -1 ) {
-				switch ( orientation ) {
-					case ExifInterface.ORIENTATION_ROTATE_90:
-						degree = 90;
-						break;
-					case ExifInterface.ORIENTATION_ROTATE_180:
-						degree = 180;
-						break;
-					case ExifInterface.ORIENTATION_ROTATE_270:
-						degree = 270;
-						break;
+			return getDegrees( exif.getAttributeInt( ExifInterface.TAG_ORIENTATION, -1 ) );
+		}
+		return 0;
+	}
+
+	/**
+	 * Return the rotation of the jpeg image read from the passed stream. Only the header of the image is read,
+	 * and the stream is not closed.
+	 * 
+	 * @param stream
+	 *           the image stream, at the beginning of the image
+	 * @return image orientation, 0 if not a jpeg image or if the orientation is not defined
+	 */
+	public static int getExifOrientation( final InputStream stream ) {
+		final DataInputStream in = new DataInputStream( stream );
+		try {
+			if ( in.readUnsignedShort() != JPEG_SOI ) return 0;
+
+			while ( true ) {
+				final int marker = in.readUnsignedShort();
+				if ( ( marker & 0xFF00 ) != 0xFF00 || marker == JPEG_SOS || marker == JPEG_EOI ) {
+					// the exif segment comes before the image data
+					return 0;
 				}
+
+				final int length = in.readUnsignedShort() - 2;
+				if ( length < 0 ) return 0;
+
+				if ( marker == JPEG_APP1 ) {
+					final byte[] segment = new byte[length];
+					in.readFully( segment );
+					final int orientation = parseOrientation( segment );
+					if ( orientation >= 0 ) {
+						return getDegrees( orientation );
+					}
+				} else if ( in.skip( length ) < length ) {
+					return 0;
+				}
+			}
+		} catch ( IOException e ) {
+			return 0;
+		}
+	}
+
+	// the orientation tag of an exif APP1 segment, -1 if not an exif segment
+	private static int parseOrientation( final byte[] segment ) {
+		final int tiff = EXIF_HEADER.length;
+		if ( segment.length < tiff + 8 ) return -1;
+		for ( int i = 0; i < tiff; i++ ) {
+			if ( segment[i] != EXIF_HEADER[i] ) return -1;
+		}
+
+		final int byteOrder = readShort( segment, tiff, false );
+		if ( byteOrder != TIFF_LITTLE_ENDIAN && byteOrder != TIFF_BIG_ENDIAN ) return -1;
+		final boolean littleEndian = byteOrder == TIFF_LITTLE_ENDIAN;
+
+		final int ifd = tiff + readInt( segment, tiff + 4, littleEndian );
+		if ( ifd < tiff || ifd + 2 > segment.length ) return -1;
+
+		final int count = readShort( segment, ifd, littleEndian );
+		for ( int i = 0; i < count; i++ ) {
+			final int entry = ifd + 2 + i * 12;
+			if ( entry + 12 > segment.length ) break;
+			if ( readShort( segment, entry, littleEndian ) == TAG_ORIENTATION ) {
+				// a SHORT value, stored in the entry
+				return readShort( segment, entry + 8, littleEndian );
 			}
 		}
-		return degree;
+		return 0;
+	}
+
+	private static int readShort( final byte[] data, int offset, boolean littleEndian ) {
+		final int b0 = data[offset] & 0xFF;
+		final int b1 = data[offset + 1] & 0xFF;
+		return littleEndian ? ( b1 << 8 ) | b0 : ( b0 << 8 ) | b1;
+	}
+
+	private static int readInt( final byte[] data, int offset, boolean littleEndian ) {
+		final int s0 = readShort( data, offset, littleEndian );
+		final int s1 = readShort( data, offset + 2, littleEndian );
+		return littleEndian ? ( s1 << 16 ) | s0 : ( s0 << 16 ) | s1;
+	}
+
+	private static int getDegrees( int orientation ) {
+		switch ( orientation ) {
+			case ExifInterface.ORIENTATION_ROTATE_90:
+				return 90;
+			case ExifInterface.ORIENTATION_ROTATE_180:
+				return 180;
+			case ExifInterface.ORIENTATION_ROTATE_270:
+				return 270;
+			default:
+				return 0;
+		}
 	}
 
 	/**
@@ -0,0 +1,117 @@
+package it.sephiroth.android.library.imagezoom.test.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * An {@link InputStream} which keeps all the bytes read from the source, so it can be read again from
+ * the beginning with {@link #rewind()} without opening the source again.<br />
+ * Unlike {@link java.io.BufferedInputStream}, {@link #mark(int)} has no read limit: the mark set internally by
+ * {@link android.graphics.BitmapFactory} does not prevent the stream from being rewound.
+ */
+public class RewindableInputStream extends InputStream {
+
+	private static final int DEFAULT_CAPACITY = 16 * 1024;
+
+	private final InputStream mSource;
+	private byte[] mBuffer;
+	// bytes read from the source
+	private int mCount;
+	private int mPosition;
+	private int mMark;
+	private boolean mEof;
+
+	public RewindableInputStream( final InputStream source ) {
+		this( source, DEFAULT_CAPACITY );
+	}
+
+	/**
+	 * @param source	the source stream, closed with this stream
+	 * @param capacity	the initial size of the buffer, ideally the source size
+	 */
+	public RewindableInputStream( final InputStream source, int capacity ) {
+		mSource = source;
+		mBuffer = new byte[Math.max( 1024, capacity )];
+	}
+
+	/**
+	 * Move back to the beginning of the stream
+	 */
+	public void rewind() {
+		mPosition = 0;
+		mMark = 0;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if ( mPosition >= mCount && !fill( 1 ) ) return -1;
+		return mBuffer[mPosition++] & 0xFF;
+	}
+
+	@Override
+	public int read( byte[] buffer, int offset, int length ) throws IOException {
+		if ( length == 0 ) return 0;
+		if ( mPosition >= mCount && !fill( length ) ) return -1;
+		final int count = Math.min( length, mCount - mPosition );
+		System.arraycopy( mBuffer, mPosition, buffer, offset, count );
+		mPosition += count;
+		return count;
+	}
+
+	@Override
+	public long skip( long count ) throws IOException {
+		long skipped = 0;
+		while ( skipped < count ) {
+			if ( mPosition >= mCount && !fill( (int) Math.min( count - skipped, DEFAULT_CAPACITY ) ) ) break;
+			final int step = (int) Math.min( count - skipped, mCount - mPosition );
+			mPosition += step;
+			skipped += step;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return ( mCount - mPosition ) + ( mEof ? 0 : mSource.available() );
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark( int readLimit ) {
+		// everything is kept, the limit does not matter
+		mMark = mPosition;
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		mPosition = mMark;
+	}
+
+	@Override
+	public void close() throws IOException {
+		mSource.close();
+	}
+
+	// read at least one more byte from the source, returns false at the end of the source
+	private boolean fill( int length ) throws IOException {
+		if ( mEof ) return false;
+		if ( mCount + length > mBuffer.length ) {
+			mBuffer = Arrays.copyOf( mBuffer, Math.max( mBuffer.length * 2, mCount + length ) );
+		}
+		int read;
+		do {
+			read = mSource.read( mBuffer, mCount, mBuffer.length - mCount );
+		} while ( read == 0 );
+		if ( read < 0 ) {
+			mEof = true;
+			return false;
+		}
+		mCount += read;
+		return true;
+	}
+}
@@ -0,0 +1,124 @@
+package it.sephiroth.android.library.imagezoom.test.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class ExifUtilsTest {
+
+	private static final int ORIENTATION_ROTATE_90 = 6;
+	private static final int ORIENTATION_ROTATE_180 = 3;
+	private static final int ORIENTATION_ROTATE_270 = 8;
+
+	@Test
+	public void readsTheOrientation() throws IOException {
+		assertEquals( 90, getOrientation( jpeg( exif( ORIENTATION_ROTATE_90, false ) ) ) );
+		assertEquals( 180, getOrientation( jpeg( exif( ORIENTATION_ROTATE_180, false ) ) ) );
+		assertEquals( 270, getOrientation( jpeg( exif( ORIENTATION_ROTATE_270, true ) ) ) );
+	}
+
+	@Test
+	public void skipsTheSegmentsBeforeExif() throws IOException {
+		final byte[] jfif = { 'J', 'F', 'I', 'F', 0, 1, 2, 1, 0, 72, 0, 72, 0, 0 };
+		assertEquals( 90, getOrientation( jpeg( segment( 0xFFE0, jfif ), exif( ORIENTATION_ROTATE_90, true ) ) ) );
+	}
+
+	@Test
+	public void stopsAtTheImageData() throws IOException {
+		assertEquals( 0, getOrientation( jpeg( segment( 0xFFDA, new byte[4] ), exif( ORIENTATION_ROTATE_90, true ) ) ) );
+	}
+
+	@Test
+	public void ignoresOtherApp1Segments() throws IOException {
+		final byte[] xmp = "http://ns.adobe.com/xap/1.0/\0".getBytes( "US-ASCII" );
+		assertEquals( 180, getOrientation( jpeg( segment( 0xFFE1, xmp ), exif( ORIENTATION_ROTATE_180, false ) ) ) );
+	}
+
+	@Test
+	public void notAJpeg() {
+		assertEquals( 0, getOrientation( new byte[] { (byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0 } ) );
+		assertEquals( 0, getOrientation( new byte[0] ) );
+	}
+
+	@Test
+	public void truncatedHeader() throws IOException {
+		final byte[] data = jpeg( exif( ORIENTATION_ROTATE_90, false ) );
+		final byte[] truncated = new byte[data.length - 20];
+		System.arraycopy( data, 0, truncated, 0, truncated.length );
+		assertEquals( 0, getOrientation( truncated ) );
+	}
+
+	@Test
+	public void readsOnlyTheHeader() throws IOException {
+		final RewindableInputStream stream = new RewindableInputStream( new ByteArrayInputStream( jpeg( exif(
+			ORIENTATION_ROTATE_90, false ) ) ) );
+		assertEquals( 90, ExifUtils.getExifOrientation( stream ) );
+		stream.rewind();
+		assertEquals( 0xFF, stream.read() );
+		assertEquals( 0xD8, stream.read() );
+	}
+
+	private static int getOrientation( final byte[] data ) {
+		return ExifUtils.getExifOrientation( new ByteArrayInputStream( data ) );
+	}
+
+	// SOI, the given segments, then the start of the image data
+	private static byte[] jpeg( final byte[]... segments ) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream( bytes );
+		out.writeShort( 0xFFD8 );
+		for ( byte[] segment : segments ) {
+			out.write( segment );
+		}
+		out.writeShort( 0xFFDA );
+		out.writeShort( 2 );
+		return bytes.toByteArray();
+	}
+
+	private static byte[] segment( final int marker, final byte[] payload ) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream( bytes );
+		out.writeShort( marker );
+		out.writeShort( payload.length + 2 );
+		out.write( payload );
+		return bytes.toByteArray();
+	}
+
+	// an APP1 segment with a single IFD holding the orientation tag
+	private static byte[] exif( final int orientation, final boolean littleEndian ) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream( bytes );
+		out.write( new byte[] { 'E', 'x', 'i', 'f', 0, 0 } );
+		out.writeShort( littleEndian ? 0x4949 : 0x4D4D );
+		writeShort( out, 42, littleEndian );
+		writeInt( out, 8, littleEndian );
+		// two entries, the orientation is the second one
+		writeShort( out, 2, littleEndian );
+		writeEntry( out, 0x010F, 0, littleEndian );
+		writeEntry( out, 0x0112, orientation, littleEndian );
+		writeInt( out, 0, littleEndian );
+		return segment( 0xFFE1, bytes.toByteArray() );
+	}
+
+	// a SHORT entry with a single value
+	private static void writeEntry( DataOutputStream out, int tag, int value, boolean littleEndian ) throws IOException {
+		writeShort( out, tag, littleEndian );
+		writeShort( out, 3, littleEndian );
+		writeInt( out, 1, littleEndian );
+		writeShort( out, value, littleEndian );
+		writeShort( out, 0, littleEndian );
+	}
+
+	private static void writeShort( DataOutputStream out, int value, boolean littleEndian ) throws IOException {
+		out.writeShort( littleEndian ? Short.reverseBytes( (short) value ) : value );
+	}
+
+	private static void writeInt( DataOutputStream out, int value, boolean littleEndian ) throws IOException {
+		out.writeInt( littleEndian ? Integer.reverseBytes( value ) : value );
+	}
+}
@@ -0,0 +1,95 @@
+package it.sephiroth.android.library.imagezoom.test.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+public class RewindableInputStreamTest {
+
+	@Test
+	public void rewindReadsTheSameBytes() throws IOException {
+		final byte[] data = data( 5000 );
+		final RewindableInputStream stream = new RewindableInputStream( new ByteArrayInputStream( data ), 1024 );
+
+		assertArrayEquals( data, readAll( stream ) );
+		stream.rewind();
+		assertArrayEquals( data, readAll( stream ) );
+		assertEquals( -1, stream.read() );
+	}
+
+	@Test
+	public void resetHasNoReadLimit() throws IOException {
+		final byte[] data = data( 3000 );
+		final RewindableInputStream stream = new RewindableInputStream( new ByteArrayInputStream( data ) );
+
+		assertTrue( stream.markSupported() );
+		stream.skip( 10 );
+		stream.mark( 1 );
+		stream.skip( 2000 );
+		stream.reset();
+		assertEquals( data[10] & 0xFF, stream.read() );
+	}
+
+	@Test
+	public void skipReadsFromTheSource() throws IOException {
+		final byte[] data = data( 100 );
+		final RewindableInputStream stream = new RewindableInputStream( new ByteArrayInputStream( data ) );
+
+		assertEquals( 60, stream.skip( 60 ) );
+		assertEquals( 40, stream.skip( 60 ) );
+		stream.rewind();
+		assertEquals( data[0] & 0xFF, stream.read() );
+	}
+
+	@Test
+	public void sourceIsReadOnce() throws IOException {
+		final CountingInputStream source = new CountingInputStream( new ByteArrayInputStream( data( 2000 ) ) );
+		final RewindableInputStream stream = new RewindableInputStream( source );
+
+		readAll( stream );
+		stream.rewind();
+		readAll( stream );
+		assertEquals( 2000, source.mCount );
+	}
+
+	private static byte[] data( int size ) {
+		final byte[] data = new byte[size];
+		for ( int i = 0; i < size; i++ ) {
+			data[i] = (byte) ( i * 31 );
+		}
+		return data;
+	}
+
+	private static byte[] readAll( final InputStream stream ) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[700];
+		int read;
+		while ( ( read = stream.read( buffer ) ) > 0 ) {
+			out.write( buffer, 0, read );
+		}
+		return out.toByteArray();
+	}
+
+	private static final class CountingInputStream extends FilterInputStream {
+		int mCount;
+
+		CountingInputStream( InputStream in ) {
+			super( in );
+		}
+
+		@Override
+		public int read( byte[] buffer, int offset, int length ) throws IOException {
+			final int read = super.read( buffer, offset, length );
+			if ( read > 0 ) mCount += read;
+			return read;
+		}
+	}
+}
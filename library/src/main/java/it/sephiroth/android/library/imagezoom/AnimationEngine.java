@@ -0,0 +1,211 @@
+package it.sephiroth.android.library.imagezoom;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import it.sephiroth.android.library.imagezoom.core.FlingModel;
+import it.sephiroth.android.library.imagezoom.utils.ZoomTrace;
+
+/**
+ * Drives the scroll and zoom animations of an {@link ImageViewTouchBase} from a single
+ * {@link Choreographer} frame callback. The running motions are stepped together, once per frame,
+ * and no object is created when an animation starts.
+ */
+class AnimationEngine implements Choreographer.FrameCallback {
+    private static final long NANOS_PER_MILLI = 1000000L;
+    // 60 fps
+    static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667L;
+
+    private final ImageViewTouchBase mView;
+    private final FlingModel mScrollX = new FlingModel();
+    private final FlingModel mScrollY = new FlingModel();
+    private final FlingModel mZoom = new FlingModel();
+    private float mScrollLastX;
+    private float mScrollLastY;
+    private float mZoomCenterX;
+    private float mZoomCenterY;
+    private boolean mScheduled;
+    // true between onAnimationEngineStarted and onAnimationEngineStopped
+    private boolean mActive;
+    // frames stepped, and frames skipped by the display, since the engine became active
+    private int mFrameCount;
+    private int mDroppedFrameCount;
+    private long mLastFrameTimeNanos;
+    private long mFrameIntervalNanos;
+
+    AnimationEngine(ImageViewTouchBase view) {
+        mView = view;
+        mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+    }
+
+    /**
+     * Set the expected time between two frames, used to count the dropped frames
+     */
+    void setFrameInterval(long frameIntervalNanos) {
+        mFrameIntervalNanos = frameIntervalNanos;
+    }
+
+    /**
+     * Fling with the given velocity, in pixels per second. The translation is bounded by the given ranges
+     */
+    void fling(
+        float velocityX, float velocityY, float minX, float maxX, float minY, float maxY, float deceleration) {
+        final long now = now();
+        mScrollX.fling(0, velocityX, minX, maxX, deceleration, now);
+        mScrollY.fling(0, velocityY, minY, maxY, deceleration, now);
+        startScroll();
+    }
+
+    /**
+     * Scroll by the given distance, decelerating
+     */
+    void scrollBy(float distanceX, float distanceY, long durationMs) {
+        final long now = now();
+        mScrollX.start(0, distanceX, now, durationMs);
+        mScrollY.start(0, distanceY, now, durationMs);
+        startScroll();
+    }
+
+    /**
+     * Zoom to the given scale, around the given point, decelerating
+     */
+    void zoomTo(float fromScale, float toScale, float centerX, float centerY, long durationMs) {
+        mZoom.start(fromScale, toScale, now(), durationMs);
+        mZoomCenterX = centerX;
+        mZoomCenterY = centerY;
+        schedule();
+    }
+
+    float getScrollFinalX() {
+        return mScrollX.getFinal();
+    }
+
+    float getScrollFinalY() {
+        return mScrollY.getFinal();
+    }
+
+    boolean isRunning() {
+        return !mScrollX.isFinished() || !mScrollY.isFinished() || !mZoom.isFinished();
+    }
+
+    boolean isScrolling() {
+        return !mScrollX.isFinished() || !mScrollY.isFinished();
+    }
+
+    boolean isZooming() {
+        return !mZoom.isFinished();
+    }
+
+    /**
+     * Stop the scroll motion, leaving the image where it is
+     */
+    void stopScroll() {
+        if (isScrolling()) {
+            mScrollX.abort();
+            mScrollY.abort();
+            onStopped();
+        }
+    }
+
+    /**
+     * Stop the zoom motion, leaving the image where it is
+     */
+    void stopZoom() {
+        if (isZooming()) {
+            mZoom.abort();
+            onStopped();
+        }
+    }
+
+    @Override
+    public void doFrame(final long frameTimeNanos) {
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_ANIMATION_FRAME);
+        }
+
+        mScheduled = false;
+        countFrame(frameTimeNanos);
+        final long time = frameTimeNanos / NANOS_PER_MILLI;
+
+        // not short-circuited: both the axes must be updated
+        if (mScrollX.computeValue(time) | mScrollY.computeValue(time)) {
+            final float x = mScrollX.getCurrent();
+            final float y = mScrollY.getCurrent();
+            mView.panBy(x - mScrollLastX, y - mScrollLastY);
+            mScrollLastX = x;
+            mScrollLastY = y;
+        }
+
+        final boolean zoomFinished;
+        if (mZoom.computeValue(time)) {
+            mView.zoomTo(mZoom.getCurrent(), mZoomCenterX, mZoomCenterY);
+            zoomFinished = mZoom.isFinished();
+        } else {
+            zoomFinished = false;
+        }
+
+        // frame callbacks posted now would run at the next frame, so the pending changes are applied here
+        mView.commitImageMatrix();
+
+        if (isRunning()) {
+            schedule();
+        } else {
+            onStopped();
+        }
+
+        if (zoomFinished) {
+            mView.onZoomAnimationCompleted(mView.getScale());
+        }
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.end();
+        }
+    }
+
+    private void countFrame(long frameTimeNanos) {
+        if (mFrameCount > 0 && mFrameIntervalNanos > 0) {
+            // rounded, so that a late vsync is not counted as a dropped frame
+            final long skipped = (frameTimeNanos - mLastFrameTimeNanos + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+            if (skipped > 0) {
+                mDroppedFrameCount += skipped;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        mFrameCount++;
+    }
+
+    private void startScroll() {
+        mScrollLastX = 0;
+        mScrollLastY = 0;
+        schedule();
+    }
+
+    private void schedule() {
+        if (!mActive) {
+            mActive = true;
+            mFrameCount = 0;
+            mDroppedFrameCount = 0;
+            mView.onAnimationEngineStarted();
+        }
+        if (!mScheduled) {
+            mScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private void onStopped() {
+        if (!isRunning() && mActive) {
+            mActive = false;
+            if (mScheduled) {
+                mScheduled = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+            mView.onAnimationEngineStopped(mFrameCount, mDroppedFrameCount);
+        }
+    }
+
+    // the clock of the Choreographer frame times, which the tests control
+    private static long now() {
+        return SystemClock.uptimeMillis();
+    }
+}
@@ -0,0 +1,368 @@
+package it.sephiroth.android.library.imagezoom;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.sephiroth.android.library.imagezoom.core.LayoutState;
+import it.sephiroth.android.library.imagezoom.graphics.FastBitmapDrawable;
+import it.sephiroth.android.library.imagezoom.graphics.TileCache;
+import it.sephiroth.android.library.imagezoom.utils.DecodeScheduler;
+import it.sephiroth.android.library.imagezoom.utils.IDisposable;
+
+/**
+ * Binds the pages of a swipe gallery to {@link ImageViewTouch} views, independently from the pager implementation.
+ * With a <code>ViewPager</code>: <code>instantiateItem</code> calls {@link #obtainView(int)}, <code>destroyItem</code>
+ * calls {@link #recycleView(ImageViewTouch)} and <code>setPrimaryItem</code> calls {@link #setCurrentPosition(int)}.<br />
+ * The current page and its neighbours are decoded in background at screen resolution, see
+ * {@link #decode(int, int, int)}, and kept in a {@link TileCache} of its own, sized with the memory budget. The
+ * decodes of the pages which are no more in range are discarded, so swiping through a large album only decodes
+ * the pages where the user stops.<br />
+ * Views are reused, and the zoom of the recently visited pages is restored without laying out the image again.
+ * Bitmaps are owned by the cache: do not assign a {@link it.sephiroth.android.library.imagezoom.graphics.BitmapPool}
+ * to the views.<br />
+ * Must be used on the main thread.
+ */
+public abstract class GalleryAdapter implements IDisposable {
+    public static final int DEFAULT_NEIGHBOURS = 1;
+    private static final int MEMORY_FRACTION = 4;
+    private static final int MAX_SAVED_STATES = 32;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Context mContext;
+    private final DecodeScheduler mScheduler;
+    private final TileCache mCache;
+    // bound pages by position
+    private final SparseArray<Page> mPages = new SparseArray<>();
+    // pending decodes by position
+    private final SparseArray<PageTask> mTasks = new SparseArray<>();
+    private final ArrayDeque<ImageViewTouch> mRecycledViews = new ArrayDeque<>();
+    private final List<TileCache.Key> mPinned = new ArrayList<>();
+    // layouts of the recently visited pages, by source id
+    private final Map<String, LayoutState> mStates = new LinkedHashMap<String, LayoutState>(0, LOAD_FACTOR, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, LayoutState> eldest) {
+            return size() > MAX_SAVED_STATES;
+        }
+    };
+    private int mNeighbours = DEFAULT_NEIGHBOURS;
+    private int mTargetWidth;
+    private int mTargetHeight;
+    private int mCurrentPosition = -1;
+    // range of the pages to decode, read by the decode threads
+    private volatile int mRangeStart;
+    private volatile int mRangeEnd = -1;
+
+    /**
+     * Create an adapter which uses the shared {@link DecodeScheduler}, and up to 1/4 of the available heap
+     */
+    public GalleryAdapter(Context context) {
+        this(context, DecodeScheduler.getInstance(), Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+    }
+
+    /**
+     * @param memoryBudget the maximum size, in bytes, of the decoded pages. The current page and its
+     *                     neighbours are never evicted, so it should fit at least all of them
+     */
+    public GalleryAdapter(Context context, DecodeScheduler scheduler, long memoryBudget) {
+        mContext = context;
+        mScheduler = scheduler;
+        mCache = new TileCache(memoryBudget);
+        final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        mTargetWidth = metrics.widthPixels;
+        mTargetHeight = metrics.heightPixels;
+    }
+
+    public abstract int getCount();
+
+    /**
+     * Returns a stable identifier of the image at the given position, used as cache key
+     */
+    public abstract String getSourceId(int position);
+
+    /**
+     * Decode the image at the given position. Executed on a decode thread
+     *
+     * @param width  the width of the screen, or the size passed to {@link #setTargetSize(int, int)}
+     * @param height the height of the screen, or the size passed to {@link #setTargetSize(int, int)}
+     * @return a bitmap about as big as the given size, or null
+     */
+    protected abstract Bitmap decode(int position, int width, int height);
+
+    /**
+     * Create a new page view. Override to configure the views
+     */
+    protected ImageViewTouch createView(Context context) {
+        return new ImageViewTouch(context, null);
+    }
+
+    /**
+     * Returns the view of the given page, a recycled one if available
+     */
+    public ImageViewTouch obtainView(int position) {
+        ImageViewTouch view = mRecycledViews.poll();
+        if (null == view) {
+            view = createView(mContext);
+        }
+
+        final Page page = new Page(getSourceId(position), view);
+        mPages.put(position, page);
+
+        final Bitmap bitmap = mCache.get(page.mKey);
+        if (null != bitmap) {
+            view.setImageDrawable(new FastBitmapDrawable(bitmap), mStates.get(page.mKey.sourceId));
+        } else {
+            view.setImageDrawable(null);
+            requestPage(
+                position, position == mCurrentPosition ? DecodeScheduler.PRIORITY_VISIBLE : DecodeScheduler.PRIORITY_NEIGHBOUR);
+            // displayed, so needed even if out of range
+            final PageTask task = mTasks.get(position);
+            if (null != task) {
+                task.mRequired = true;
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Release the view of a page which is no more displayed. Its layout is saved, to be restored
+     * when the page is displayed again
+     */
+    public void recycleView(ImageViewTouch view) {
+        for (int i = 0; i < mPages.size(); i++) {
+            final Page page = mPages.valueAt(i);
+            if (page.mView == view) {
+                final PageTask task = mTasks.get(mPages.keyAt(i));
+                if (null != task) {
+                    task.mRequired = false;
+                }
+                mPages.removeAt(i);
+                saveState(page);
+                break;
+            }
+        }
+
+        // the bitmap stays in the cache, and can be evicted
+        view.setImageDrawable(null);
+        if (mRecycledViews.size() <= mNeighbours * 2) {
+            mRecycledViews.add(view);
+        }
+    }
+
+    /**
+     * Set the page currently displayed: it is decoded first, then its neighbours. Pending decodes
+     * of the pages out of range are discarded
+     */
+    public void setCurrentPosition(int position) {
+        if (position == mCurrentPosition) {
+            return;
+        }
+        mCurrentPosition = position;
+        mRangeStart = Math.max(0, position - mNeighbours);
+        mRangeEnd = Math.min(getCount() - 1, position + mNeighbours);
+
+        for (TileCache.Key key : mPinned) {
+            mCache.unpin(key);
+        }
+        mPinned.clear();
+
+        for (int i = mTasks.size() - 1; i >= 0; i--) {
+            final int taskPosition = mTasks.keyAt(i);
+            if (!mTasks.valueAt(i).mRequired && (taskPosition < mRangeStart || taskPosition > mRangeEnd)) {
+                mTasks.valueAt(i).cancel();
+                mTasks.removeAt(i);
+            }
+        }
+
+        requestPage(position, DecodeScheduler.PRIORITY_VISIBLE);
+        for (int i = 1; i <= mNeighbours; i++) {
+            requestPage(position + i, DecodeScheduler.PRIORITY_NEIGHBOUR);
+            requestPage(position - i, DecodeScheduler.PRIORITY_NEIGHBOUR);
+        }
+    }
+
+    public int getCurrentPosition() {
+        return mCurrentPosition;
+    }
+
+    /**
+     * Set how many pages, on each side of the current one, are decoded in advance
+     */
+    public void setNeighbourCount(int count) {
+        mNeighbours = Math.max(0, count);
+    }
+
+    public int getNeighbourCount() {
+        return mNeighbours;
+    }
+
+    /**
+     * Set the size the pages are decoded at, by default the screen size
+     */
+    public void setTargetSize(int width, int height) {
+        mTargetWidth = width;
+        mTargetHeight = height;
+    }
+
+    /**
+     * Set the maximum size, in bytes, of the decoded pages
+     */
+    public void setMemoryBudget(long bytes) {
+        mCache.setMaxSize(bytes);
+    }
+
+    public long getMemoryBudget() {
+        return mCache.getMaxSize();
+    }
+
+    /**
+     * Returns the cache of the decoded pages, to read its statistics
+     */
+    public TileCache getCache() {
+        return mCache;
+    }
+
+    /**
+     * Must be called when the images changed: pending decodes are discarded, and the current page and its
+     * neighbours are requested again. Decoded pages and saved layouts are kept, since they're stored by source id
+     */
+    public void onDataSetChanged() {
+        mScheduler.cancel(this);
+        mTasks.clear();
+        final int position = mCurrentPosition;
+        mCurrentPosition = -1;
+        if (position >= 0 && position < getCount()) {
+            setCurrentPosition(position);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        mScheduler.cancel(this);
+        mTasks.clear();
+        mPinned.clear();
+        mCache.clear();
+        mStates.clear();
+        mPages.clear();
+        mRecycledViews.clear();
+        mCurrentPosition = -1;
+        mRangeEnd = -1;
+    }
+
+    private void requestPage(int position, int priority) {
+        if (position < 0 || position >= getCount()) {
+            return;
+        }
+
+        final TileCache.Key key = new TileCache.Key(getSourceId(position), 0, 0, 0);
+        if (position >= mRangeStart && position <= mRangeEnd && !mPinned.contains(key)) {
+            mCache.pin(key);
+            mPinned.add(key);
+        }
+        if (mCache.contains(key)) {
+            return;
+        }
+
+        // a discarded task is cancelled
+        final PageTask pending = mTasks.get(position);
+        if (null != pending && !pending.isCancelled()) {
+            if (pending.getPriority() <= priority && pending.mKey.equals(key)) {
+                return;
+            }
+            pending.cancel();
+        }
+        final PageTask task = new PageTask(position, key, priority);
+        task.mRequired = null != pending && pending.mRequired;
+        mTasks.put(position, task);
+        mScheduler.submit(task);
+    }
+
+    private void saveState(Page page) {
+        LayoutState state = mStates.get(page.mKey.sourceId);
+        if (null == state) {
+            state = new LayoutState();
+        }
+        page.mView.saveLayoutState(state);
+        if (state.isValid()) {
+            mStates.put(page.mKey.sourceId, state);
+        } else {
+            mStates.remove(page.mKey.sourceId);
+        }
+    }
+
+    private void onPageDecoded(PageTask task, Bitmap bitmap) {
+        if (mTasks.get(task.mPosition) == task) {
+            mTasks.remove(task.mPosition);
+        }
+        if (null == bitmap) {
+            return;
+        }
+
+        mCache.put(task.mKey, bitmap);
+        final Page page = mPages.get(task.mPosition);
+        if (null != page && page.mKey.equals(task.mKey) && null == page.mView.getDrawable()) {
+            page.mView.setImageDrawable(new FastBitmapDrawable(bitmap), mStates.get(task.mKey.sourceId));
+        }
+    }
+
+    private static final class Page {
+        final TileCache.Key mKey;
+        final ImageViewTouch mView;
+
+        Page(String sourceId, ImageViewTouch view) {
+            mKey = new TileCache.Key(sourceId, 0, 0, 0);
+            mView = view;
+        }
+    }
+
+    private final class PageTask extends DecodeScheduler.Task<Bitmap> {
+        final int mPosition;
+        final TileCache.Key mKey;
+        final int mWidth;
+        final int mHeight;
+        // true while the page is displayed
+        volatile boolean mRequired;
+
+        PageTask(int position, TileCache.Key key, int priority) {
+            super(priority, GalleryAdapter.this);
+            mPosition = position;
+            mKey = key;
+            mWidth = mTargetWidth;
+            mHeight = mTargetHeight;
+        }
+
+        @Override
+        protected boolean isStale() {
+            // out of range, or already decoded by a previous task
+            return (!mRequired && (mPosition < mRangeStart || mPosition > mRangeEnd)) || mCache.contains(mKey);
+        }
+
+        @Override
+        protected Bitmap doInBackground() {
+            final Bitmap bitmap = decode(mPosition, mWidth, mHeight);
+            if (null != bitmap) {
+                // start uploading the pixels before the page is drawn
+                bitmap.prepareToDraw();
+            }
+            return bitmap;
+        }
+
+        @Override
+        protected void onComplete(final Bitmap result) {
+            onPageDecoded(this, result);
+        }
+
+        @Override
+        protected void onCancelled(final Bitmap result) {
+            // no more needed, but already decoded: the cache can keep it if there's room
+            onPageDecoded(this, result);
+        }
+    }
+}
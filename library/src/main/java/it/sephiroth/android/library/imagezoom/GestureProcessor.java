@@ -0,0 +1,304 @@
+package it.sephiroth.android.library.imagezoom;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+
+import it.sephiroth.android.library.imagezoom.core.TouchPredictor;
+
+/**
+ * Derives the scale, the translation of the focal point and the velocity of a touch gesture from
+ * every {@link MotionEvent} in a single pass, replacing the separate scale and scroll detectors.<br />
+ * The batched historical samples of a move event are processed one by one and composed into a single change,
+ * so fast gestures are not undersampled and the image is updated once per event. With two or more pointers
+ * the focal point is the centroid of the pointers, so a pinch can pan the image too.<br />
+ * The quick scale gesture (double tap and drag) is started by the owner, which detects the double tap.
+ */
+class GestureProcessor {
+    private static final int VELOCITY_UNITS = 1000;
+    private static final float QUICK_SCALE_FACTOR = 0.5f;
+    // lower bound of the scale of a single quick scale sample
+    private static final float QUICK_SCALE_MIN_STEP = 0.5f;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final int mTouchSlop;
+    private final int mMaxFlingVelocity;
+    private VelocityTracker mVelocityTracker;
+    private TouchPredictor mPredictor;
+    private boolean mQuickScaleEnabled;
+    private boolean mQuickScale;
+    private float mAnchorX;
+    private float mAnchorY;
+    // true once the pointers moved past the touch slop
+    private boolean mActive;
+    private int mPointerCount;
+    // focus and span when the pointers went down, to detect the touch slop
+    private float mDownFocusX;
+    private float mDownFocusY;
+    private float mDownSpan;
+    // focus and span of the last processed sample
+    private float mFocusX;
+    private float mFocusY;
+    private float mSpan;
+    // result of the last computeSample
+    private float mSampleX;
+    private float mSampleY;
+    private float mSampleSpan;
+    // change of the last event, as p' = mScale * p + mTranslation, and its final pivot
+    private float mScale;
+    private float mTranslationX;
+    private float mTranslationY;
+    private float mPivotX;
+    private float mPivotY;
+    private float mVelocityX;
+    private float mVelocityY;
+
+    GestureProcessor(int touchSlop, int maxFlingVelocity) {
+        mTouchSlop = touchSlop;
+        mMaxFlingVelocity = maxFlingVelocity;
+        mScale = 1;
+    }
+
+    /**
+     * Set the predictor to feed with the samples of single pointer drags, or null
+     */
+    void setPredictor(TouchPredictor predictor) {
+        mPredictor = predictor;
+    }
+
+    void setQuickScaleEnabled(boolean value) {
+        mQuickScaleEnabled = value;
+    }
+
+    boolean isQuickScaleEnabled() {
+        return mQuickScaleEnabled;
+    }
+
+    /**
+     * Start a quick scale around the given point. Must be called on the second down of a double tap,
+     * after the event has been passed to {@link #onTouchEvent(MotionEvent)}
+     */
+    void startQuickScale(float x, float y) {
+        if (mQuickScaleEnabled && mPointerCount == 1) {
+            mQuickScale = true;
+            mAnchorX = x;
+            mAnchorY = y;
+        }
+    }
+
+    /**
+     * Returns true while two or more pointers, or a quick scale, are changing the scale
+     */
+    boolean isScaling() {
+        return mActive && (mPointerCount > 1 || mQuickScale);
+    }
+
+    /**
+     * Returns true while a single pointer is dragging the image
+     */
+    boolean isDragging() {
+        return mActive && mPointerCount == 1 && !mQuickScale;
+    }
+
+    /**
+     * Process an event
+     *
+     * @return true if the event changed the image. The change is available from {@link #getScaleFactor()},
+     * {@link #getFocusX()}, {@link #getFocusY()}, {@link #getDistanceX()} and {@link #getDistanceY()}
+     */
+    boolean onTouchEvent(MotionEvent event) {
+        final int action = event.getActionMasked();
+        mScale = 1;
+        mTranslationX = 0;
+        mTranslationY = 0;
+
+        if (action == MotionEvent.ACTION_DOWN) {
+            mActive = false;
+            mQuickScale = false;
+            mVelocityX = 0;
+            mVelocityY = 0;
+            if (null == mVelocityTracker) {
+                mVelocityTracker = VelocityTracker.obtain();
+            } else {
+                mVelocityTracker.clear();
+            }
+        }
+        if (null != mVelocityTracker) {
+            mVelocityTracker.addMovement(event);
+        }
+
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_POINTER_UP:
+                onPointersChanged(event, action == MotionEvent.ACTION_POINTER_UP ? event.getActionIndex() : -1);
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                return onMove(event);
+            case MotionEvent.ACTION_UP:
+                if (isDragging()) {
+                    final int id = event.getPointerId(event.getActionIndex());
+                    mVelocityTracker.computeCurrentVelocity(VELOCITY_UNITS, mMaxFlingVelocity);
+                    mVelocityX = mVelocityTracker.getXVelocity(id);
+                    mVelocityY = mVelocityTracker.getYVelocity(id);
+                }
+                reset();
+                return false;
+            case MotionEvent.ACTION_CANCEL:
+                reset();
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    float getScaleFactor() {
+        return mScale;
+    }
+
+    /**
+     * Returns the point around which {@link #getScaleFactor()} must be applied
+     */
+    float getFocusX() {
+        return mPivotX;
+    }
+
+    float getFocusY() {
+        return mPivotY;
+    }
+
+    /**
+     * Returns the horizontal distance to pan by, after the scale is applied
+     */
+    float getDistanceX() {
+        return mTranslationX + mScale * mPivotX - mPivotX;
+    }
+
+    float getDistanceY() {
+        return mTranslationY + mScale * mPivotY - mPivotY;
+    }
+
+    /**
+     * Returns the horizontal velocity, in pixels per second, of the drag ended by the last up event
+     */
+    float getVelocityX() {
+        return mVelocityX;
+    }
+
+    float getVelocityY() {
+        return mVelocityY;
+    }
+
+    // a pointer went down or up: restart from the new focus and span, without changing the image
+    private void onPointersChanged(MotionEvent event, int skipIndex) {
+        computeSample(event, -1, skipIndex);
+        mPointerCount = event.getPointerCount() - (skipIndex >= 0 ? 1 : 0);
+        mFocusX = mSampleX;
+        mFocusY = mSampleY;
+        mSpan = mSampleSpan;
+        if (mPointerCount > 1) {
+            mQuickScale = false;
+        }
+        if (null != mPredictor) {
+            mPredictor.reset();
+            if (mPointerCount == 1) {
+                mPredictor.addSample(event.getEventTime() * NANOS_PER_MILLI, mSampleX, mSampleY);
+            }
+        }
+        if (!mActive) {
+            mDownFocusX = mSampleX;
+            mDownFocusY = mSampleY;
+            mDownSpan = mSampleSpan;
+        }
+    }
+
+    private boolean onMove(MotionEvent event) {
+        if (mPointerCount == 0) {
+            return false;
+        }
+
+        final int historySize = event.getHistorySize();
+        for (int h = 0; h <= historySize; h++) {
+            computeSample(event, h < historySize ? h : -1, -1);
+            if (null != mPredictor && mPointerCount == 1) {
+                final long time = h < historySize ? event.getHistoricalEventTime(h) : event.getEventTime();
+                mPredictor.addSample(time * NANOS_PER_MILLI, mSampleX, mSampleY);
+            }
+
+            if (!mActive) {
+                mActive = Math.abs(mSampleX - mDownFocusX) > mTouchSlop || Math.abs(mSampleY - mDownFocusY) > mTouchSlop
+                    || (mPointerCount > 1 && Math.abs(mSampleSpan - mDownSpan) > mTouchSlop);
+            }
+            if (mActive) {
+                applySample();
+            }
+        }
+        return mScale != 1 || mTranslationX != 0 || mTranslationY != 0;
+    }
+
+    // compose the change from the last sample to the current one
+    private void applySample() {
+        if (mQuickScale) {
+            final float distance = Math.max(Math.abs(mFocusY - mAnchorY), mTouchSlop);
+            final float scale = Math.max(QUICK_SCALE_MIN_STEP, 1 + QUICK_SCALE_FACTOR * (mSampleY - mFocusY) / distance);
+            compose(scale, mAnchorX, mAnchorY, mAnchorX, mAnchorY);
+        } else {
+            final float scale = mPointerCount > 1 && mSpan > 0 && mSampleSpan > 0 ? mSampleSpan / mSpan : 1;
+            compose(scale, mFocusX, mFocusY, mSampleX, mSampleY);
+        }
+        mFocusX = mSampleX;
+        mFocusY = mSampleY;
+        mSpan = mSampleSpan;
+    }
+
+    // apply p' = scale * (p - from) + to after the current change
+    private void compose(float scale, float fromX, float fromY, float toX, float toY) {
+        mScale *= scale;
+        mTranslationX = scale * mTranslationX + toX - scale * fromX;
+        mTranslationY = scale * mTranslationY + toY - scale * fromY;
+        mPivotX = toX;
+        mPivotY = toY;
+    }
+
+    /**
+     * Compute focus and span of the pointers, excluding the one at <code>skipIndex</code>
+     *
+     * @param historyIndex the historical sample, or -1 for the current one
+     */
+    private void computeSample(MotionEvent event, int historyIndex, int skipIndex) {
+        final int count = event.getPointerCount();
+        final int pointers = count - (skipIndex >= 0 ? 1 : 0);
+        float sumX = 0;
+        float sumY = 0;
+        for (int p = 0; p < count; p++) {
+            if (p != skipIndex) {
+                sumX += historyIndex < 0 ? event.getX(p) : event.getHistoricalX(p, historyIndex);
+                sumY += historyIndex < 0 ? event.getY(p) : event.getHistoricalY(p, historyIndex);
+            }
+        }
+        mSampleX = sumX / pointers;
+        mSampleY = sumY / pointers;
+
+        // twice the average distance from the focus, the distance between the pointers when they're two
+        float deviation = 0;
+        if (pointers > 1) {
+            for (int p = 0; p < count; p++) {
+                if (p != skipIndex) {
+                    final float dx = (historyIndex < 0 ? event.getX(p) : event.getHistoricalX(p, historyIndex)) - mSampleX;
+                    final float dy = (historyIndex < 0 ? event.getY(p) : event.getHistoricalY(p, historyIndex)) - mSampleY;
+                    deviation += (float) Math.sqrt(dx * dx + dy * dy);
+                }
+            }
+        }
+        mSampleSpan = pointers > 1 ? deviation / pointers * 2 : 0;
+    }
+
+    private void reset() {
+        mActive = false;
+        mQuickScale = false;
+        mPointerCount = 0;
+        if (null != mVelocityTracker) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+}
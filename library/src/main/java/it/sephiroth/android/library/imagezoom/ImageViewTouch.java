@@ -1,13 +1,13 @@
 package it.sephiroth.android.library.imagezoom;
 
-import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
-import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.GestureDetector.OnGestureListener;
 import android.view.MotionEvent;
@@ -15,6 +15,10 @@ import android.view.ScaleGestureDetector;
 import android.view.ScaleGestureDetector.OnScaleGestureListener;
 import android.view.ViewConfiguration;
 
+import it.sephiroth.android.library.imagezoom.core.TouchPredictor;
+import it.sephiroth.android.library.imagezoom.core.ZoomMath;
+import it.sephiroth.android.library.imagezoom.utils.GestureTrace;
+
 public class ImageViewTouch extends ImageViewTouchBase {
     static final float SCROLL_DELTA_THRESHOLD = 1.0f;
     /**
@@ -22,17 +26,66 @@ public class ImageViewTouch extends ImageViewTouchBase {
      */
     public static final long MIN_FLING_DELTA_TIME = 150;
     private float mScaleFactor;
-    protected ScaleGestureDetector mScaleDetector;
+    // scale, pan and fling
+    private GestureProcessor mGestureProcessor;
+    // taps and long presses only
     protected GestureDetector mGestureDetector;
     protected int mTouchSlop;
     protected int mDoubleTapDirection;
     protected OnGestureListener mGestureListener;
-    protected OnScaleGestureListener mScaleListener;
     protected boolean mDoubleTapEnabled = true;
     protected boolean mScaleEnabled = true;
     protected boolean mScrollEnabled = true;
+    protected boolean mPinchSnapshotEnabled;
+    /**
+     * @deprecated only created when {@link #getScaleListener()} returns a listener
+     */
+    @Deprecated
+    protected ScaleGestureDetector mScaleDetector;
+    /**
+     * @deprecated see {@link #getScaleListener()}
+     */
+    @Deprecated
+    protected OnScaleGestureListener mScaleListener;
+    // a subclass overrides the deprecated onScroll or onFling with MotionEvent arguments
+    private boolean mLegacyGestures;
+    // copy of the down event, passed to the deprecated onScroll and onFling
+    private MotionEvent mDownEvent;
+    private final Rect mVisibleRect = new Rect();
     private OnImageViewTouchDoubleTapListener mDoubleTapListener;
     private OnImageViewTouchSingleTapListener mSingleTapListener;
+    private GestureTrace mGestureTrace;
+    private TouchPredictor mTouchPredictor;
+    private final float[] mPrediction = new float[2];
+    // translation applied by the current prediction, removed when the next event arrives or the pointer stops
+    private float mPredictionX;
+    private float mPredictionY;
+    private boolean mPredictionScheduled;
+    private final Choreographer.FrameCallback mPredictionCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPredictionScheduled = false;
+            // the frame is presented about one frame interval after its vsync
+            applyPrediction(frameTimeNanos + mFrameIntervalNanos);
+        }
+    };
+    private boolean mStaleCheckScheduled;
+    // removes the prediction when the pointer stops without sending new events
+    private final Choreographer.FrameCallback mStaleCheckCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mStaleCheckScheduled = false;
+            if (mPredictionX == 0 && mPredictionY == 0) {
+                return;
+            }
+            if (null == mTouchPredictor || mTouchPredictor.isStale(frameTimeNanos)) {
+                clearPrediction();
+                commitImageMatrix();
+            } else {
+                scheduleStaleCheck();
+            }
+        }
+    };
 
     public ImageViewTouch(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -47,28 +100,34 @@ public class ImageViewTouch extends ImageViewTouchBase {
         super.init(context, attrs, defStyle);
         mTouchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
         mGestureListener = getGestureListener();
-        mScaleListener = getScaleListener();
 
-        mScaleDetector = new ScaleGestureDetector(getContext(), mScaleListener);
+        mGestureProcessor = new GestureProcessor(mTouchSlop, mMaxFlingVelocity);
         mGestureDetector = new GestureDetector(getContext(), mGestureListener, null, true);
+        mScaleListener = getScaleListener();
+        if (null != mScaleListener) {
+            mScaleDetector = new ScaleGestureDetector(getContext(), mScaleListener);
+            if (Build.VERSION.SDK_INT >= 19) {
+                // the quick scale is handled by the gesture processor
+                mScaleDetector.setQuickScaleEnabled(false);
+            }
+        }
+        mLegacyGestures = overrides("onScroll", MotionEvent.class, MotionEvent.class, float.class, float.class)
+            || overrides("onFling", MotionEvent.class, MotionEvent.class, float.class, float.class);
         mDoubleTapDirection = 1;
         setQuickScaleEnabled(false);
     }
 
-    @TargetApi (19)
+    /**
+     * When enabled, double tapping and dragging up or down zooms the image, and
+     * the double tap zoom is disabled
+     */
     public void setQuickScaleEnabled(boolean value) {
-        if (Build.VERSION.SDK_INT >= 19) {
-            mScaleDetector.setQuickScaleEnabled(value);
-        }
+        mGestureProcessor.setQuickScaleEnabled(value);
     }
 
-    @TargetApi (19)
     @SuppressWarnings ("unused")
     public boolean getQuickScaleEnabled() {
-        if (Build.VERSION.SDK_INT >= 19) {
-            return mScaleDetector.isQuickScaleEnabled();
-        }
-        return false;
+        return mGestureProcessor.isQuickScaleEnabled();
     }
 
     @SuppressWarnings ("unused")
@@ -100,19 +159,116 @@ public class ImageViewTouch extends ImageViewTouchBase {
         return mDoubleTapEnabled;
     }
 
+    /**
+     * When enabled, a screen resolution snapshot of the image is captured when a pinch
+     * gesture starts and only the snapshot is transformed while the gesture is in progress. The image
+     * is drawn again at full quality once the gesture ends. Useful with very large drawables,
+     * whose drawing time would otherwise slow down the gesture.
+     *
+     * @param value true to enable the snapshot mode
+     */
+    public void setPinchSnapshotEnabled(boolean value) {
+        mPinchSnapshotEnabled = value;
+        if (!value) {
+            endSnapshot();
+        }
+    }
+
+    public boolean getPinchSnapshotEnabled() {
+        return mPinchSnapshotEnabled;
+    }
+
+    /**
+     * When enabled, while the image is dragged with one finger its position is extrapolated to the
+     * time the next frame is presented, reducing the perceived latency of the drag. The prediction is
+     * replaced by the real position at every touch event, removed when no event arrives for
+     * {@link TouchPredictor#STALE_NANOS}, and never moves the image out of its bounds.
+     *
+     * @param value true to enable the prediction
+     */
+    public void setTouchPredictionEnabled(boolean value) {
+        if (value && null == mTouchPredictor) {
+            mTouchPredictor = new TouchPredictor();
+        } else if (!value && null != mTouchPredictor) {
+            clearPrediction();
+            mTouchPredictor = null;
+        }
+        mGestureProcessor.setPredictor(mTouchPredictor);
+    }
+
+    public boolean getTouchPredictionEnabled() {
+        return null != mTouchPredictor;
+    }
+
+    /**
+     * Returns the predictor used while dragging, to tune it, or null if the prediction is disabled
+     */
+    public TouchPredictor getTouchPredictor() {
+        return mTouchPredictor;
+    }
+
+    /**
+     * Start recording the touch events received by this view, together with the current
+     * drawable and view size. See {@link GestureTrace} and
+     * {@link it.sephiroth.android.library.imagezoom.utils.GestureReplay}
+     */
+    public void startGestureRecording() {
+        final Drawable drawable = getDrawable();
+        mGestureTrace = new GestureTrace(
+            null != drawable ? drawable.getIntrinsicWidth() : 0, null != drawable ? drawable.getIntrinsicHeight() : 0,
+            getWidth(), getHeight()
+        );
+    }
+
+    /**
+     * Stop recording the touch events
+     *
+     * @return the recorded trace, or null if not recording
+     */
+    public GestureTrace stopGestureRecording() {
+        final GestureTrace trace = mGestureTrace;
+        mGestureTrace = null;
+        return trace;
+    }
+
+    public boolean isGestureRecording() {
+        return null != mGestureTrace;
+    }
+
     protected OnGestureListener getGestureListener() {
         return new GestureListener();
     }
 
+    /**
+     * Pinch gestures are handled by the view, which does not use a {@link ScaleGestureDetector} anymore.
+     * When a listener is returned, a detector is created for it and the pinch gestures
+     * only change the image through the listener, see {@link ScaleListener}
+     *
+     * @return null by default
+     * @deprecated override {@link #onTransformGesture(float, float, float, float, float, long)} instead
+     */
+    @Deprecated
     protected OnScaleGestureListener getScaleListener() {
-        return new ScaleListener();
+        return null;
+    }
+
+    private boolean overrides(String name, Class<?>... parameterTypes) {
+        try {
+            return getClass().getMethod(name, parameterTypes).getDeclaringClass() != ImageViewTouch.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
     }
 
     @Override
     protected void onLayoutChanged(final int left, final int top, final int right, final int bottom) {
         super.onLayoutChanged(left, top, right, bottom);
-        Log.v(TAG, "min: " + getMinScale() + ", max: " + getMaxScale() + ", result: " + (getMaxScale() - getMinScale()) / 2f);
-        mScaleFactor = ((getMaxScale() - getMinScale()) / 2f) + 0.5f;
+        final float minScale = getMinScale();
+        final float maxScale = getMaxScale();
+        if (LOGS_ENABLED && DEBUG) {
+            Log.v(TAG, "min: " + minScale + ", max: " + maxScale + ", result: " + (maxScale - minScale) / 2f);
+        }
+        mScaleFactor = ZoomMath.getDoubleTapStep(minScale, maxScale);
     }
 
     long mPointerUpTime;
@@ -123,31 +279,178 @@ public class ImageViewTouch extends ImageViewTouchBase {
             return false;
         }
 
+        if (null != mGestureTrace) {
+            mGestureTrace.record(event);
+        }
+
         final int action = event.getActionMasked();
 
         if (action == MotionEvent.ACTION_POINTER_UP) {
             mPointerUpTime = event.getEventTime();
         }
+        onLegacyTouchEvent(event);
 
-        mScaleDetector.onTouchEvent(event);
+        final boolean scaling = mGestureProcessor.isScaling();
+        final boolean dragging = mGestureProcessor.isDragging();
+        final boolean changed = mGestureProcessor.onTouchEvent(event);
+        // correct the prediction with the real position
+        clearPrediction();
+
+        if (scaling != mGestureProcessor.isScaling()) {
+            onScalingChanged(!scaling);
+        }
 
-        if (!mScaleDetector.isInProgress()) {
-            mGestureDetector.onTouchEvent(event);
+        if (changed) {
+            dispatchTransform(event);
+        }
+
+        mGestureDetector.onTouchEvent(event);
+
+        schedulePrediction();
+
+        // prevent a fling just after a quick pinch to zoom
+        if (action == MotionEvent.ACTION_UP && dragging && mScrollEnabled
+            && event.getEventTime() - mPointerUpTime > MIN_FLING_DELTA_TIME) {
+            dispatchFling(event);
         }
 
         switch (action) {
             case MotionEvent.ACTION_UP:
+                if (getCurrentGesture() == Gesture.PAN) {
+                    endGesture();
+                }
                 return onUp(event);
+            case MotionEvent.ACTION_CANCEL:
+                if (getCurrentGesture() == Gesture.PAN) {
+                    endGesture();
+                }
+                break;
             default:
                 break;
         }
         return true;
     }
 
+    // feeds the deprecated scale detector, and keeps the down event for the deprecated onScroll and onFling
+    private void onLegacyTouchEvent(MotionEvent event) {
+        if (mLegacyGestures && event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            if (null != mDownEvent) {
+                mDownEvent.recycle();
+            }
+            mDownEvent = MotionEvent.obtain(event);
+        }
+        if (null != mScaleDetector) {
+            mScaleDetector.onTouchEvent(event);
+        }
+    }
+
+    private void dispatchTransform(MotionEvent event) {
+        if (mLegacyGestures && mGestureProcessor.isDragging()) {
+            // same sign as the GestureDetector distances
+            onScroll(mDownEvent, event, -mGestureProcessor.getDistanceX(), -mGestureProcessor.getDistanceY());
+        } else if (null == mScaleDetector || !mGestureProcessor.isScaling()) {
+            // with a scale detector, the pinch is applied by its listener
+            onTransformGesture(
+                mGestureProcessor.getScaleFactor(), mGestureProcessor.getFocusX(), mGestureProcessor.getFocusY(),
+                mGestureProcessor.getDistanceX(), mGestureProcessor.getDistanceY(), event.getEventTime()
+            );
+        }
+    }
+
+    private void dispatchFling(MotionEvent event) {
+        if (mLegacyGestures) {
+            onFling(mDownEvent, event, mGestureProcessor.getVelocityX(), mGestureProcessor.getVelocityY());
+        } else {
+            onFling(mGestureProcessor.getVelocityX(), mGestureProcessor.getVelocityY());
+        }
+    }
+
+    private void onScalingChanged(boolean scaling) {
+        if (scaling) {
+            startGesture(Gesture.PINCH);
+            if (mPinchSnapshotEnabled) {
+                beginSnapshot();
+            }
+        } else {
+            endSnapshot();
+            if (getCurrentGesture() == Gesture.PINCH) {
+                endGesture();
+            }
+        }
+        onInteractionChanged();
+    }
+
+    private void schedulePrediction() {
+        if (null != mTouchPredictor && mGestureProcessor.isDragging() && !mPredictionScheduled) {
+            mPredictionScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mPredictionCallback);
+        }
+    }
+
+    private void applyPrediction(long timeNanos) {
+        if (null == mTouchPredictor || !mScrollEnabled || !mGestureProcessor.isDragging()) {
+            return;
+        }
+        if (!mTouchPredictor.predict(timeNanos, mPrediction)) {
+            return;
+        }
+
+        // the engine clamps the translation to the image bounds, remember what has been applied
+        final float x = mSuppTransform.getTranslateX();
+        final float y = mSuppTransform.getTranslateY();
+        mEngine.panBy(mPrediction[0], mPrediction[1]);
+        mPredictionX = mSuppTransform.getTranslateX() - x;
+        mPredictionY = mSuppTransform.getTranslateY() - y;
+        // the commit requested during the input phase of this frame may have run already
+        commitImageMatrix();
+        if (mPredictionX != 0 || mPredictionY != 0) {
+            scheduleStaleCheck();
+        }
+    }
+
+    private void scheduleStaleCheck() {
+        if (!mStaleCheckScheduled) {
+            mStaleCheckScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mStaleCheckCallback);
+        }
+    }
+
+    private void clearPrediction() {
+        if (mPredictionX != 0 || mPredictionY != 0) {
+            mEngine.panBy(-mPredictionX, -mPredictionY);
+            mPredictionX = 0;
+            mPredictionY = 0;
+            requestImageMatrixCommit();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mPredictionScheduled) {
+            mPredictionScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mPredictionCallback);
+        }
+        if (mStaleCheckScheduled) {
+            mStaleCheckScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mStaleCheckCallback);
+        }
+        clearPrediction();
+        if (null != mDownEvent) {
+            mDownEvent.recycle();
+            mDownEvent = null;
+        }
+    }
+
+    @Override
+    protected boolean isInteracting() {
+        return super.isInteracting() || (null != mGestureProcessor && mGestureProcessor.isScaling());
+    }
+
     @Override
     protected void onZoomAnimationCompleted(float scale) {
 
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.d(TAG, "onZoomAnimationCompleted. scale: " + scale + ", minZoom: " + getMinScale());
         }
 
@@ -157,65 +460,101 @@ public class ImageViewTouch extends ImageViewTouchBase {
     }
 
     protected float onDoubleTapPost(float scale, final float maxZoom, final float minScale) {
-        if ((scale + mScaleFactor) <= maxZoom) {
-            return scale + mScaleFactor;
-        } else {
-            return minScale;
-        }
+        return ZoomMath.getDoubleTapTarget(scale, mScaleFactor, maxZoom, minScale);
     }
 
     public boolean onSingleTapConfirmed(MotionEvent e) {
         return true;
     }
 
-    public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-        if (!canScroll()) {
+    /**
+     * Called when a pinch or a drag changes the image. The scale is applied around the focal point,
+     * then the image is panned by the given distance
+     *
+     * @param scaleFactor the scale change
+     * @param distanceX   the horizontal distance, in pixels, the focal point moved
+     * @param distanceY   the vertical distance, in pixels, the focal point moved
+     * @param eventTime   the time of the event, see {@link MotionEvent#getEventTime()}
+     * @return true if the image changed
+     */
+    public boolean onTransformGesture(
+        float scaleFactor, float focusX, float focusY, float distanceX, float distanceY, long eventTime) {
+        if (!mScaleEnabled) {
+            scaleFactor = 1;
+        }
+        if (!mScrollEnabled) {
+            distanceX = 0;
+            distanceY = 0;
+        }
+        if (scaleFactor == 1 && ((distanceX == 0 && distanceY == 0) || !canScroll())) {
             return false;
         }
+
         mUserScaled = true;
-        scrollBy(-distanceX, -distanceY);
-        invalidate();
+        if (mGestureProcessor.isDragging() && getCurrentGesture() != Gesture.PAN) {
+            startGesture(Gesture.PAN);
+        }
+        onInputEvent(eventTime);
+
+        float targetScale = getScale();
+        if (scaleFactor != 1) {
+            targetScale = Math.min(getMaxScale(), Math.max(targetScale * scaleFactor, getMinScale() - MIN_SCALE_DIFF));
+            mDoubleTapDirection = 1;
+        }
+        zoomAndPanBy(targetScale, focusX, focusY, distanceX, distanceY);
         return true;
     }
 
-    public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+    /**
+     * Called when a drag ends with the given velocity, in pixels per second
+     *
+     * @return true if a fling started
+     */
+    public boolean onFling(float velocityX, float velocityY) {
         if (!canScroll()) {
             return false;
         }
 
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.i(TAG, "onFling");
         }
 
         if (Math.abs(velocityX) > (mMinFlingVelocity * 4) || Math.abs(velocityY) > (mMinFlingVelocity * 4)) {
-            if (DEBUG) {
-                Log.v(TAG, "velocity: " + velocityY);
-                Log.v(TAG, "diff: " + (e2.getY() - e1.getY()));
-            }
-
-            final float scale = Math.min(Math.max(2f, getScale() / 2), 3.f);
-
-            float scaledDistanceX = ((velocityX) / mMaxFlingVelocity) * (getWidth() * scale);
-            float scaledDistanceY = ((velocityY) / mMaxFlingVelocity) * (getHeight() * scale);
-
-            if (DEBUG) {
-                Log.v(TAG, "scale: " + getScale() + ", scale_final: " + scale);
-                Log.v(TAG, "scaledDistanceX: " + scaledDistanceX);
-                Log.v(TAG, "scaledDistanceY: " + scaledDistanceY);
+            if (LOGS_ENABLED && DEBUG) {
+                Log.v(TAG, "velocityX: " + velocityX + ", velocityY: " + velocityY);
             }
 
             mUserScaled = true;
-
-            double total = Math.sqrt(Math.pow(scaledDistanceX, 2) + Math.pow(scaledDistanceY, 2));
-
-            scrollBy(scaledDistanceX, scaledDistanceY, (long) Math.min(Math.max(300, total / 5), 800));
-
-            postInvalidate();
+            fling(velocityX, velocityY);
             return true;
         }
         return false;
     }
 
+    /**
+     * Called while the image is dragged with one finger
+     *
+     * @param e1        the down event which started the drag
+     * @param e2        the current move event
+     * @param distanceX the distance moved since the last call, as in
+     *                  {@link GestureDetector.OnGestureListener#onScroll(MotionEvent, MotionEvent, float, float)}
+     * @deprecated override {@link #onTransformGesture(float, float, float, float, float, long)} instead
+     */
+    @Deprecated
+    public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+        return onTransformGesture(1, e2.getX(), e2.getY(), -distanceX, -distanceY, e2.getEventTime());
+    }
+
+    /**
+     * @param e1 the down event which started the drag
+     * @param e2 the up event
+     * @deprecated override {@link #onFling(float, float)} instead
+     */
+    @Deprecated
+    public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+        return onFling(velocityX, velocityY);
+    }
+
     public boolean onDown(MotionEvent e) {
         if (getBitmapChanged()) {
             return false;
@@ -240,14 +579,6 @@ public class ImageViewTouch extends ImageViewTouchBase {
         return true;
     }
 
-    public boolean canScroll() {
-        if (getScale() > 1) {
-            return true;
-        }
-        RectF bitmapRect = getBitmapRect();
-        return !mViewPort.contains(bitmapRect);
-    }
-
     /**
      * Determines whether this ImageViewTouch can be scrolled.
      *
@@ -259,7 +590,7 @@ public class ImageViewTouch extends ImageViewTouchBase {
     public boolean canScroll(int direction) {
         RectF bitmapRect = getBitmapRect();
         updateRect(bitmapRect, mScrollPoint);
-        Rect imageViewRect = new Rect();
+        final Rect imageViewRect = mVisibleRect;
         getGlobalVisibleRect(imageViewRect);
 
         if (null == bitmapRect) {
@@ -289,14 +620,13 @@ public class ImageViewTouch extends ImageViewTouchBase {
 
         @Override
         public boolean onDoubleTap(MotionEvent e) {
-            if (DEBUG) {
+            if (LOGS_ENABLED && DEBUG) {
                 Log.i(TAG, "onDoubleTap. double tap enabled? " + mDoubleTapEnabled);
             }
             if (mDoubleTapEnabled) {
-                if (Build.VERSION.SDK_INT >= 19) {
-                    if (mScaleDetector.isQuickScaleEnabled()) {
-                        return true;
-                    }
+                if (mGestureProcessor.isQuickScaleEnabled()) {
+                    mGestureProcessor.startQuickScale(e.getX(), e.getY());
+                    return true;
                 }
 
                 mUserScaled = true;
@@ -305,6 +635,7 @@ public class ImageViewTouch extends ImageViewTouchBase {
                 float targetScale;
                 targetScale = onDoubleTapPost(scale, getMaxScale(), getMinScale());
                 targetScale = Math.min(getMaxScale(), Math.max(targetScale, getMinScale()));
+                startGesture(Gesture.DOUBLE_TAP);
                 zoomTo(targetScale, e.getX(), e.getY(), mDefaultAnimationDuration);
 
             }
@@ -319,56 +650,13 @@ public class ImageViewTouch extends ImageViewTouchBase {
         @Override
         public void onLongPress(MotionEvent e) {
             if (isLongClickable()) {
-                if (!mScaleDetector.isInProgress()) {
+                if (!mGestureProcessor.isScaling()) {
                     setPressed(true);
                     performLongClick();
                 }
             }
         }
 
-        @Override
-        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-            if (!mScrollEnabled) {
-                return false;
-            }
-            if (e1 == null || e2 == null) {
-                return false;
-            }
-            if (e1.getPointerCount() > 1 || e2.getPointerCount() > 1) {
-                return false;
-            }
-            if (mScaleDetector.isInProgress()) {
-                return false;
-            }
-            return ImageViewTouch.this.onScroll(e1, e2, distanceX, distanceY);
-        }
-
-        @Override
-        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-            if (!mScrollEnabled) {
-                return false;
-            }
-            if (e1 == null || e2 == null) {
-                return false;
-            }
-            if (e1.getPointerCount() > 1 || e2.getPointerCount() > 1) {
-                return false;
-            }
-            if (mScaleDetector.isInProgress()) {
-                return false;
-            }
-
-            final long delta = (SystemClock.uptimeMillis() - mPointerUpTime);
-
-            // prevent fling happening just
-            // after a quick pinch to zoom
-            if (delta > MIN_FLING_DELTA_TIME) {
-                return ImageViewTouch.this.onFling(e1, e2, velocityX, velocityY);
-            } else {
-                return false;
-            }
-        }
-
         @Override
         public boolean onSingleTapUp(MotionEvent e) {
             return ImageViewTouch.this.onSingleTapUp(e);
@@ -376,7 +664,7 @@ public class ImageViewTouch extends ImageViewTouchBase {
 
         @Override
         public boolean onDown(MotionEvent e) {
-            if (DEBUG) {
+            if (LOGS_ENABLED && DEBUG) {
                 Log.i(TAG, "onDown");
             }
             stopAllAnimations();
@@ -385,21 +673,23 @@ public class ImageViewTouch extends ImageViewTouchBase {
         }
     }
 
+    /**
+     * Applies the pinch gestures of the {@link ScaleGestureDetector} created for {@link #getScaleListener()}
+     *
+     * @deprecated override {@link #onTransformGesture(float, float, float, float, float, long)} instead
+     */
+    @Deprecated
     public class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
         protected boolean mScaled = false;
 
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
             float span = detector.getCurrentSpan() - detector.getPreviousSpan();
-            float targetScale = getScale() * detector.getScaleFactor();
 
             if (mScaleEnabled) {
                 if (mScaled && span != 0) {
-                    mUserScaled = true;
-                    targetScale = Math.min(getMaxScale(), Math.max(targetScale, getMinScale() - MIN_SCALE_DIFF));
-                    zoomTo(targetScale, detector.getFocusX(), detector.getFocusY());
-                    mDoubleTapDirection = 1;
-                    invalidate();
+                    onTransformGesture(
+                        detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY(), 0, 0, detector.getEventTime());
                     return true;
                 }
 
@@ -411,7 +701,6 @@ public class ImageViewTouch extends ImageViewTouchBase {
             }
             return true;
         }
-
     }
 
     public interface OnImageViewTouchDoubleTapListener {
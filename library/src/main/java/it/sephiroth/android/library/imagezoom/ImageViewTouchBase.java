@@ -1,25 +1,39 @@
 package it.sephiroth.android.library.imagezoom;
 
-import android.animation.Animator;
-import android.animation.AnimatorSet;
-import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.PointF;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.ViewConfiguration;
-import android.view.animation.DecelerateInterpolator;
+import android.view.WindowManager;
 import android.widget.ImageView;
 
+import it.sephiroth.android.library.imagezoom.core.FitMode;
+import it.sephiroth.android.library.imagezoom.core.LayoutState;
+import it.sephiroth.android.library.imagezoom.core.Transform;
+import it.sephiroth.android.library.imagezoom.core.TransformState;
+import it.sephiroth.android.library.imagezoom.core.ZoomEngine;
+import it.sephiroth.android.library.imagezoom.core.ZoomMath;
+import it.sephiroth.android.library.imagezoom.graphics.BitmapPool;
 import it.sephiroth.android.library.imagezoom.graphics.FastBitmapDrawable;
+import it.sephiroth.android.library.imagezoom.graphics.IPrefetchDrawable;
+import it.sephiroth.android.library.imagezoom.graphics.IRenderQualityDrawable;
+import it.sephiroth.android.library.imagezoom.graphics.IViewportDrawable;
+import it.sephiroth.android.library.imagezoom.graphics.RenderQualityPolicy;
 import it.sephiroth.android.library.imagezoom.utils.IDisposable;
+import it.sephiroth.android.library.imagezoom.utils.ZoomTrace;
 
 /**
  * Base View to manage image zoom/scrool/pinch operations
@@ -28,7 +42,7 @@ import it.sephiroth.android.library.imagezoom.utils.IDisposable;
  */
 public abstract class ImageViewTouchBase extends ImageView implements IDisposable {
     public static final String VERSION = BuildConfig.VERSION_NAME;
-    public static final float MIN_SCALE_DIFF = 0.1f;
+    public static final float MIN_SCALE_DIFF = ZoomEngine.MIN_SCALE_DIFF;
 
     public interface OnDrawableChangeListener {
         /**
@@ -47,6 +61,58 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         void onLayoutChanged(boolean changed, int left, int top, int right, int bottom);
     }
 
+    /**
+     * Gestures reported to the {@link OnMetricsListener}
+     */
+    public enum Gesture {
+        PINCH,
+        PAN,
+        FLING,
+        DOUBLE_TAP
+    }
+
+    /**
+     * Receives the performance measurements of the view, see {@link #setOnMetricsListener(OnMetricsListener)}.<br />
+     * Methods are invoked on the main thread, while drawing or laying out the view, so they must return quickly.
+     * See {@link it.sephiroth.android.library.imagezoom.utils.ViewMetrics} for an implementation which
+     * collects the values into histograms.
+     */
+    public interface OnMetricsListener {
+        /**
+         * Called after every frame
+         *
+         * @param gesture        the gesture in progress, or null
+         * @param drawNanos      time spent in onDraw, in nanoseconds
+         * @param inputLatencyMs time between the oldest input event applied since the previous frame
+         *                       and this frame, in milliseconds, or -1 if no input event has been applied
+         */
+        void onFrameDrawn(Gesture gesture, long drawNanos, long inputLatencyMs);
+
+        /**
+         * Called when a fling or zoom animation stops
+         *
+         * @param gesture       the gesture which started the animation, or null
+         * @param frames        the number of frames of the animation
+         * @param droppedFrames the number of frames skipped by the display while the animation was running
+         */
+        void onAnimationCompleted(Gesture gesture, int frames, int droppedFrames);
+
+        /**
+         * Called after every layout pass
+         *
+         * @param layoutNanos     time spent in onLayout, in nanoseconds
+         * @param drawableChanged true if a new drawable has been laid out
+         */
+        void onLayoutMeasured(long layoutNanos, boolean drawableChanged);
+
+        /**
+         * Called when a gesture is completed, including the animation it started
+         *
+         * @param durationMs the gesture duration, in milliseconds
+         */
+        void onGestureCompleted(Gesture gesture, long durationMs);
+    }
+
     /**
      * Use this to change the {@link ImageViewTouchBase#setDisplayType(DisplayType)} of
      * this View
@@ -57,39 +123,62 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         /**
          * Image is not scaled by default
          */
-        NONE,
+        NONE(FitMode.NONE),
         /**
          * Image will be always presented using this view's bounds
          */
-        FIT_TO_SCREEN,
+        FIT_TO_SCREEN(FitMode.FIT_TO_SCREEN),
         /**
          * Image will be scaled only if bigger than the bounds of this view
          */
-        FIT_IF_BIGGER,
+        FIT_IF_BIGGER(FitMode.FIT_IF_BIGGER),
         /**
          * Image will be scaled to fit the Height of the device
          */
-        FIT_HEIGHT,
+        FIT_HEIGHT(FitMode.FIT_HEIGHT),
         /**
          * Image will be scaled to fit the Width of the device
          */
-        FIT_WIDTH
+        FIT_WIDTH(FitMode.FIT_WIDTH);
+
+        private final FitMode mFitMode;
+
+        DisplayType(FitMode fitMode) {
+            mFitMode = fitMode;
+        }
+
+        /**
+         * Returns the same mode, as used by the classes in the core package
+         */
+        public FitMode getFitMode() {
+            return mFitMode;
+        }
     }
 
     public static final String TAG = "ImageViewTouchBase";
+    // compile time constant, the debug logging is removed from the build when false. See -PimagezoomNoLogs
+    protected static final boolean LOGS_ENABLED = BuildConfig.LOGS_ENABLED;
     @SuppressWarnings ("checkstyle:staticvariablename")
     protected static boolean DEBUG = false;
-    public static final float ZOOM_INVALID = -1f;
-    protected Matrix mBaseMatrix = new Matrix();
-    protected Matrix mSuppMatrix = new Matrix();
-    protected Matrix mNextMatrix;
+    public static final float ZOOM_INVALID = ZoomEngine.ZOOM_INVALID;
+    /**
+     * Fling deceleration, in dp per second squared
+     */
+    public static final int FLING_DECELERATION_DP = 4000;
+    private static final float NANOS_PER_SECOND = 1e9f;
+    // zoom, pan and layout logic, this view only applies its results
+    protected final ZoomEngine mEngine = new ZoomEngine();
+    // base and support transforms, the display matrix is materialized from them only when needed.
+    // Call mState.invalidate() after modifying them directly
+    protected final TransformState mState = mEngine.getState();
+    protected final Transform mBaseTransform = mState.getBase();
+    protected final Transform mSuppTransform = mState.getSupport();
+    protected final Transform mDisplayTransform = new Transform();
+    // version of the state materialized in mDisplayMatrix
+    private int mDisplayMatrixVersion = -1;
+    protected Transform mNextTransform;
     protected Runnable mLayoutRunnable = null;
     protected boolean mUserScaled = false;
-    protected float mMaxZoom = ZOOM_INVALID;
-    protected float mMinZoom = ZOOM_INVALID;
-    // true when min and max zoom are explicitly defined
-    protected boolean mMaxZoomDefined;
-    protected boolean mMinZoomDefined;
     protected final Matrix mDisplayMatrix = new Matrix();
     protected final float[] mMatrixValues = new float[9];
     protected DisplayType mScaleType = DisplayType.FIT_IF_BIGGER;
@@ -105,9 +194,69 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     protected PointF mScrollPoint = new PointF();
     protected RectF mViewPort = new RectF();
     protected RectF mViewPortOld = new RectF();
-    private Animator mCurrentAnimation;
+    // visible area at the end of the running animation
+    protected final RectF mDestinationRect = new RectF();
+    protected final Transform mDestinationTransform = new Transform();
+    private final float[] mRectValues = new float[4];
+    private final float[] mPointValues = new float[2];
+    // conversion of the matrices passed to the deprecated matrix based methods
+    private final Transform mMatrixTransform = new Transform();
+    protected boolean mDestinationValid;
+    // steps fling, scroll and zoom animations in a single frame callback
+    private final AnimationEngine mAnimationEngine = new AnimationEngine(this);
+    // expected time between two frames of the display
+    protected long mFrameIntervalNanos = AnimationEngine.DEFAULT_FRAME_INTERVAL_NANOS;
+    private boolean mBatchedCommits;
+    private boolean mCommitPending;
+    // state version applied by the last commit
+    private int mCommittedVersion = -1;
+    private int mCommitCount;
+    private int mCoalescedCommitCount;
+    private int mRedundantCommitCount;
+    private final Runnable mCommitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCommitPending = false;
+            commitImageMatrix();
+        }
+    };
+    // fling deceleration, in pixels per second squared
+    protected float mFlingDeceleration;
+    private RenderQualityPolicy mRenderQualityPolicy = new RenderQualityPolicy();
+    private int mRenderQuality = RenderQualityPolicy.QUALITY_HIGH;
+    // screen resolution copy of the content, see beginSnapshot()
+    private Bitmap mSnapshot;
+    private final Matrix mSnapshotInverse = new Matrix();
+    private final Matrix mSnapshotDelta = new Matrix();
+    private final Paint mSnapshotPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
     private OnDrawableChangeListener mDrawableChangeListener;
     private OnLayoutChangeListener mOnLayoutChangeListener;
+    private OnMetricsListener mMetricsListener;
+    // delay of the coalesced layout, negative when disabled
+    private long mLayoutCoalescingDelay = -1;
+    private boolean mLayoutPending;
+    private float mPendingDeltaX;
+    private float mPendingDeltaY;
+    // content point, at the viewport center when the first coalesced layout pass happened
+    private final float[] mLayoutFocus = new float[2];
+    private final Runnable mLayoutApplyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyPendingLayout();
+        }
+    };
+    private Gesture mGesture;
+    // gesture which started the running animation
+    private Gesture mAnimationGesture;
+    private long mGestureStartTime;
+    // time of the oldest input event applied since the last frame, -1 if none
+    private long mInputEventTime = -1;
+    private BitmapPool mBitmapPool;
+    // zoom to restore at the next full layout
+    private ZoomSnapshot mPendingSnapshot;
+    private ZoomSnapshotCache mSnapshotCache;
+    // source of the current drawable, see setImageDrawable(Drawable, String)
+    private String mSourceId;
 
     public ImageViewTouchBase(Context context) {
         this(context, null);
@@ -134,19 +283,130 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         mOnLayoutChangeListener = listener;
     }
 
+    /**
+     * Coalesce the layout passes caused by size changes only, for instance while the window is resized in
+     * freeform or split screen mode. The image is not rescaled at every pass: it's only moved to keep the same
+     * point at the center, and the full layout (new base matrix, zoom limits, scale, {@link #onLayoutChanged})
+     * is done once, later.<br />
+     * Layout passes caused by a new drawable or display type are never delayed.
+     *
+     * @param delayMs 0 to do the full layout at most once per frame, a positive value to wait until the size
+     *                did not change for the given time, or a negative value to disable the coalescing (the default)
+     */
+    public void setLayoutCoalescingDelay(long delayMs) {
+        mLayoutCoalescingDelay = delayMs;
+        if (delayMs < 0) {
+            applyPendingLayout();
+        }
+    }
+
+    public long getLayoutCoalescingDelay() {
+        return mLayoutCoalescingDelay;
+    }
+
+    /**
+     * Set the listener which will receive the draw, layout, input latency and animation measurements.
+     * Measurements are only taken while a listener is set
+     *
+     * @param listener the listener, or null to stop the measurements
+     */
+    public void setOnMetricsListener(OnMetricsListener listener) {
+        mMetricsListener = listener;
+        mInputEventTime = -1;
+    }
+
+    public OnMetricsListener getOnMetricsListener() {
+        return mMetricsListener;
+    }
+
     protected void init(Context context, AttributeSet attrs, int defStyle) {
         ViewConfiguration configuration = ViewConfiguration.get(context);
         mMinFlingVelocity = configuration.getScaledMinimumFlingVelocity();
         mMaxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        mFlingDeceleration = FLING_DECELERATION_DP * getResources().getDisplayMetrics().density;
         mDefaultAnimationDuration = getResources().getInteger(android.R.integer.config_shortAnimTime);
+
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        final float refreshRate = null != windowManager ? windowManager.getDefaultDisplay().getRefreshRate() : 0;
+        if (refreshRate > 1) {
+            mFrameIntervalNanos = (long) (NANOS_PER_SECOND / refreshRate);
+            mAnimationEngine.setFrameInterval(mFrameIntervalNanos);
+        }
         setScaleType(ScaleType.MATRIX);
     }
 
     /**
-     * Clear the current drawable
+     * Clear the current drawable, and discard the one waiting for the first layout, if any.<br />
+     * If a {@link BitmapPool} has been assigned, the bitmap of the current
+     * {@link FastBitmapDrawable} is returned to the pool.
      */
     public void clear() {
-        setImageBitmap(null);
+        final Drawable drawable = getDrawable();
+        // unlike setImageDrawable, never deferred: the bitmap is pooled only once it cannot be drawn anymore
+        mLayoutRunnable = null;
+        setImageDrawableInternal(null, null, ZOOM_INVALID, ZOOM_INVALID);
+
+        if (null != mBitmapPool && drawable instanceof FastBitmapDrawable) {
+            ((FastBitmapDrawable) drawable).recycleBitmap(mBitmapPool);
+        }
+    }
+
+    /**
+     * Set the pool which will receive the displayed bitmaps on {@link #clear()} and {@link #dispose()}.
+     * Bitmaps passed to {@link #setImageBitmap(Bitmap)} are then owned by this view and must not be used elsewhere.
+     *
+     * @param pool the bitmap pool, or null to disable the recycling
+     */
+    public void setBitmapPool(BitmapPool pool) {
+        mBitmapPool = pool;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * Set the policy used to choose the rendering quality of drawables implementing
+     * {@link IRenderQualityDrawable}. Pass null to always draw with the highest quality
+     */
+    public void setRenderQualityPolicy(RenderQualityPolicy policy) {
+        mRenderQualityPolicy = policy;
+        invalidate();
+    }
+
+    public RenderQualityPolicy getRenderQualityPolicy() {
+        return mRenderQualityPolicy;
+    }
+
+    /**
+     * Returns the quality used to draw the last frame
+     */
+    public int getRenderQuality() {
+        return mRenderQuality;
+    }
+
+    /**
+     * Returns true while a gesture or an animation is changing the image matrix
+     */
+    protected boolean isInteracting() {
+        return mAnimationEngine.isRunning();
+    }
+
+    /**
+     * Must be called every time {@link #isInteracting()} may have changed, to
+     * redraw the image if the rendering quality needs to be updated
+     */
+    protected void onInteractionChanged() {
+        if (computeRenderQuality() != mRenderQuality) {
+            invalidate();
+        }
+    }
+
+    protected int computeRenderQuality() {
+        if (null == mRenderQualityPolicy) {
+            return RenderQualityPolicy.QUALITY_HIGH;
+        }
+        return mRenderQualityPolicy.selectQuality(isInteracting(), mBaseTransform.getScaleX() * mSuppTransform.getScaleX());
     }
 
     /**
@@ -156,11 +416,12 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      */
     public void setDisplayType(DisplayType type) {
         if (type != mScaleType) {
-            if (DEBUG) {
+            if (LOGS_ENABLED && DEBUG) {
                 Log.i(TAG, "setDisplayType: " + type);
             }
             mUserScaled = false;
             mScaleType = type;
+            mEngine.setFitMode(type.getFitMode());
             mScaleTypeChanged = true;
             requestLayout();
         }
@@ -171,30 +432,66 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     protected void setMinScale(float value) {
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.d(TAG, "setMinZoom: " + value);
         }
 
-        mMinZoom = value;
+        mEngine.setMinZoom(value);
     }
 
     protected void setMaxScale(float value) {
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.d(TAG, "setMaxZoom: " + value);
         }
-        mMaxZoom = value;
+        mEngine.setMaxZoom(value);
+    }
+
+    /**
+     * @deprecated replaces the <code>mMinZoomDefined</code> field, use {@link ZoomEngine#getMinZoomLimit()}
+     */
+    @Deprecated
+    protected boolean isMinZoomDefined() {
+        return mEngine.getMinZoomLimit() != ZOOM_INVALID;
+    }
+
+    /**
+     * @deprecated replaces the <code>mMaxZoomDefined</code> field, use {@link ZoomEngine#getMaxZoomLimit()}
+     */
+    @Deprecated
+    protected boolean isMaxZoomDefined() {
+        return mEngine.getMaxZoomLimit() != ZOOM_INVALID;
     }
 
     protected void onViewPortChanged(float left, float top, float right, float bottom) {
         mViewPort.set(left, top, right, bottom);
+        mEngine.setViewPort(left, top, right, bottom);
         mCenter.x = mViewPort.centerX();
         mCenter.y = mViewPort.centerY();
     }
 
-    @SuppressWarnings ("checkstyle:cyclomaticcomplexity")
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
-        if (DEBUG) {
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_LAYOUT);
+        }
+
+        if (null == mMetricsListener) {
+            layoutImage(changed, left, top, right, bottom);
+        } else {
+            final boolean drawableChanged = mBitmapChanged;
+            final long start = System.nanoTime();
+            layoutImage(changed, left, top, right, bottom);
+            mMetricsListener.onLayoutMeasured(System.nanoTime() - start, drawableChanged);
+        }
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.end();
+        }
+    }
+
+    @SuppressWarnings ("checkstyle:cyclomaticcomplexity")
+    private void layoutImage(boolean changed, int left, int top, int right, int bottom) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.e(TAG, "onLayout: " + changed + ", bitmapChanged: " + mBitmapChanged + ", scaleChanged: " + mScaleTypeChanged);
         }
 
@@ -222,108 +519,47 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
 
         if (drawable != null) {
 
+            if (changed && !mBitmapChanged && !mScaleTypeChanged && mLayoutCoalescingDelay >= 0 && !mViewPortOld.isEmpty()) {
+                deferLayout(deltaX, deltaY);
+                return;
+            }
+
             if (changed || mScaleTypeChanged || mBitmapChanged) {
+                // a full layout, the coalesced one is no more needed
+                cancelPendingLayout();
 
                 if (mBitmapChanged) {
                     mUserScaled = false;
-                    mBaseMatrix.reset();
-                    if (!mMinZoomDefined) {
-                        mMinZoom = ZOOM_INVALID;
-                    }
-                    if (!mMaxZoomDefined) {
-                        mMaxZoom = ZOOM_INVALID;
-                    }
+                    mEngine.resetZoomLimits();
                 }
 
-                float scale = 1;
-
-                // retrieve the old values
-                float oldDefaultScale = getDefaultScale(getDisplayType());
-                float oldMatrixScale = getScale(mBaseMatrix);
-                float oldScale = getScale();
-                float oldMinScale = Math.min(1f, 1f / oldMatrixScale);
-
-                getProperBaseMatrix(drawable, mBaseMatrix, mViewPort);
-
-                float newMatrixScale = getScale(mBaseMatrix);
+                final float oldScale = getScale();
 
-                if (DEBUG) {
-                    Log.d(TAG, "old matrix scale: " + oldMatrixScale);
-                    Log.d(TAG, "new matrix scale: " + newMatrixScale);
-                    Log.d(TAG, "old min scale: " + oldMinScale);
-                    Log.d(TAG, "old scale: " + oldScale);
-                }
-
-                // 1. bitmap changed or scaletype changed
                 if (mBitmapChanged || mScaleTypeChanged) {
-
-                    if (DEBUG) {
+                    // 1. bitmap changed or scaletype changed
+                    if (LOGS_ENABLED && DEBUG) {
                         Log.d(TAG, "display type: " + getDisplayType());
-                        Log.d(TAG, "newMatrix: " + mNextMatrix);
-                    }
-
-                    if (mNextMatrix != null) {
-                        mSuppMatrix.set(mNextMatrix);
-                        mNextMatrix = null;
-                        scale = getScale();
-                    } else {
-                        mSuppMatrix.reset();
-                        scale = getDefaultScale(getDisplayType());
-                    }
-
-                    setImageMatrix(getImageViewMatrix());
-
-                    if (scale != getScale()) {
-                        if (DEBUG) {
-                            Log.v(TAG, "scale != getScale: " + scale + " != " + getScale());
-                        }
-                        zoomTo(scale);
+                        Log.d(TAG, "newMatrix: " + mNextTransform);
                     }
 
-                } else if (changed) {
-
+                    mEngine.layoutContent(mNextTransform);
+                    mNextTransform = null;
+                } else {
                     // 2. layout size changed
-
-                    if (!mMinZoomDefined) {
-                        mMinZoom = ZOOM_INVALID;
-                    }
-                    if (!mMaxZoomDefined) {
-                        mMaxZoom = ZOOM_INVALID;
-                    }
-
-                    setImageMatrix(getImageViewMatrix());
-                    postTranslate(-deltaX, -deltaY);
-
-                    if (!mUserScaled) {
-                        scale = getDefaultScale(getDisplayType());
-                        if (DEBUG) {
-                            Log.v(TAG, "!userScaled. scale=" + scale);
-                        }
-                        zoomTo(scale);
-                    } else {
-                        if (Math.abs(oldScale - oldMinScale) > MIN_SCALE_DIFF) {
-                            scale = (oldMatrixScale / newMatrixScale) * oldScale;
-                        }
-                        if (DEBUG) {
-                            Log.v(TAG, "userScaled. scale=" + scale);
-                        }
-                        zoomTo(scale);
-                    }
-
-                    if (DEBUG) {
-                        Log.d(TAG, "old min scale: " + oldDefaultScale);
-                        Log.d(TAG, "old scale: " + oldScale);
-                        Log.d(TAG, "new scale: " + scale);
-                    }
+                    mEngine.layoutViewPort(deltaX, deltaY, mUserScaled);
                 }
 
-                if (scale > getMaxScale() || scale < getMinScale()) {
-                    // if current scale if outside the min/max bounds
-                    // then restore the correct scale
-                    zoomTo(scale);
+                if (null != mPendingSnapshot) {
+                    applyZoomSnapshot(mPendingSnapshot);
+                    mPendingSnapshot = null;
                 }
 
-                center(true, true);
+                // the view is drawn right after the layout, pending changes cannot wait the next frame
+                commitImageMatrix();
+
+                if (getScale() != oldScale) {
+                    onZoom(getScale());
+                }
 
                 if (mBitmapChanged) {
                     onDrawableChanged(drawable);
@@ -339,7 +575,7 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
                     mBitmapChanged = false;
                 }
 
-                if (DEBUG) {
+                if (LOGS_ENABLED && DEBUG) {
                     Log.d(TAG, "scale: " + getScale() + ", minScale: " + getMinScale() + ", maxScale: " + getMaxScale());
                 }
             }
@@ -361,11 +597,81 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         }
     }
 
+    private void deferLayout(float deltaX, float deltaY) {
+        if (!mLayoutPending) {
+            mLayoutPending = true;
+            mPendingDeltaX = 0;
+            mPendingDeltaY = 0;
+            if (!mEngine.getContentPoint(mViewPortOld.centerX(), mViewPortOld.centerY(), mLayoutFocus)) {
+                mLayoutFocus[0] = mBitmapRect.centerX();
+                mLayoutFocus[1] = mBitmapRect.centerY();
+            }
+        }
+
+        mPendingDeltaX += deltaX;
+        mPendingDeltaY += deltaY;
+
+        // only a translation until the full layout: the focal point stays at the center
+        mEngine.anchorContentPoint(mLayoutFocus[0], mLayoutFocus[1], mViewPort.centerX(), mViewPort.centerY());
+        commitImageMatrix();
+
+        if (mLayoutCoalescingDelay > 0) {
+            removeCallbacks(mLayoutApplyRunnable);
+            postDelayed(mLayoutApplyRunnable, mLayoutCoalescingDelay);
+        } else if (mLayoutCoalescingDelay == 0) {
+            removeCallbacks(mLayoutApplyRunnable);
+            postOnAnimation(mLayoutApplyRunnable);
+        }
+    }
+
+    private void cancelPendingLayout() {
+        if (mLayoutPending) {
+            mLayoutPending = false;
+            removeCallbacks(mLayoutApplyRunnable);
+        }
+    }
+
+    /**
+     * Run the full layout delayed by {@link #setLayoutCoalescingDelay(long)}
+     */
+    private void applyPendingLayout() {
+        if (!mLayoutPending) {
+            return;
+        }
+        cancelPendingLayout();
+
+        if (null == getDrawable() || mBitmapChanged || mScaleTypeChanged) {
+            // a full layout is already requested
+            return;
+        }
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_LAYOUT);
+        }
+
+        final float oldScale = getScale();
+        mEngine.layoutViewPort(mPendingDeltaX, mPendingDeltaY, mUserScaled);
+        if (mUserScaled) {
+            mEngine.anchorContentPoint(mLayoutFocus[0], mLayoutFocus[1], mViewPort.centerX(), mViewPort.centerY());
+            mEngine.center(true, true);
+        }
+        commitImageMatrix();
+
+        if (getScale() != oldScale) {
+            onZoom(getScale());
+        }
+        onLayoutChanged(getLeft(), getTop(), getRight(), getBottom());
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.end();
+        }
+    }
+
     @Override
     protected void onConfigurationChanged(final Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
 
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.i(
                 TAG,
                 "onConfigurationChanged. scale: " + getScale() + ", minScale: " + getMinScale() + ", mUserScaled: " + mUserScaled
@@ -376,7 +682,7 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
             mUserScaled = Math.abs(getScale() - getMinScale()) > MIN_SCALE_DIFF;
         }
 
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.v(TAG, "mUserScaled: " + mUserScaled);
         }
     }
@@ -390,15 +696,15 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     public void resetMatrix() {
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.i(TAG, "resetMatrix");
         }
-        mSuppMatrix = new Matrix();
+        mState.resetSupport();
 
         float scale = getDefaultScale(getDisplayType());
-        setImageMatrix(getImageViewMatrix());
+        commitImageMatrix();
 
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.d(TAG, "default scale: " + scale + ", scale: " + getScale());
         }
 
@@ -410,22 +716,7 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     protected float getDefaultScale(DisplayType type) {
-        if (type == DisplayType.FIT_TO_SCREEN) {
-            // always fit to screen
-            return 1f;
-        } else if (type == DisplayType.FIT_IF_BIGGER) {
-            // normal scale if smaller, fit to screen otherwise
-            return Math.min(1f, 1f / getScale(mBaseMatrix));
-        } else if (type == DisplayType.FIT_HEIGHT) {
-            // scale to match the device height
-            return getHeight() / (getYScale(mBaseMatrix) * mBitmapRect.height());
-        } else if (type == DisplayType.FIT_WIDTH) {
-            // scale to match the device width
-            return getWidth() / (getXScale(mBaseMatrix) * mBitmapRect.width());
-        } else {
-            // no scale
-            return 1f / getScale(mBaseMatrix);
-        }
+        return mEngine.getDefaultScale(type.getFitMode());
     }
 
     @Override
@@ -488,44 +779,20 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     protected void setImageDrawableInternal(final Drawable drawable, final Matrix initialMatrix, float minZoom, float maxZoom) {
-        mBaseMatrix.reset();
-        super.setImageDrawable(drawable);
+        saveZoomSnapshot();
+        mSourceId = null;
+        mState.resetBase();
+        installDrawable(drawable);
 
-        if (minZoom != ZOOM_INVALID && maxZoom != ZOOM_INVALID) {
-            minZoom = Math.min(minZoom, maxZoom);
-            maxZoom = Math.max(minZoom, maxZoom);
-
-            mMinZoom = minZoom;
-            mMaxZoom = maxZoom;
-
-            mMinZoomDefined = true;
-            mMaxZoomDefined = true;
-
-            if (getDisplayType() == DisplayType.FIT_TO_SCREEN || getDisplayType() == DisplayType.FIT_IF_BIGGER) {
-
-                if (mMinZoom >= 1) {
-                    mMinZoomDefined = false;
-                    mMinZoom = ZOOM_INVALID;
-                }
-
-                if (mMaxZoom <= 1) {
-                    mMaxZoomDefined = true;
-                    mMaxZoom = ZOOM_INVALID;
-                }
-            }
-        } else {
-            mMinZoom = ZOOM_INVALID;
-            mMaxZoom = ZOOM_INVALID;
-
-            mMinZoomDefined = false;
-            mMaxZoomDefined = false;
-        }
+        mEngine.setZoomLimits(minZoom, maxZoom);
 
         if (initialMatrix != null) {
-            mNextMatrix = new Matrix(initialMatrix);
+            initialMatrix.getValues(mMatrixValues);
+            mNextTransform = new Transform();
+            mNextTransform.setValues(mMatrixValues);
         }
-        if (DEBUG) {
-            Log.v(TAG, "mMinZoom: " + mMinZoom + ", mMaxZoom: " + mMaxZoom);
+        if (LOGS_ENABLED && DEBUG) {
+            Log.v(TAG, "minZoom: " + minZoom + ", maxZoom: " + maxZoom);
         }
 
         mBitmapChanged = true;
@@ -533,141 +800,516 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         requestLayout();
     }
 
-    protected void updateDrawable(Drawable newDrawable) {
-        if (null != newDrawable) {
-            mBitmapRect.set(0, 0, newDrawable.getIntrinsicWidth(), newDrawable.getIntrinsicHeight());
-        } else {
-            mBitmapRect.setEmpty();
-        }
-    }
-
     /**
-     * Fired as soon as a new Bitmap has been set
-     *
-     * @param drawable
+     * @param bitmap the new bitmap
+     * @see #replaceImageDrawable(Drawable)
      */
-    protected void onDrawableChanged(final Drawable drawable) {
-        if (DEBUG) {
-            Log.i(TAG, "onDrawableChanged");
-            Log.v(TAG, "scale: " + getScale() + ", minScale: " + getMinScale());
-        }
-        fireOnDrawableChangeListener(drawable);
-    }
-
-    protected void fireOnLayoutChangeListener(int left, int top, int right, int bottom) {
-        if (null != mOnLayoutChangeListener) {
-            mOnLayoutChangeListener.onLayoutChanged(true, left, top, right, bottom);
-        }
-    }
-
-    protected void fireOnDrawableChangeListener(Drawable drawable) {
-        if (null != mDrawableChangeListener) {
-            mDrawableChangeListener.onDrawableChanged(drawable);
-        }
+    public void replaceImageBitmap(final Bitmap bitmap) {
+        replaceImageDrawable(null != bitmap ? new FastBitmapDrawable(bitmap) : null);
     }
 
     /**
-     * Called just after {@link #onLayout(boolean, int, int, int, int)}
-     * if the view's bounds has changed or a new Drawable has been set
-     * or the {@link DisplayType} has been modified
+     * Replace the current drawable with another version, at a different resolution, of the same image
+     * (for instance the full resolution image, once decoded, in place of a low resolution preview).<br />
+     * Unlike {@link #setImageDrawable(Drawable)} the current zoom and pan are preserved: the base matrix
+     * is rescaled so that the image on screen does not move.<br />
+     * If there's no current drawable, or the view has not been laid out yet, this is the same as
+     * calling {@link #setImageDrawable(Drawable)}.
      *
-     * @param left
-     * @param top
-     * @param right
-     * @param bottom
+     * @param drawable the new drawable, it should have the same aspect ratio of the current one
      */
-    protected void onLayoutChanged(int left, int top, int right, int bottom) {
-        if (DEBUG) {
-            Log.i(TAG, "onLayoutChanged");
-        }
-        fireOnLayoutChangeListener(left, top, right, bottom);
-    }
+    public void replaceImageDrawable(final Drawable drawable) {
+        final Drawable current = getDrawable();
 
-    protected float computeMaxZoom() {
-        final Drawable drawable = getDrawable();
-        if (drawable == null) {
-            return 1f;
+        if (null == drawable || null == current || mBitmapChanged || getWidth() <= 0
+            || current.getIntrinsicWidth() <= 0 || current.getIntrinsicHeight() <= 0
+            || drawable.getIntrinsicWidth() <= 0 || drawable.getIntrinsicHeight() <= 0) {
+            setImageDrawable(drawable);
+            return;
         }
-        float fw = mBitmapRect.width() / mViewPort.width();
-        float fh = mBitmapRect.height() / mViewPort.height();
-        float scale = Math.max(fw, fh) * 4;
 
-        if (DEBUG) {
-            Log.i(TAG, "computeMaxZoom: " + scale);
-        }
-        return scale;
-    }
+        final float scaleX = (float) current.getIntrinsicWidth() / drawable.getIntrinsicWidth();
+        final float scaleY = (float) current.getIntrinsicHeight() / drawable.getIntrinsicHeight();
 
-    protected float computeMinZoom() {
-        if (DEBUG) {
-            Log.i(TAG, "computeMinZoom");
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "replaceImageDrawable. scaleX: " + scaleX + ", scaleY: " + scaleY);
         }
 
-        final Drawable drawable = getDrawable();
-        if (drawable == null) {
-            return 1f;
-        }
+        final float oldScale = getScale();
+        installDrawable(drawable);
+        updateDrawable(drawable);
+        mState.preScaleBase(scaleX, scaleY);
 
-        float scale = getScale(mBaseMatrix);
+        // min and max zoom depend on the drawable size: the current scale may be no more valid
+        mEngine.resetZoomLimits();
+        mEngine.clampToLimits();
 
-        scale = Math.min(1f, 1f / scale);
-        if (DEBUG) {
-            Log.i(TAG, "computeMinZoom: " + scale);
+        commitImageMatrix();
+        if (getScale() != oldScale) {
+            onZoom(getScale());
         }
+        onDrawableChanged(drawable);
 
-        return scale;
+        if (null != mBitmapPool && current instanceof FastBitmapDrawable) {
+            ((FastBitmapDrawable) current).recycleBitmap(mBitmapPool);
+        }
     }
 
     /**
-     * Returns the current maximum allowed image scale
-     *
-     * @return
+     * Save the current layout, to be restored with {@link #setImageDrawable(Drawable, LayoutState)}
      */
-    public float getMaxScale() {
-        if (mMaxZoom == ZOOM_INVALID) {
-            mMaxZoom = computeMaxZoom();
-        }
-        return mMaxZoom;
+    public void saveLayoutState(LayoutState out) {
+        mEngine.saveState(out);
+        out.setUserScaled(mUserScaled);
     }
 
     /**
-     * Returns the current minimum allowed image scale
+     * Set a new drawable restoring a layout saved by {@link #saveLayoutState(LayoutState)}. If the view size,
+     * the drawable size and the display type are the ones of the saved layout, zoom and position are restored
+     * without laying out the image again, otherwise this is the same as calling {@link #setImageDrawable(Drawable)}
      *
-     * @return
+     * @param drawable the new drawable
+     * @param state    the layout to restore, or null
      */
-    public float getMinScale() {
-        if (DEBUG) {
-            Log.i(TAG, "getMinScale, mMinZoom: " + mMinZoom);
+    public void setImageDrawable(final Drawable drawable, final LayoutState state) {
+        if (getWidth() <= 0 && null != state) {
+            mLayoutRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    setImageDrawable(drawable, state);
+                }
+            };
+            return;
         }
 
-        if (mMinZoom == ZOOM_INVALID) {
-            mMinZoom = computeMinZoom();
+        if (null == drawable || null == state || mScaleTypeChanged
+            || !state.matches(mViewPort.width(), mViewPort.height(), drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(),
+            mScaleType.getFitMode())) {
+            setImageDrawable(drawable);
+            return;
         }
 
-        if (DEBUG) {
-            Log.v(TAG, "mMinZoom: " + mMinZoom);
-        }
+        saveZoomSnapshot();
+        mSourceId = null;
+        mPendingSnapshot = null;
+        cancelPendingLayout();
+        mNextTransform = null;
+        mBitmapChanged = false;
+        installDrawable(drawable);
+        updateDrawable(drawable);
+        mEngine.restoreState(state);
+        mUserScaled = state.isUserScaled();
 
-        return mMinZoom;
+        commitImageMatrix();
+        onZoom(getScale());
+        onDrawableChanged(drawable);
+        // min and max zoom changed
+        onLayoutChanged(getLeft(), getTop(), getRight(), getBottom());
     }
 
     /**
-     * Returns the current view matrix
+     * Set a new drawable, restoring the zoom the image with the same source id had when it was last displayed,
+     * as saved in the {@link ZoomSnapshotCache}. The snapshot is applied in the first layout pass, before the
+     * image is drawn: the viewport of drawables implementing {@link IViewportDrawable} is the restored one since the
+     * beginning, so only the tiles needed by that viewport are decoded.<br />
+     * The zoom of the current image is saved under its source id before it's replaced, and when the view is detached.
      *
-     * @return
+     * @param drawable the new drawable
+     * @param sourceId a stable identifier of the image, or null
      */
-    public Matrix getImageViewMatrix() {
-        return getImageViewMatrix(mSuppMatrix);
-    }
-
-    public Matrix getImageViewMatrix(Matrix supportMatrix) {
-        mDisplayMatrix.set(mBaseMatrix);
-        mDisplayMatrix.postConcat(supportMatrix);
-        return mDisplayMatrix;
-    }
-
-    @Override
+    public void setImageDrawable(final Drawable drawable, final String sourceId) {
+        if (getWidth() <= 0) {
+            mLayoutRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    setImageDrawable(drawable, sourceId);
+                }
+            };
+            return;
+        }
+
+        setImageDrawable(drawable);
+        mSourceId = sourceId;
+        if (null != sourceId && null != drawable) {
+            restoreZoomSnapshot(getZoomSnapshotCache().get(sourceId));
+        }
+    }
+
+    /**
+     * Returns the source id passed to {@link #setImageDrawable(Drawable, String)} with the current drawable, or null
+     */
+    public String getSourceId() {
+        return mSourceId;
+    }
+
+    /**
+     * Set the cache used by {@link #setImageDrawable(Drawable, String)}, by default the shared one
+     */
+    public void setZoomSnapshotCache(ZoomSnapshotCache cache) {
+        mSnapshotCache = cache;
+    }
+
+    public ZoomSnapshotCache getZoomSnapshotCache() {
+        if (null == mSnapshotCache) {
+            mSnapshotCache = ZoomSnapshotCache.getInstance();
+        }
+        return mSnapshotCache;
+    }
+
+    /**
+     * Returns a snapshot of the current zoom, to be restored with {@link #restoreZoomSnapshot(ZoomSnapshot)},
+     * or null if there's no image or it has not been laid out yet
+     */
+    public ZoomSnapshot getZoomSnapshot() {
+        if (null != mPendingSnapshot) {
+            // not applied yet
+            return mPendingSnapshot;
+        }
+        if (null == getDrawable() || mBitmapChanged || mScaleTypeChanged || !mEngine.getFocus(mPointValues)) {
+            return null;
+        }
+        return new ZoomSnapshot(mScaleType, mPointValues[0], mPointValues[1], getScale(), mEngine.getMinZoomLimit(),
+            mEngine.getMaxZoomLimit(), mBitmapRect.width() / mBitmapRect.height(), mUserScaled);
+    }
+
+    /**
+     * Restore a zoom saved by {@link #getZoomSnapshot()}: the display type, the zoom limits, the scale relative
+     * to the base scale, and the image point at the center of the view. Since it does not depend on the view and
+     * image size, it can be restored after a rotation, or on a different resolution of the same image.<br />
+     * If the image has not been laid out yet the snapshot is applied in the next layout pass, before the image is drawn.
+     * It is ignored if the image has not the aspect ratio of the one it was taken from.
+     *
+     * @param snapshot the zoom to restore, or null to discard a pending one
+     */
+    public void restoreZoomSnapshot(ZoomSnapshot snapshot) {
+        mPendingSnapshot = null;
+        if (null == snapshot) {
+            return;
+        }
+
+        if (snapshot.getDisplayType() != mScaleType) {
+            setDisplayType(snapshot.getDisplayType());
+        }
+
+        if (null == getDrawable() || getWidth() <= 0 || mBitmapChanged || mScaleTypeChanged) {
+            mPendingSnapshot = snapshot;
+            return;
+        }
+
+        cancelPendingLayout();
+        final float oldScale = getScale();
+        if (applyZoomSnapshot(snapshot)) {
+            commitImageMatrix();
+            if (getScale() != oldScale) {
+                onZoom(getScale());
+            }
+            // min and max zoom may have changed
+            onLayoutChanged(getLeft(), getTop(), getRight(), getBottom());
+        }
+    }
+
+    private boolean applyZoomSnapshot(ZoomSnapshot snapshot) {
+        if (!snapshot.matches(mBitmapRect.width(), mBitmapRect.height())) {
+            if (LOGS_ENABLED && DEBUG) {
+                Log.w(TAG, "snapshot of a different image: " + snapshot);
+            }
+            return false;
+        }
+
+        mEngine.setZoomLimits(snapshot.getMinZoom(), snapshot.getMaxZoom());
+        mEngine.restoreFocus(snapshot.getScale(), snapshot.getFocusX(), snapshot.getFocusY());
+        mUserScaled = snapshot.isUserScaled();
+        return true;
+    }
+
+    // store the zoom of the current image in the cache
+    private void saveZoomSnapshot() {
+        if (null != mSourceId) {
+            final ZoomSnapshot snapshot = getZoomSnapshot();
+            if (null != snapshot) {
+                getZoomSnapshotCache().put(mSourceId, snapshot);
+            }
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final Parcelable superState = super.onSaveInstanceState();
+        saveZoomSnapshot();
+        final ZoomSnapshot snapshot = getZoomSnapshot();
+        if (null == snapshot) {
+            return superState;
+        }
+        final SavedState state = new SavedState(superState);
+        state.mSnapshot = snapshot;
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        restoreZoomSnapshot(savedState.mSnapshot);
+    }
+
+    // replace the displayed drawable, releasing the previous one
+    private void installDrawable(Drawable drawable) {
+        final Drawable previous = getDrawable();
+        super.setImageDrawable(drawable);
+        if (null != previous && previous != drawable) {
+            onDrawableReleased(previous);
+        }
+    }
+
+    /**
+     * Called when a drawable is no more displayed by this view. Drawables implementing {@link IDisposable},
+     * like {@link it.sephiroth.android.library.imagezoom.graphics.TiledBitmapDrawable}, are owned by the view
+     * and are disposed here: override to keep them alive
+     */
+    protected void onDrawableReleased(Drawable drawable) {
+        if (drawable instanceof IDisposable) {
+            ((IDisposable) drawable).dispose();
+        }
+    }
+
+    protected void updateDrawable(Drawable newDrawable) {
+        releaseSnapshot();
+        if (null != newDrawable) {
+            mBitmapRect.set(0, 0, newDrawable.getIntrinsicWidth(), newDrawable.getIntrinsicHeight());
+        } else {
+            mBitmapRect.setEmpty();
+        }
+        mEngine.setContentSize(mBitmapRect.width(), mBitmapRect.height());
+    }
+
+    /**
+     * Fired as soon as a new Bitmap has been set
+     *
+     * @param drawable
+     */
+    protected void onDrawableChanged(final Drawable drawable) {
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "onDrawableChanged");
+            Log.v(TAG, "scale: " + getScale() + ", minScale: " + getMinScale());
+        }
+        fireOnDrawableChangeListener(drawable);
+    }
+
+    protected void fireOnLayoutChangeListener(int left, int top, int right, int bottom) {
+        if (null != mOnLayoutChangeListener) {
+            mOnLayoutChangeListener.onLayoutChanged(true, left, top, right, bottom);
+        }
+    }
+
+    protected void fireOnDrawableChangeListener(Drawable drawable) {
+        if (null != mDrawableChangeListener) {
+            mDrawableChangeListener.onDrawableChanged(drawable);
+        }
+    }
+
+    /**
+     * Called just after {@link #onLayout(boolean, int, int, int, int)}
+     * if the view's bounds has changed or a new Drawable has been set
+     * or the {@link DisplayType} has been modified
+     *
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     */
+    protected void onLayoutChanged(int left, int top, int right, int bottom) {
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "onLayoutChanged");
+        }
+        fireOnLayoutChangeListener(left, top, right, bottom);
+    }
+
+    protected float computeMaxZoom() {
+        float scale = mEngine.computeMaxZoom();
+
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "computeMaxZoom: " + scale);
+        }
+        return scale;
+    }
+
+    protected float computeMinZoom() {
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "computeMinZoom");
+        }
+
+        float scale = mEngine.computeMinZoom();
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "computeMinZoom: " + scale);
+        }
+
+        return scale;
+    }
+
+    /**
+     * Returns the current maximum allowed image scale
+     *
+     * @return
+     */
+    public float getMaxScale() {
+        return mEngine.getMaxScale();
+    }
+
+    /**
+     * Returns the current minimum allowed image scale
+     *
+     * @return
+     */
+    public float getMinScale() {
+        return mEngine.getMinScale();
+    }
+
+    /**
+     * Returns the current view matrix. The returned instance is shared
+     * and cached, do not modify it
+     *
+     * @return
+     */
+    public Matrix getImageViewMatrix() {
+        return getImageViewMatrix(mSuppTransform);
+    }
+
+    public Matrix getImageViewMatrix(Matrix supportMatrix) {
+        supportMatrix.getValues(mMatrixValues);
+        mDisplayTransform.setValues(mMatrixValues);
+        return getImageViewMatrix(mDisplayTransform);
+    }
+
+    /**
+     * Materialize into the display matrix the concatenation of the base transform with the given support transform
+     */
+    protected Matrix getImageViewMatrix(Transform supportTransform) {
+        if (supportTransform == mSuppTransform) {
+            // the current display matrix is materialized only once per state change
+            if (mDisplayMatrixVersion != mState.getVersion()) {
+                mState.getDisplay().getValues(mMatrixValues);
+                mDisplayMatrix.setValues(mMatrixValues);
+                mDisplayMatrixVersion = mState.getVersion();
+            }
+            return mDisplayMatrix;
+        }
+
+        getImageViewTransform(supportTransform, mDisplayTransform);
+        mDisplayTransform.getValues(mMatrixValues);
+        mDisplayMatrix.setValues(mMatrixValues);
+        mDisplayMatrixVersion = -1;
+        return mDisplayMatrix;
+    }
+
+    /**
+     * Concatenate the base transform with the given support transform, without creating the display matrix
+     *
+     * @param supportTransform the support transform
+     * @param out              receives the result, can be the same instance of <code>supportTransform</code>
+     * @return <code>out</code>
+     */
+    protected Transform getImageViewTransform(Transform supportTransform, Transform out) {
+        out.setConcat(supportTransform, mBaseTransform);
+        return out;
+    }
+
+    /**
+     * Enable or disable the batched commits. When enabled, changes to the image transform made by gestures
+     * and animations are accumulated, and applied with a single {@link #setImageMatrix(Matrix)}, and a single
+     * invalidation, once per frame. When disabled (the default) every change is applied immediately.
+     *
+     * @param value true to enable the batched commits
+     */
+    public void setBatchedCommitsEnabled(boolean value) {
+        mBatchedCommits = value;
+        if (!value) {
+            commitImageMatrix();
+        }
+    }
+
+    public boolean getBatchedCommitsEnabled() {
+        return mBatchedCommits;
+    }
+
+    /**
+     * Request the current transform to be applied to the image matrix: immediately, or at the next
+     * frame if the batched commits are enabled
+     */
+    protected void requestImageMatrixCommit() {
+        if (!mBatchedCommits) {
+            commitImageMatrix();
+        } else if (mCommitPending) {
+            mCoalescedCommitCount++;
+        } else {
+            mCommitPending = true;
+            postOnAnimation(mCommitRunnable);
+        }
+    }
+
+    /**
+     * Immediately apply the current transform to the image matrix, if it changed since the last commit
+     */
+    public void commitImageMatrix() {
+        if (mCommitPending) {
+            mCommitPending = false;
+            removeCallbacks(mCommitRunnable);
+        }
+
+        final int version = mState.getVersion();
+        if (version == mCommittedVersion) {
+            mRedundantCommitCount++;
+            return;
+        }
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_COMMIT);
+        }
+
+        mCommitCount++;
+        setImageMatrix(getImageViewMatrix());
+        mCommittedVersion = version;
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.end();
+        }
+    }
+
+    /**
+     * Returns the number of image matrix commits
+     */
+    public int getCommitCount() {
+        return mCommitCount;
+    }
+
+    /**
+     * Returns the number of commit requests merged into an already pending commit
+     */
+    public int getCoalescedCommitCount() {
+        return mCoalescedCommitCount;
+    }
+
+    /**
+     * Returns the number of commits skipped because the transform did not change
+     */
+    public int getRedundantCommitCount() {
+        return mRedundantCommitCount;
+    }
+
+    public void resetCommitCounters() {
+        mCommitCount = 0;
+        mCoalescedCommitCount = 0;
+        mRedundantCommitCount = 0;
+    }
+
+    @Override
     public void setImageMatrix(Matrix matrix) {
+        // the matrix may not come from the current transform
+        mCommittedVersion = -1;
+
         Matrix current = getImageMatrix();
         boolean needUpdate = false;
 
@@ -676,6 +1318,12 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         }
 
         super.setImageMatrix(matrix);
+
+        final Drawable drawable = getDrawable();
+        if (drawable instanceof IViewportDrawable) {
+            ((IViewportDrawable) drawable).setDisplayMatrix(getImageMatrix());
+        }
+
         if (needUpdate) {
             onImageMatrixChanged();
         }
@@ -701,28 +1349,86 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      * </pre>
      *
      * @return the current support matrix
+     * @see #getDisplayMatrix(Matrix)
      */
     public Matrix getDisplayMatrix() {
-        return new Matrix(mSuppMatrix);
+        return getDisplayMatrix(new Matrix());
+    }
+
+    /**
+     * Same as {@link #getDisplayMatrix()}, but the support matrix is copied into
+     * <code>out</code> instead of a new instance
+     *
+     * @return <code>out</code>
+     */
+    public Matrix getDisplayMatrix(Matrix out) {
+        mSuppTransform.getValues(mMatrixValues);
+        out.setValues(mMatrixValues);
+        return out;
+    }
+
+    protected void getProperBaseMatrix(Drawable drawable, Transform matrix, RectF rect) {
+        ZoomMath.getBaseTransform(mBitmapRect.width(), mBitmapRect.height(), rect.left, rect.top, rect.right, rect.bottom, matrix);
+
+        if (LOGS_ENABLED && DEBUG) {
+            Log.d(TAG, "base matrix: " + matrix);
+        }
     }
 
+    /**
+     * @deprecated the base matrix is now kept in {@link #mBaseTransform}. Compute the base transform with
+     * {@link #getProperBaseMatrix(Drawable, Transform, RectF)}
+     */
+    @Deprecated
     protected void getProperBaseMatrix(Drawable drawable, Matrix matrix, RectF rect) {
-        float w = mBitmapRect.width();
-        float h = mBitmapRect.height();
-        float widthScale, heightScale;
+        getProperBaseMatrix(drawable, mMatrixTransform, rect);
+        toMatrix(mMatrixTransform, matrix);
+    }
 
-        matrix.reset();
+    /**
+     * Copy the base transform into <code>out</code>
+     *
+     * @return <code>out</code>
+     * @deprecated replaces the <code>mBaseMatrix</code> field, read {@link #mBaseTransform} instead
+     */
+    @Deprecated
+    protected Matrix getBaseMatrix(Matrix out) {
+        return toMatrix(mBaseTransform, out);
+    }
 
-        widthScale = rect.width() / w;
-        heightScale = rect.height() / h;
-        float scale = Math.min(widthScale, heightScale);
-        matrix.postScale(scale, scale);
-        matrix.postTranslate(rect.left, rect.top);
+    /**
+     * Copy the support transform into <code>out</code>
+     *
+     * @return <code>out</code>
+     * @deprecated replaces the <code>mSuppMatrix</code> field, read {@link #mSuppTransform} instead
+     */
+    @Deprecated
+    protected Matrix getSupportMatrix(Matrix out) {
+        return toMatrix(mSuppTransform, out);
+    }
+
+    /**
+     * Replace the support transform with the given matrix, and display it
+     *
+     * @deprecated replaces the changes to the <code>mSuppMatrix</code> field, use {@link #postTranslate(float, float)},
+     * {@link #postScale(float, float, float)} or {@link TransformState#setSupport(Transform)} instead
+     */
+    @Deprecated
+    protected void setSupportMatrix(Matrix matrix) {
+        mState.setSupport(toTransform(matrix, mMatrixTransform));
+        requestImageMatrixCommit();
+    }
 
-        float tw = (rect.width() - w * scale) / 2.0f;
-        float th = (rect.height() - h * scale) / 2.0f;
-        matrix.postTranslate(tw, th);
-        printMatrix(matrix);
+    private Matrix toMatrix(Transform transform, Matrix out) {
+        transform.getValues(mMatrixValues);
+        out.setValues(mMatrixValues);
+        return out;
+    }
+
+    private Transform toTransform(Matrix matrix, Transform out) {
+        matrix.getValues(mMatrixValues);
+        out.setValues(mMatrixValues);
+        return out;
     }
 
     protected float getValue(Matrix matrix, int whichValue) {
@@ -738,16 +1444,54 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         Log.d(TAG, "matrix: { x: " + tx + ", y: " + ty + ", scalex: " + scalex + ", scaley: " + scaley + " }");
     }
 
+    /**
+     * Returns true if the image is zoomed in or it's not entirely visible
+     */
+    public boolean canScroll() {
+        return mState.canScroll();
+    }
+
+    /**
+     * Returns the current image bounds, in view coordinates. The returned instance is shared,
+     * use {@link #getBitmapRect(RectF)} to get a copy
+     */
     public RectF getBitmapRect() {
-        return getBitmapRect(mSuppMatrix);
+        return getBitmapRect(mSuppTransform);
     }
 
-    protected RectF getBitmapRect(Matrix supportMatrix) {
-        Matrix m = getImageViewMatrix(supportMatrix);
-        m.mapRect(mBitmapRectTmp, mBitmapRect);
+    /**
+     * Copy the current image bounds, in view coordinates, into <code>out</code>
+     *
+     * @return <code>out</code>
+     */
+    public RectF getBitmapRect(RectF out) {
+        out.set(getBitmapRect(mSuppTransform));
+        return out;
+    }
+
+    protected RectF getBitmapRect(Transform supportTransform) {
+        mState.getBounds(supportTransform, mRectValues);
+        mBitmapRectTmp.set(mRectValues[0], mRectValues[1], mRectValues[2], mRectValues[3]);
         return mBitmapRectTmp;
     }
 
+    /**
+     * @deprecated use {@link #getBitmapRect(Transform)}
+     */
+    @Deprecated
+    protected RectF getBitmapRect(Matrix supportMatrix) {
+        return getBitmapRect(toTransform(supportMatrix, mMatrixTransform));
+    }
+
+    protected void mapRect(Transform transform, RectF dst, RectF src) {
+        mRectValues[0] = src.left;
+        mRectValues[1] = src.top;
+        mRectValues[2] = src.right;
+        mRectValues[3] = src.bottom;
+        transform.mapRect(mRectValues);
+        dst.set(mRectValues[0], mRectValues[1], mRectValues[2], mRectValues[3]);
+    }
+
     /**
      * Get the Y Scale of the matrix for Fit Scale Calculation
      * @param matrix {@link Matrix} Bitmap Matrix
@@ -770,6 +1514,10 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         return getValue(matrix, Matrix.MSCALE_X);
     }
 
+    protected float getScale(Transform transform) {
+        return transform.getScaleX();
+    }
+
     @SuppressLint ("Override")
     public float getRotation() {
         return 0;
@@ -781,70 +1529,50 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
      * @return
      */
     public float getScale() {
-        return getScale(mSuppMatrix);
+        return mSuppTransform.getScaleX();
     }
 
     public float getBaseScale() {
-        return getScale(mBaseMatrix);
+        return getScale(mBaseTransform);
     }
 
     protected void center(boolean horizontal, boolean vertical) {
-        final Drawable drawable = getDrawable();
-        if (drawable == null) {
-            return;
-        }
-
-        RectF rect = getCenter(mSuppMatrix, horizontal, vertical);
-
-        if (rect.left != 0 || rect.top != 0) {
-            postTranslate(rect.left, rect.top);
+        if (null != getDrawable() && mEngine.center(horizontal, vertical)) {
+            requestImageMatrixCommit();
         }
     }
 
-    protected RectF getCenter(Matrix supportMatrix, boolean horizontal, boolean vertical) {
+    protected RectF getCenter(Transform supportTransform, boolean horizontal, boolean vertical) {
         final Drawable drawable = getDrawable();
 
         if (drawable == null) {
-            return new RectF(0, 0, 0, 0);
-        }
-
-        mCenterRect.set(0, 0, 0, 0);
-        RectF rect = getBitmapRect(supportMatrix);
-        float height = rect.height();
-        float width = rect.width();
-        float deltaX = 0, deltaY = 0;
-        if (vertical) {
-            if (height < mViewPort.height()) {
-                deltaY = (mViewPort.height() - height) / 2 - (rect.top - mViewPort.top);
-            } else if (rect.top > mViewPort.top) {
-                deltaY = -(rect.top - mViewPort.top);
-            } else if (rect.bottom < mViewPort.bottom) {
-                deltaY = mViewPort.bottom - rect.bottom;
-            }
+            mCenterRect.set(0, 0, 0, 0);
+            return mCenterRect;
         }
-        if (horizontal) {
-            if (width < mViewPort.width()) {
-                deltaX = (mViewPort.width() - width) / 2 - (rect.left - mViewPort.left);
-            } else if (rect.left > mViewPort.left) {
-                deltaX = -(rect.left - mViewPort.left);
-            } else if (rect.right < mViewPort.right) {
-                deltaX = mViewPort.right - rect.right;
-            }
-        }
-        mCenterRect.set(deltaX, deltaY, 0, 0);
+
+        mState.getCenter(supportTransform, horizontal, vertical, mPointValues);
+        mCenterRect.set(mPointValues[0], mPointValues[1], 0, 0);
         return mCenterRect;
     }
 
+    /**
+     * @deprecated use {@link #getCenter(Transform, boolean, boolean)}
+     */
+    @Deprecated
+    protected RectF getCenter(Matrix supportMatrix, boolean horizontal, boolean vertical) {
+        return getCenter(toTransform(supportMatrix, mMatrixTransform), horizontal, vertical);
+    }
+
     protected void postTranslate(float deltaX, float deltaY) {
         if (deltaX != 0 || deltaY != 0) {
-            mSuppMatrix.postTranslate(deltaX, deltaY);
-            setImageMatrix(getImageViewMatrix());
+            mState.postTranslate(deltaX, deltaY);
+            requestImageMatrixCommit();
         }
     }
 
     protected void postScale(float scale, float centerX, float centerY) {
-        mSuppMatrix.postScale(scale, scale, centerX, centerY);
-        setImageMatrix(getImageViewMatrix());
+        mState.postScale(scale, centerX, centerY);
+        requestImageMatrixCommit();
     }
 
     protected PointF getCenter() {
@@ -852,7 +1580,7 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     protected void zoomTo(float scale) {
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.i(TAG, "zoomTo: " + scale);
         }
 
@@ -863,7 +1591,7 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
             scale = getMinScale();
         }
 
-        if (DEBUG) {
+        if (LOGS_ENABLED && DEBUG) {
             Log.d(TAG, "sanitized scale: " + scale);
         }
 
@@ -883,15 +1611,40 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     protected void zoomTo(float scale, float centerX, float centerY) {
-        if (scale > getMaxScale()) {
-            scale = getMaxScale();
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_ZOOM);
         }
 
-        float oldScale = getScale();
-        float deltaScale = scale / oldScale;
-        postScale(deltaScale, centerX, centerY);
+        mEngine.zoomTo(scale, centerX, centerY);
+        requestImageMatrixCommit();
         onZoom(getScale());
-        center(true, true);
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.counter(ZoomTrace.COUNTER_SCALE_PERCENT, Math.round(getScale() * 100));
+            ZoomTrace.end();
+        }
+    }
+
+    /**
+     * Zoom to the given scale around the given point and pan by the given distance, with a single
+     * update of the image matrix
+     */
+    protected void zoomAndPanBy(float scale, float centerX, float centerY, float dx, float dy) {
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_ZOOM);
+        }
+
+        final float oldScale = getScale();
+        mEngine.zoomAndPanBy(scale, centerX, centerY, dx, dy);
+        requestImageMatrixCommit();
+        if (getScale() != oldScale) {
+            onZoom(getScale());
+        }
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.counter(ZoomTrace.COUNTER_SCALE_PERCENT, Math.round(getScale() * 100));
+            ZoomTrace.end();
+        }
     }
 
     @SuppressWarnings ("unused")
@@ -913,13 +1666,21 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     protected void panBy(double dx, double dy) {
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_PAN);
+        }
+
         RectF rect = getBitmapRect();
         mScrollPoint.set((float) dx, (float) dy);
         updateRect(rect, mScrollPoint);
 
         if (mScrollPoint.x != 0 || mScrollPoint.y != 0) {
-            postTranslate(mScrollPoint.x, mScrollPoint.y);
-            center(true, true);
+            mEngine.panBy(mScrollPoint.x, mScrollPoint.y);
+            requestImageMatrixCommit();
+        }
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.end();
         }
     }
 
@@ -930,70 +1691,162 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
     }
 
     protected void stopAllAnimations() {
-        if (null != mCurrentAnimation) {
-            mCurrentAnimation.cancel();
-            mCurrentAnimation = null;
+        mAnimationEngine.stopScroll();
+        mDestinationValid = false;
+    }
+
+    void onAnimationEngineStarted() {
+        mAnimationGesture = mGesture;
+    }
+
+    void onAnimationEngineStopped(int frames, int droppedFrames) {
+        mDestinationValid = false;
+        onInteractionChanged();
+
+        final Gesture gesture = mAnimationGesture;
+        mAnimationGesture = null;
+        if (null != mMetricsListener) {
+            mMetricsListener.onAnimationCompleted(gesture, frames, droppedFrames);
+        }
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.counter(ZoomTrace.COUNTER_DROPPED_FRAMES, droppedFrames);
+        }
+        // fling and double tap last until their animation stops
+        if (null != gesture && gesture == mGesture) {
+            endGesture();
         }
     }
 
-    protected void scrollBy(float distanceX, float distanceY, final long durationMs) {
-        final ValueAnimator anim1 = ValueAnimator.ofFloat(0, distanceX).setDuration(durationMs);
-        final ValueAnimator anim2 = ValueAnimator.ofFloat(0, distanceY).setDuration(durationMs);
+    /**
+     * Marks the beginning of a gesture, ending the current one
+     */
+    protected void startGesture(Gesture gesture) {
+        endGesture();
+        mGesture = gesture;
+        mGestureStartTime = SystemClock.uptimeMillis();
+    }
 
-        stopAllAnimations();
+    /**
+     * Marks the end of the current gesture
+     */
+    protected void endGesture() {
+        if (null != mGesture) {
+            final Gesture gesture = mGesture;
+            mGesture = null;
+            if (null != mMetricsListener) {
+                mMetricsListener.onGestureCompleted(gesture, SystemClock.uptimeMillis() - mGestureStartTime);
+            }
+        }
+    }
 
-        mCurrentAnimation = new AnimatorSet();
-        ((AnimatorSet) mCurrentAnimation).playTogether(
-            anim1, anim2
-        );
+    /**
+     * Returns the gesture in progress, or null
+     */
+    public Gesture getCurrentGesture() {
+        return mGesture;
+    }
 
-        mCurrentAnimation.setDuration(durationMs);
-        mCurrentAnimation.setInterpolator(new DecelerateInterpolator());
-        mCurrentAnimation.start();
+    /**
+     * Must be called when an input event changes the image, to measure
+     * the latency until the change is drawn
+     *
+     * @param eventTime the event time, see {@link android.view.MotionEvent#getEventTime()}
+     */
+    protected void onInputEvent(long eventTime) {
+        if (null != mMetricsListener && mInputEventTime < 0) {
+            mInputEventTime = eventTime;
+        }
+    }
 
-        anim2.addUpdateListener(
-            new ValueAnimator.AnimatorUpdateListener() {
-                float oldValueX = 0;
-                float oldValueY = 0;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        applyPendingLayout();
+        saveZoomSnapshot();
+        mAnimationEngine.stopScroll();
+        mAnimationEngine.stopZoom();
+    }
 
-                @Override
-                public void onAnimationUpdate(final ValueAnimator animation) {
-                    float valueX = (Float) anim1.getAnimatedValue();
-                    float valueY = (Float) anim2.getAnimatedValue();
-                    panBy(valueX - oldValueX, valueY - oldValueY);
-                    oldValueX = valueX;
-                    oldValueY = valueY;
-                    postInvalidateOnAnimation();
-                }
-            }
-        );
+    /**
+     * Returns the area of the drawable which will be visible once the
+     * running fling or zoom animation is completed
+     *
+     * @param out receives the area, in drawable coordinates
+     * @return false if no animation is running
+     */
+    public boolean getAnimationDestination(RectF out) {
+        if (mDestinationValid) {
+            out.set(mDestinationRect);
+        }
+        return mDestinationValid;
+    }
 
-        mCurrentAnimation.addListener(
-            new Animator.AnimatorListener() {
-                @Override
-                public void onAnimationStart(final Animator animation) {
+    /**
+     * Called when an animation starts, with the support matrix which will be reached at its end.<br />
+     * Computes the area visible at the end of the animation and, if the current drawable implements
+     * {@link IPrefetchDrawable}, lets it start loading its content
+     *
+     * @param supportTransform the final support transform
+     */
+    protected void onAnimationDestination(Transform supportTransform) {
+        final Drawable drawable = getDrawable();
+        if (null == drawable) {
+            return;
+        }
 
-                }
+        final Transform transform = getImageViewTransform(supportTransform, mDisplayTransform);
+        final float scale = transform.getScaleX();
+        if (!transform.invert(mDestinationTransform)) {
+            return;
+        }
 
-                @Override
-                public void onAnimationEnd(final Animator animation) {
-                    RectF centerRect = getCenter(mSuppMatrix, true, true);
-                    if (centerRect.left != 0 || centerRect.top != 0) {
-                        scrollBy(centerRect.left, centerRect.top);
-                    }
-                }
+        mapRect(mDestinationTransform, mDestinationRect, mViewPort);
+        mDestinationValid = true;
 
-                @Override
-                public void onAnimationCancel(final Animator animation) {
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "onAnimationDestination: " + mDestinationRect + ", scale: " + scale);
+        }
 
-                }
+        if (drawable instanceof IPrefetchDrawable) {
+            ((IPrefetchDrawable) drawable).prefetch(mDestinationRect, scale);
+        }
+    }
 
-                @Override
-                public void onAnimationRepeat(final Animator animation) {
+    /**
+     * Scroll by the given distance, decelerating. The distance is clamped to the image bounds
+     * before starting, so the animation never needs to be corrected at the end
+     */
+    protected void scrollBy(float distanceX, float distanceY, final long durationMs) {
+        stopAllAnimations();
 
-                }
-            }
+        // the final position, already clamped to the image bounds
+        mEngine.getScrollDestination(distanceX, distanceY, mDestinationTransform);
+
+        mAnimationEngine.scrollBy(
+            mDestinationTransform.getTranslateX() - mSuppTransform.getTranslateX(),
+            mDestinationTransform.getTranslateY() - mSuppTransform.getTranslateY(), durationMs
         );
+        onAnimationDestination(mDestinationTransform);
+    }
+
+    /**
+     * Fling the image with the given velocity. The fling stops exactly at the
+     * image bounds, which are computed before starting
+     *
+     * @param velocityX horizontal velocity, in pixels per second
+     * @param velocityY vertical velocity, in pixels per second
+     */
+    protected void fling(float velocityX, float velocityY) {
+        stopAllAnimations();
+        startGesture(Gesture.FLING);
+
+        mEngine.getFlingBounds(mRectValues);
+        mAnimationEngine.fling(
+            velocityX, velocityY, mRectValues[0], mRectValues[1], mRectValues[2], mRectValues[3], mFlingDeceleration);
+
+        mDestinationTransform.set(mSuppTransform);
+        mDestinationTransform.postTranslate(mAnimationEngine.getScrollFinalX(), mAnimationEngine.getScrollFinalY());
+        onAnimationDestination(mDestinationTransform);
     }
 
     protected void zoomTo(float scale, float centerX, float centerY, final long durationMs) {
@@ -1001,32 +1854,12 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
             scale = getMaxScale();
         }
 
-        final float oldScale = getScale();
-
-        Matrix m = new Matrix(mSuppMatrix);
-        m.postScale(scale, scale, centerX, centerY);
-        RectF rect = getCenter(m, true, true);
-
-        final float finalScale = scale;
-        final float destX = centerX + rect.left * scale;
-        final float destY = centerY + rect.top * scale;
-
+        mAnimationEngine.stopZoom();
         stopAllAnimations();
 
-        ValueAnimator animation = ValueAnimator.ofFloat(oldScale, finalScale);
-        animation.setDuration(durationMs);
-        animation.setInterpolator(new DecelerateInterpolator(1.0f));
-        animation.addUpdateListener(
-            new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(final ValueAnimator animation) {
-                    float value = (Float) animation.getAnimatedValue();
-                    zoomTo(value, destX, destY);
-                    postInvalidateOnAnimation();
-                }
-            }
-        );
-        animation.start();
+        mEngine.getZoomDestination(scale, centerX, centerY, mDestinationTransform, mPointValues);
+        mAnimationEngine.zoomTo(getScale(), scale, mPointValues[0], mPointValues[1], durationMs);
+        onAnimationDestination(mDestinationTransform);
     }
 
     @Override
@@ -1034,11 +1867,129 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
         clear();
     }
 
+    /**
+     * Captures a copy, at screen resolution, of the current content. Until {@link #endSnapshot()}
+     * is called the view only draws the captured copy, transformed by the changes of the image matrix
+     * applied since the capture, instead of the drawable. The cost of every frame does not depend
+     * anymore on the drawable size, at the price of a lower quality and of not showing the content
+     * outside the captured area.
+     *
+     * @return true if the snapshot has been captured
+     */
+    protected boolean beginSnapshot() {
+        final int width = getWidth();
+        final int height = getHeight();
+        if (null == getDrawable() || width <= 0 || height <= 0) {
+            return false;
+        }
+
+        releaseSnapshot();
+
+        Bitmap bitmap = null != mBitmapPool ? mBitmapPool.get(width, height, Bitmap.Config.ARGB_8888) : null;
+        if (null != bitmap) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        } else {
+            try {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "failed to create the snapshot: " + e);
+                return false;
+            }
+        }
+
+        if (!getImageMatrix().invert(mSnapshotInverse)) {
+            releaseBitmap(bitmap);
+            return false;
+        }
+
+        // captured once, so it can use the best quality
+        mRenderQuality = RenderQualityPolicy.QUALITY_HIGH;
+        drawContent(new Canvas(bitmap), getDrawable());
+        mSnapshot = bitmap;
+
+        if (LOGS_ENABLED && DEBUG) {
+            Log.i(TAG, "beginSnapshot: " + width + "x" + height);
+        }
+        return true;
+    }
+
+    /**
+     * Discards the snapshot captured by {@link #beginSnapshot()} and
+     * goes back to drawing the drawable
+     */
+    protected void endSnapshot() {
+        if (null != mSnapshot) {
+            releaseSnapshot();
+            invalidate();
+        }
+    }
+
+    public boolean isSnapshotActive() {
+        return null != mSnapshot;
+    }
+
+    private void releaseSnapshot() {
+        if (null != mSnapshot) {
+            releaseBitmap(mSnapshot);
+            mSnapshot = null;
+        }
+    }
+
+    private void releaseBitmap(Bitmap bitmap) {
+        if (null == mBitmapPool || !mBitmapPool.put(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
     @Override
     protected void onDraw(final Canvas canvas) {
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.begin(ZoomTrace.SECTION_DRAW);
+        }
 
-        if (getScaleType() == ScaleType.FIT_XY) {
+        if (mCommitPending) {
+            // drawn before the pending commit could run
+            commitImageMatrix();
+        }
+
+        final long start;
+        if (null != mSnapshot) {
+            start = System.nanoTime();
+            drawSnapshot(canvas);
+        } else {
             final Drawable drawable = getDrawable();
+            mRenderQuality = computeRenderQuality();
+
+            start = System.nanoTime();
+            drawContent(canvas, drawable);
+
+            if (null != mRenderQualityPolicy && null != drawable) {
+                mRenderQualityPolicy.onFrameRendered(mRenderQuality, System.nanoTime() - start);
+            }
+        }
+
+        if (null != mMetricsListener) {
+            final long end = System.nanoTime();
+            final long latency = mInputEventTime >= 0 ? SystemClock.uptimeMillis() - mInputEventTime : -1;
+            mInputEventTime = -1;
+            mMetricsListener.onFrameDrawn(mGesture, end - start, latency);
+
+            if (ZoomTrace.ENABLED && latency >= 0) {
+                ZoomTrace.counter(ZoomTrace.COUNTER_INPUT_LATENCY, latency);
+            }
+        }
+
+        if (ZoomTrace.ENABLED) {
+            ZoomTrace.end();
+        }
+    }
+
+    private void drawContent(final Canvas canvas, final Drawable drawable) {
+        if (drawable instanceof IRenderQualityDrawable) {
+            ((IRenderQualityDrawable) drawable).setRenderQuality(mRenderQuality);
+        }
+
+        if (getScaleType() == ScaleType.FIT_XY) {
             if (null != drawable) {
                 drawable.draw(canvas);
             }
@@ -1046,4 +1997,50 @@ public abstract class ImageViewTouchBase extends ImageView implements IDisposabl
             super.onDraw(canvas);
         }
     }
+
+    private void drawSnapshot(final Canvas canvas) {
+        // changes of the image matrix since the snapshot has been captured
+        mSnapshotDelta.setConcat(getImageMatrix(), mSnapshotInverse);
+
+        final int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        canvas.concat(mSnapshotDelta);
+        canvas.translate(-getPaddingLeft(), -getPaddingTop());
+        canvas.drawBitmap(mSnapshot, 0, 0, mSnapshotPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * The instance state of the view: the zoom snapshot of the current image
+     */
+    static class SavedState extends BaseSavedState {
+        ZoomSnapshot mSnapshot;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        SavedState(Parcel in) {
+            super(in);
+            mSnapshot = in.readParcelable(ZoomSnapshot.class.getClassLoader());
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeParcelable(mSnapshot, flags);
+        }
+
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
 }
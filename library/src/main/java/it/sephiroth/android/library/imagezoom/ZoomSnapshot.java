@@ -0,0 +1,144 @@
+package it.sephiroth.android.library.imagezoom;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase.DisplayType;
+
+/**
+ * A compact description of the zoom of an {@link ImageViewTouchBase}: display type, the content point
+ * at the center of the viewport (relative to the content size), the scale relative to the base scale and
+ * the zoom limits.<br />
+ * Unlike {@link it.sephiroth.android.library.imagezoom.core.LayoutState} it does not depend on the view or image
+ * size, so it can be restored after a rotation or on a different resolution of the same image, see
+ * {@link ImageViewTouchBase#restoreZoomSnapshot(ZoomSnapshot)}.
+ */
+public final class ZoomSnapshot implements Parcelable {
+    // maximum difference between the content aspect ratios for the snapshot to be restored
+    private static final float ASPECT_RATIO_TOLERANCE = 0.01f;
+
+    private final DisplayType mDisplayType;
+    private final float mFocusX;
+    private final float mFocusY;
+    private final float mScale;
+    private final float mMinZoom;
+    private final float mMaxZoom;
+    private final float mAspectRatio;
+    private final boolean mUserScaled;
+
+    ZoomSnapshot(
+        DisplayType displayType, float focusX, float focusY, float scale, float minZoom, float maxZoom, float aspectRatio,
+        boolean userScaled) {
+        mDisplayType = displayType;
+        mFocusX = focusX;
+        mFocusY = focusY;
+        mScale = scale;
+        mMinZoom = minZoom;
+        mMaxZoom = maxZoom;
+        mAspectRatio = aspectRatio;
+        mUserScaled = userScaled;
+    }
+
+    private ZoomSnapshot(Parcel in) {
+        mDisplayType = DisplayType.valueOf(in.readString());
+        mFocusX = in.readFloat();
+        mFocusY = in.readFloat();
+        mScale = in.readFloat();
+        mMinZoom = in.readFloat();
+        mMaxZoom = in.readFloat();
+        mAspectRatio = in.readFloat();
+        mUserScaled = in.readInt() != 0;
+    }
+
+    public DisplayType getDisplayType() {
+        return mDisplayType;
+    }
+
+    /**
+     * Returns the horizontal position of the content point at the center of the viewport: 0 is the left edge
+     * of the content, 1 the right one
+     */
+    public float getFocusX() {
+        return mFocusX;
+    }
+
+    /**
+     * Returns the vertical position of the content point at the center of the viewport: 0 is the top edge
+     * of the content, 1 the bottom one
+     */
+    public float getFocusY() {
+        return mFocusY;
+    }
+
+    /**
+     * Returns the scale, relative to the base scale
+     */
+    public float getScale() {
+        return mScale;
+    }
+
+    /**
+     * Returns the explicitly defined minimum zoom, or {@link ImageViewTouchBase#ZOOM_INVALID}
+     */
+    public float getMinZoom() {
+        return mMinZoom;
+    }
+
+    /**
+     * Returns the explicitly defined maximum zoom, or {@link ImageViewTouchBase#ZOOM_INVALID}
+     */
+    public float getMaxZoom() {
+        return mMaxZoom;
+    }
+
+    /**
+     * Returns true if the scale or the position had been changed by the user
+     */
+    public boolean isUserScaled() {
+        return mUserScaled;
+    }
+
+    /**
+     * Returns true if the snapshot can be restored on a content of the given size, that is if the content
+     * has the same aspect ratio of the one the snapshot was taken from
+     */
+    public boolean matches(float contentWidth, float contentHeight) {
+        return contentWidth > 0 && contentHeight > 0
+            && Math.abs(contentWidth / contentHeight - mAspectRatio) <= mAspectRatio * ASPECT_RATIO_TOLERANCE;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(mDisplayType.name());
+        dest.writeFloat(mFocusX);
+        dest.writeFloat(mFocusY);
+        dest.writeFloat(mScale);
+        dest.writeFloat(mMinZoom);
+        dest.writeFloat(mMaxZoom);
+        dest.writeFloat(mAspectRatio);
+        dest.writeInt(mUserScaled ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "ZoomSnapshot{displayType: " + mDisplayType + ", focus: " + mFocusX + "x" + mFocusY + ", scale: " + mScale
+            + ", userScaled: " + mUserScaled + "}";
+    }
+
+    public static final Creator<ZoomSnapshot> CREATOR = new Creator<ZoomSnapshot>() {
+        @Override
+        public ZoomSnapshot createFromParcel(Parcel in) {
+            return new ZoomSnapshot(in);
+        }
+
+        @Override
+        public ZoomSnapshot[] newArray(int size) {
+            return new ZoomSnapshot[size];
+        }
+    };
+}
@@ -0,0 +1,77 @@
+package it.sephiroth.android.library.imagezoom;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The zoom of the recently displayed images, by source id. Lets a view reopen an image at the same
+ * viewport the user left it, see {@link ImageViewTouchBase#setImageDrawable(android.graphics.drawable.Drawable, String)}.
+ * Snapshots are tiny, the least recently used ones are discarded when the maximum count is reached.<br />
+ * Must be used on the main thread.
+ */
+public class ZoomSnapshotCache {
+    public static final int DEFAULT_MAX_COUNT = 64;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static ZoomSnapshotCache sInstance;
+
+    private final LinkedHashMap<String, ZoomSnapshot> mMap = new LinkedHashMap<String, ZoomSnapshot>(0, LOAD_FACTOR, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, ZoomSnapshot> eldest) {
+            return size() > mMaxCount;
+        }
+    };
+    private int mMaxCount;
+
+    /**
+     * Returns the cache shared by the views of the application
+     */
+    public static synchronized ZoomSnapshotCache getInstance() {
+        if (null == sInstance) {
+            sInstance = new ZoomSnapshotCache(DEFAULT_MAX_COUNT);
+        }
+        return sInstance;
+    }
+
+    public ZoomSnapshotCache(int maxCount) {
+        mMaxCount = Math.max(1, maxCount);
+    }
+
+    public ZoomSnapshot get(String sourceId) {
+        return mMap.get(sourceId);
+    }
+
+    /**
+     * Store the snapshot of the given source, replacing the previous one. A null snapshot removes it
+     */
+    public void put(String sourceId, ZoomSnapshot snapshot) {
+        if (null == snapshot) {
+            mMap.remove(sourceId);
+        } else {
+            mMap.put(sourceId, snapshot);
+        }
+    }
+
+    public void remove(String sourceId) {
+        mMap.remove(sourceId);
+    }
+
+    public void setMaxCount(int maxCount) {
+        mMaxCount = Math.max(1, maxCount);
+        while (mMap.size() > mMaxCount) {
+            mMap.remove(mMap.keySet().iterator().next());
+        }
+    }
+
+    public int getMaxCount() {
+        return mMaxCount;
+    }
+
+    public int size() {
+        return mMap.size();
+    }
+
+    public void clear() {
+        mMap.clear();
+    }
+}
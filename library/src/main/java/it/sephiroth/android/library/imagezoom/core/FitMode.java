@@ -0,0 +1,28 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * How the image is scaled by default into the viewport. Same values of
+ * {@link it.sephiroth.android.library.imagezoom.ImageViewTouchBase.DisplayType}, usable without the Android framework
+ */
+public enum FitMode {
+    /**
+     * Image is not scaled
+     */
+    NONE,
+    /**
+     * Image always fits the viewport
+     */
+    FIT_TO_SCREEN,
+    /**
+     * Image fits the viewport only if bigger
+     */
+    FIT_IF_BIGGER,
+    /**
+     * Image fits the viewport height
+     */
+    FIT_HEIGHT,
+    /**
+     * Image fits the viewport width
+     */
+    FIT_WIDTH
+}
@@ -0,0 +1,103 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * One dimensional decelerating motion, in the same spirit of <code>android.widget.OverScroller</code>.<br />
+ * The value moves from a start to a final position with a constant deceleration, reaching the final position
+ * with zero velocity. When started with {@link #fling(float, float, float, float, float, long)} the final
+ * position is clamped to the given bounds before starting, so the motion never leaves the bounds
+ * and never needs a second corrective animation.<br />
+ * Times are in milliseconds, on any monotonic clock. This class has no Android dependencies.
+ */
+public class FlingModel {
+    private static final float MILLIS_PER_SECOND = 1000f;
+
+    private float mStart;
+    private float mFinal;
+    private float mCurrent;
+    private long mStartTime;
+    private long mDuration;
+    private boolean mFinished = true;
+
+    /**
+     * Start moving from <code>start</code> to <code>end</code> in the given time
+     */
+    public void start(float start, float end, long startTime, long duration) {
+        mStart = start;
+        mFinal = end;
+        mCurrent = start;
+        mStartTime = startTime;
+        mDuration = Math.max(0, duration);
+        mFinished = false;
+    }
+
+    /**
+     * Start a fling with the given initial velocity. The final position is where the motion would
+     * stop with the given deceleration, clamped to [<code>min</code>, <code>max</code>]. When clamped, the
+     * initial velocity is reduced so that the motion stops exactly at the bound.
+     *
+     * @param start        the start position
+     * @param velocity     the initial velocity, in units per second
+     * @param min          the minimum final position
+     * @param max          the maximum final position
+     * @param deceleration the deceleration, in units per second squared
+     * @param startTime    the start time
+     */
+    public void fling(float start, float velocity, float min, float max, float deceleration, long startTime) {
+        float distance = velocity * Math.abs(velocity) / (2 * deceleration);
+        final float end = Math.max(min, Math.min(max, start + distance));
+        distance = Math.abs(end - start);
+
+        // time needed to stop in `distance` with a constant deceleration
+        final long duration = (long) (Math.sqrt(2 * distance / deceleration) * MILLIS_PER_SECOND);
+        start(start, end, startTime, duration);
+    }
+
+    /**
+     * Update the current value for the given time
+     *
+     * @return false if the motion was already finished before this call
+     */
+    public boolean computeValue(long time) {
+        if (mFinished) {
+            return false;
+        }
+
+        final long elapsed = time - mStartTime;
+        if (elapsed >= mDuration) {
+            mCurrent = mFinal;
+            mFinished = true;
+        } else if (elapsed > 0) {
+            // constant deceleration: same curve of a DecelerateInterpolator with factor 1
+            final float remaining = 1 - (float) elapsed / mDuration;
+            mCurrent = mStart + (mFinal - mStart) * (1 - remaining * remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Stop the motion at the current value
+     */
+    public void abort() {
+        mFinished = true;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public float getStart() {
+        return mStart;
+    }
+
+    public float getCurrent() {
+        return mCurrent;
+    }
+
+    public float getFinal() {
+        return mFinal;
+    }
+
+    public long getDuration() {
+        return mDuration;
+    }
+}
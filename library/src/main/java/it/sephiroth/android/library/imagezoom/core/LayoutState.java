@@ -0,0 +1,62 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * The complete layout of a {@link ZoomEngine}: viewport and content size, fit mode, zoom limits and
+ * transforms. Restoring it with {@link ZoomEngine#restoreState(LayoutState)} is exact, and skips the
+ * layout of the content, but only works with the same viewport and content size.
+ */
+public class LayoutState {
+    final Transform mBase = new Transform();
+    final Transform mSupport = new Transform();
+    float mViewPortWidth;
+    float mViewPortHeight;
+    float mContentWidth;
+    float mContentHeight;
+    FitMode mFitMode;
+    float mMinZoom;
+    float mMaxZoom;
+    boolean mMinZoomDefined;
+    boolean mMaxZoomDefined;
+    boolean mUserScaled;
+    boolean mValid;
+
+    public boolean isValid() {
+        return mValid;
+    }
+
+    /**
+     * Returns true if the scale or the position have been changed by the user
+     */
+    public boolean isUserScaled() {
+        return mUserScaled;
+    }
+
+    public void setUserScaled(boolean value) {
+        mUserScaled = value;
+    }
+
+    /**
+     * Returns the scale, relative to the base transform
+     */
+    public float getScale() {
+        return mSupport.getScaleX();
+    }
+
+    /**
+     * Returns true if the state can be restored with the given viewport and content size, and fit mode
+     */
+    public boolean matches(float viewPortWidth, float viewPortHeight, float contentWidth, float contentHeight, FitMode mode) {
+        return mValid && mViewPortWidth == viewPortWidth && mViewPortHeight == viewPortHeight
+            && mContentWidth == contentWidth && mContentHeight == contentHeight && mFitMode == mode;
+    }
+
+    public void invalidate() {
+        mValid = false;
+    }
+
+    @Override
+    public String toString() {
+        return "LayoutState{valid: " + mValid + ", viewport: " + mViewPortWidth + "x" + mViewPortHeight + ", content: "
+            + mContentWidth + "x" + mContentHeight + ", scale: " + getScale() + "}";
+    }
+}
@@ -0,0 +1,130 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * Extrapolates the position of a pointer to a time in the near future, usually the presentation time of the
+ * next frame, from its most recent samples. Used to hide the time between a touch event and the frame showing it.<br />
+ * The velocity is the least squares fit of the samples received in the last {@link #WINDOW_NANOS}, and the
+ * prediction always starts from the newest sample, so every new sample corrects the previous prediction.
+ * Nothing is predicted when the newest sample is older than {@link #STALE_NANOS}, since the pointer is not moving.
+ */
+public class TouchPredictor {
+    public static final long DEFAULT_MAX_PREDICTION_NANOS = 20000000L;
+    public static final long WINDOW_NANOS = 50000000L;
+    public static final long STALE_NANOS = 40000000L;
+    private static final int CAPACITY = 16;
+    private static final float NANOS_PER_MILLI = 1000000f;
+
+    private final long[] mTimes = new long[CAPACITY];
+    private final float[] mX = new float[CAPACITY];
+    private final float[] mY = new float[CAPACITY];
+    // index of the newest sample
+    private int mHead = -1;
+    private int mCount;
+    private long mMaxPredictionNanos = DEFAULT_MAX_PREDICTION_NANOS;
+
+    /**
+     * Set how far in the future the position can be predicted. Longer predictions hide more
+     * latency, but overshoot more when the pointer changes direction
+     */
+    public void setMaxPrediction(long nanos) {
+        mMaxPredictionNanos = nanos;
+    }
+
+    public long getMaxPrediction() {
+        return mMaxPredictionNanos;
+    }
+
+    public void reset() {
+        mHead = -1;
+        mCount = 0;
+    }
+
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * Add a sample. Samples must be added in time order, a sample with the same time of the newest one replaces it
+     *
+     * @param timeNanos the sample time, in nanoseconds
+     */
+    public void addSample(long timeNanos, float x, float y) {
+        if (mCount > 0 && timeNanos < mTimes[mHead]) {
+            return;
+        }
+        if (mCount == 0 || timeNanos > mTimes[mHead]) {
+            mHead = (mHead + 1) % CAPACITY;
+            mCount = Math.min(mCount + 1, CAPACITY);
+        }
+        mTimes[mHead] = timeNanos;
+        mX[mHead] = x;
+        mY[mHead] = y;
+    }
+
+    /**
+     * Returns true if no sample has been added in the {@link #STALE_NANOS} before the given time
+     */
+    public boolean isStale(long timeNanos) {
+        return mCount == 0 || timeNanos - mTimes[mHead] > STALE_NANOS;
+    }
+
+    /**
+     * Predict how far the pointer moves from the newest sample to the given time
+     *
+     * @param timeNanos the time to predict, in the time base of the samples
+     * @param out       receives the displacement from the newest sample as { x, y }
+     * @return false if nothing can be predicted: too few samples, or the pointer stopped
+     */
+    public boolean predict(long timeNanos, float[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        if (mCount < 2) {
+            return false;
+        }
+
+        final long newest = mTimes[mHead];
+        final long horizon = Math.min(timeNanos - newest, mMaxPredictionNanos);
+        if (horizon <= 0 || timeNanos - newest > STALE_NANOS) {
+            return false;
+        }
+
+        // least squares fit of position over time, with times in milliseconds relative to the newest sample
+        int count = 0;
+        float sumT = 0;
+        float sumX = 0;
+        float sumY = 0;
+        for (int i = 0, index = mHead; i < mCount; i++, index = (index + CAPACITY - 1) % CAPACITY) {
+            if (newest - mTimes[index] > WINDOW_NANOS) {
+                break;
+            }
+            sumT += (mTimes[index] - newest) / NANOS_PER_MILLI;
+            sumX += mX[index];
+            sumY += mY[index];
+            count++;
+        }
+        if (count < 2) {
+            return false;
+        }
+
+        final float meanT = sumT / count;
+        final float meanX = sumX / count;
+        final float meanY = sumY / count;
+        float varT = 0;
+        float covX = 0;
+        float covY = 0;
+        for (int i = 0, index = mHead; i < count; i++, index = (index + CAPACITY - 1) % CAPACITY) {
+            final float t = (mTimes[index] - newest) / NANOS_PER_MILLI - meanT;
+            varT += t * t;
+            covX += t * (mX[index] - meanX);
+            covY += t * (mY[index] - meanY);
+        }
+        if (varT <= 0) {
+            return false;
+        }
+
+        final float millis = horizon / NANOS_PER_MILLI;
+        out[0] = covX / varT * millis;
+        out[1] = covY / varT * millis;
+        return true;
+    }
+}
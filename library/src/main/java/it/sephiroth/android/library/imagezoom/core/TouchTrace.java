@@ -0,0 +1,207 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A sequence of touch events, with the drawable size and the viewport size they were recorded with,
+ * and its compact binary format. Used by <code>GestureTrace</code> on the device, and by the JVM tools
+ * reading the recorded traces. This class has no Android dependencies.<br />
+ * Actions are the masked <code>MotionEvent</code> actions. Format (big endian):
+ * <pre>
+ * header: int magic, short version, int drawable width, int drawable height, int view width, int view height, int event count
+ * event:  byte action, byte action index, byte pointer count, int time (ms since the first event),
+ *         then for every pointer: byte id, float x, float y
+ * </pre>
+ */
+public class TouchTrace {
+    public static final int MAGIC = 0x49565a54;
+    public static final int VERSION = 1;
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+    public static final int ACTION_POINTER_DOWN = 5;
+    public static final int ACTION_POINTER_UP = 6;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int mDrawableWidth;
+    private final int mDrawableHeight;
+    private final int mViewWidth;
+    private final int mViewHeight;
+    private int mCount;
+    private byte[] mActions = new byte[INITIAL_CAPACITY];
+    private byte[] mActionIndexes = new byte[INITIAL_CAPACITY];
+    private byte[] mPointerCounts = new byte[INITIAL_CAPACITY];
+    private int[] mTimes = new int[INITIAL_CAPACITY];
+    // offset of the first pointer of every event in mPointerIds, and in mCoords / 2
+    private int[] mPointerOffsets = new int[INITIAL_CAPACITY];
+    private int mPointerCount;
+    private byte[] mPointerIds = new byte[INITIAL_CAPACITY];
+    private float[] mCoords = new float[INITIAL_CAPACITY * 2];
+
+    public TouchTrace(int drawableWidth, int drawableHeight, int viewWidth, int viewHeight) {
+        mDrawableWidth = drawableWidth;
+        mDrawableHeight = drawableHeight;
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+    }
+
+    /**
+     * Append an event. Its pointers must then be set with {@link #setPointer(int, int, float, float)}
+     *
+     * @param time the time of the event, in milliseconds since the first event
+     * @return the index, for {@link #setPointer(int, int, float, float)}, of the event's first pointer
+     */
+    public int addEvent(int action, int actionIndex, int pointerCount, int time) {
+        if (mCount == mActions.length) {
+            final int capacity = mCount * 2;
+            mActions = Arrays.copyOf(mActions, capacity);
+            mActionIndexes = Arrays.copyOf(mActionIndexes, capacity);
+            mPointerCounts = Arrays.copyOf(mPointerCounts, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mPointerOffsets = Arrays.copyOf(mPointerOffsets, capacity);
+        }
+        if (mPointerCount + pointerCount > mPointerIds.length) {
+            final int capacity = Math.max(mPointerIds.length * 2, mPointerCount + pointerCount);
+            mPointerIds = Arrays.copyOf(mPointerIds, capacity);
+            mCoords = Arrays.copyOf(mCoords, capacity * 2);
+        }
+
+        final int offset = mPointerCount;
+        mActions[mCount] = (byte) action;
+        mActionIndexes[mCount] = (byte) actionIndex;
+        mPointerCounts[mCount] = (byte) pointerCount;
+        mTimes[mCount] = time;
+        mPointerOffsets[mCount] = offset;
+        mCount++;
+        mPointerCount += pointerCount;
+        return offset;
+    }
+
+    /**
+     * Set a pointer of the last added event
+     *
+     * @param index the index returned by {@link #addEvent(int, int, int, int)}, plus the pointer index
+     */
+    public void setPointer(int index, int id, float x, float y) {
+        mPointerIds[index] = (byte) id;
+        mCoords[index * 2] = x;
+        mCoords[index * 2 + 1] = y;
+    }
+
+    public int getDrawableWidth() {
+        return mDrawableWidth;
+    }
+
+    public int getDrawableHeight() {
+        return mDrawableHeight;
+    }
+
+    public int getViewWidth() {
+        return mViewWidth;
+    }
+
+    public int getViewHeight() {
+        return mViewHeight;
+    }
+
+    public int getEventCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the time of the event, in milliseconds since the first event
+     */
+    public int getEventTime(int index) {
+        return mTimes[index];
+    }
+
+    public int getAction(int index) {
+        return mActions[index];
+    }
+
+    public int getActionIndex(int index) {
+        return mActionIndexes[index];
+    }
+
+    public int getPointerCount(int index) {
+        return mPointerCounts[index];
+    }
+
+    public int getPointerId(int index, int pointerIndex) {
+        return mPointerIds[mPointerOffsets[index] + pointerIndex];
+    }
+
+    public float getX(int index, int pointerIndex) {
+        return mCoords[(mPointerOffsets[index] + pointerIndex) * 2];
+    }
+
+    public float getY(int index, int pointerIndex) {
+        return mCoords[(mPointerOffsets[index] + pointerIndex) * 2 + 1];
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(mDrawableWidth);
+        out.writeInt(mDrawableHeight);
+        out.writeInt(mViewWidth);
+        out.writeInt(mViewHeight);
+        out.writeInt(mCount);
+
+        for (int i = 0; i < mCount; i++) {
+            final int offset = mPointerOffsets[i];
+            out.writeByte(mActions[i]);
+            out.writeByte(mActionIndexes[i]);
+            out.writeByte(mPointerCounts[i]);
+            out.writeInt(mTimes[i]);
+            for (int p = 0; p < mPointerCounts[i]; p++) {
+                out.writeByte(mPointerIds[offset + p]);
+                out.writeFloat(mCoords[(offset + p) * 2]);
+                out.writeFloat(mCoords[(offset + p) * 2 + 1]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read a trace written by {@link #writeTo(OutputStream)}
+     *
+     * @throws IOException if the stream does not contain a valid trace
+     */
+    public static TouchTrace read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a gesture trace");
+        }
+        final int version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported gesture trace version: " + version);
+        }
+
+        TouchTrace trace = new TouchTrace(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final int action = in.readByte();
+            final int actionIndex = in.readByte();
+            final int pointerCount = in.readByte();
+            final int offset = trace.addEvent(action, actionIndex, pointerCount, in.readInt());
+            for (int p = 0; p < pointerCount; p++) {
+                trace.setPointer(offset + p, in.readByte(), in.readFloat(), in.readFloat());
+            }
+        }
+        return trace;
+    }
+
+    @Override
+    public String toString() {
+        return "TouchTrace{drawable: " + mDrawableWidth + "x" + mDrawableHeight + ", view: " + mViewWidth + "x" + mViewHeight
+            + ", events: " + mCount + "}";
+    }
+}
@@ -0,0 +1,201 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * Scale and translation transform, kept in plain fields so that reading the
+ * current scale or translation does not need to copy the values out of an <code>android.graphics.Matrix</code>.<br />
+ * A point (x, y) is mapped to (x * scaleX + translateX, y * scaleY + translateY). Rotation and skew
+ * are not supported.<br />
+ * This class has no Android dependencies, so it can be used and tested on the plain JVM.
+ */
+public class Transform {
+    // indices of the values, same layout of android.graphics.Matrix
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    private float mScaleX = 1;
+    private float mScaleY = 1;
+    private float mTranslateX;
+    private float mTranslateY;
+
+    public Transform() {
+    }
+
+    public Transform(Transform other) {
+        set(other);
+    }
+
+    public void reset() {
+        set(1, 1, 0, 0);
+    }
+
+    public void set(Transform other) {
+        set(other.mScaleX, other.mScaleY, other.mTranslateX, other.mTranslateY);
+    }
+
+    public void set(float scaleX, float scaleY, float translateX, float translateY) {
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+        mTranslateX = translateX;
+        mTranslateY = translateY;
+    }
+
+    public float getScaleX() {
+        return mScaleX;
+    }
+
+    public float getScaleY() {
+        return mScaleY;
+    }
+
+    public float getTranslateX() {
+        return mTranslateX;
+    }
+
+    public float getTranslateY() {
+        return mTranslateY;
+    }
+
+    public boolean isIdentity() {
+        return mScaleX == 1 && mScaleY == 1 && mTranslateX == 0 && mTranslateY == 0;
+    }
+
+    /**
+     * Post translate: the translation is applied after the current transform
+     */
+    public void postTranslate(float dx, float dy) {
+        mTranslateX += dx;
+        mTranslateY += dy;
+    }
+
+    /**
+     * Post scale around the origin
+     */
+    public void postScale(float sx, float sy) {
+        mScaleX *= sx;
+        mScaleY *= sy;
+        mTranslateX *= sx;
+        mTranslateY *= sy;
+    }
+
+    /**
+     * Post scale around the pivot point (px, py)
+     */
+    public void postScale(float sx, float sy, float px, float py) {
+        mScaleX *= sx;
+        mScaleY *= sy;
+        mTranslateX = (mTranslateX - px) * sx + px;
+        mTranslateY = (mTranslateY - py) * sy + py;
+    }
+
+    /**
+     * Pre scale: the scale is applied before the current transform
+     */
+    public void preScale(float sx, float sy) {
+        mScaleX *= sx;
+        mScaleY *= sy;
+    }
+
+    /**
+     * Set this transform to <code>a * b</code>: the result maps a point first through
+     * <code>b</code> and then through <code>a</code>. Both can be this same instance
+     */
+    public void setConcat(Transform a, Transform b) {
+        set(
+            a.mScaleX * b.mScaleX, a.mScaleY * b.mScaleY,
+            a.mScaleX * b.mTranslateX + a.mTranslateX, a.mScaleY * b.mTranslateY + a.mTranslateY
+        );
+    }
+
+    /**
+     * Store the inverse of this transform in <code>out</code>, which can be this same instance
+     *
+     * @return false if this transform cannot be inverted, in which case <code>out</code> is not modified
+     */
+    public boolean invert(Transform out) {
+        if (mScaleX == 0 || mScaleY == 0) {
+            return false;
+        }
+        out.set(1 / mScaleX, 1 / mScaleY, -mTranslateX / mScaleX, -mTranslateY / mScaleY);
+        return true;
+    }
+
+    public float mapX(float x) {
+        return x * mScaleX + mTranslateX;
+    }
+
+    public float mapY(float y) {
+        return y * mScaleY + mTranslateY;
+    }
+
+    /**
+     * Map the rectangle stored in <code>rect</code> as { left, top, right, bottom }. The result is sorted,
+     * so left &lt;= right and top &lt;= bottom
+     */
+    public void mapRect(float[] rect) {
+        final float left = mapX(rect[0]);
+        final float top = mapY(rect[1]);
+        final float right = mapX(rect[2]);
+        final float bottom = mapY(rect[3]);
+        rect[0] = Math.min(left, right);
+        rect[1] = Math.min(top, bottom);
+        rect[2] = Math.max(left, right);
+        rect[3] = Math.max(top, bottom);
+    }
+
+    /**
+     * Copy the values into a 9 elements array, using the same layout of <code>android.graphics.Matrix#getValues</code>
+     */
+    public void getValues(float[] values) {
+        values[MSCALE_X] = mScaleX;
+        values[MSKEW_X] = 0;
+        values[MTRANS_X] = mTranslateX;
+        values[MSKEW_Y] = 0;
+        values[MSCALE_Y] = mScaleY;
+        values[MTRANS_Y] = mTranslateY;
+        values[MPERSP_0] = 0;
+        values[MPERSP_1] = 0;
+        values[MPERSP_2] = 1;
+    }
+
+    /**
+     * Set the values from a 9 elements array, using the same layout of <code>android.graphics.Matrix#getValues</code>.
+     * Skew and perspective values are ignored
+     */
+    public void setValues(float[] values) {
+        set(values[MSCALE_X], values[MSCALE_Y], values[MTRANS_X], values[MTRANS_Y]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Transform)) {
+            return false;
+        }
+        Transform other = (Transform) o;
+        return Float.compare(mScaleX, other.mScaleX) == 0 && Float.compare(mScaleY, other.mScaleY) == 0
+            && Float.compare(mTranslateX, other.mTranslateX) == 0 && Float.compare(mTranslateY, other.mTranslateY) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(mScaleX);
+        result = 31 * result + Float.floatToIntBits(mScaleY);
+        result = 31 * result + Float.floatToIntBits(mTranslateX);
+        result = 31 * result + Float.floatToIntBits(mTranslateY);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Transform{ x: " + mTranslateX + ", y: " + mTranslateY + ", scalex: " + mScaleX + ", scaley: " + mScaleY + " }";
+    }
+}
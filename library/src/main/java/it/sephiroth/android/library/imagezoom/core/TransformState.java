@@ -0,0 +1,215 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * The geometry of an image view: base and support {@link Transform}, image size and viewport.<br />
+ * Every change increments a version counter, and the values derived from the geometry (display transform,
+ * image bounds on screen, the translation needed to keep the image centered, whether the image can be scrolled)
+ * are computed at most once per version, and then served from cache until the next change.<br />
+ * The transforms returned by {@link #getBase()} and {@link #getSupport()} can be modified directly,
+ * as long as {@link #invalidate()} is called afterwards.
+ */
+public class TransformState {
+    private final Transform mBase = new Transform();
+    private final Transform mSupport = new Transform();
+    private final Transform mDisplay = new Transform();
+    private final Transform mTmp = new Transform();
+    // mapped image bounds as { left, top, right, bottom }
+    private final float[] mBounds = new float[4];
+    private final float[] mTmpBounds = new float[4];
+    private float mImageWidth;
+    private float mImageHeight;
+    private float mViewLeft;
+    private float mViewTop;
+    private float mViewRight;
+    private float mViewBottom;
+    private int mVersion;
+    private int mComputedVersion = -1;
+    private float mCenterX;
+    private float mCenterY;
+    private boolean mCanScroll;
+
+    public Transform getBase() {
+        return mBase;
+    }
+
+    public Transform getSupport() {
+        return mSupport;
+    }
+
+    /**
+     * Returns the current version, incremented at every change
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Must be called after the base or the support transform have been modified directly
+     */
+    public void invalidate() {
+        mVersion++;
+    }
+
+    public void postTranslate(float dx, float dy) {
+        mSupport.postTranslate(dx, dy);
+        mVersion++;
+    }
+
+    public void postScale(float scale, float centerX, float centerY) {
+        mSupport.postScale(scale, scale, centerX, centerY);
+        mVersion++;
+    }
+
+    public void setSupport(Transform transform) {
+        mSupport.set(transform);
+        mVersion++;
+    }
+
+    public void resetSupport() {
+        mSupport.reset();
+        mVersion++;
+    }
+
+    public void resetBase() {
+        mBase.reset();
+        mVersion++;
+    }
+
+    public void preScaleBase(float sx, float sy) {
+        mBase.preScale(sx, sy);
+        mVersion++;
+    }
+
+    public void setImageSize(float width, float height) {
+        if (width != mImageWidth || height != mImageHeight) {
+            mImageWidth = width;
+            mImageHeight = height;
+            mVersion++;
+        }
+    }
+
+    public void setViewPort(float left, float top, float right, float bottom) {
+        if (left != mViewLeft || top != mViewTop || right != mViewRight || bottom != mViewBottom) {
+            mViewLeft = left;
+            mViewTop = top;
+            mViewRight = right;
+            mViewBottom = bottom;
+            mVersion++;
+        }
+    }
+
+    public float getImageWidth() {
+        return mImageWidth;
+    }
+
+    public float getImageHeight() {
+        return mImageHeight;
+    }
+
+    public float getViewPortLeft() {
+        return mViewLeft;
+    }
+
+    public float getViewPortTop() {
+        return mViewTop;
+    }
+
+    public float getViewPortRight() {
+        return mViewRight;
+    }
+
+    public float getViewPortBottom() {
+        return mViewBottom;
+    }
+
+    /**
+     * Returns the concatenation of the base and the support transforms. Do not modify it
+     */
+    public Transform getDisplay() {
+        update();
+        return mDisplay;
+    }
+
+    /**
+     * Copy the image bounds, mapped by the display transform, into <code>out</code> as { left, top, right, bottom }
+     */
+    public void getBounds(float[] out) {
+        update();
+        System.arraycopy(mBounds, 0, out, 0, 4);
+    }
+
+    /**
+     * Copy into <code>out</code> the image bounds mapped by the base transform concatenated with
+     * <code>support</code>. When <code>support</code> is the current support transform the cached value is used
+     */
+    public void getBounds(Transform support, float[] out) {
+        if (support == mSupport) {
+            getBounds(out);
+        } else {
+            mTmp.setConcat(support, mBase);
+            mapImage(mTmp, out);
+        }
+    }
+
+    /**
+     * Returns the translation which keeps the image centered, if smaller than the viewport,
+     * or which removes the empty space at its sides otherwise
+     *
+     * @param support    the support transform. When it's the current one the cached value is used
+     * @param horizontal true to compute the horizontal translation, otherwise <code>out[0]</code> is 0
+     * @param vertical   true to compute the vertical translation, otherwise <code>out[1]</code> is 0
+     * @param out        receives the translation as { x, y }
+     */
+    public void getCenter(Transform support, boolean horizontal, boolean vertical, float[] out) {
+        if (support == mSupport) {
+            update();
+            out[0] = mCenterX;
+            out[1] = mCenterY;
+        } else {
+            getBounds(support, mTmpBounds);
+            out[0] = ZoomMath.getCenterOffset(mTmpBounds[0], mTmpBounds[2], mViewLeft, mViewRight);
+            out[1] = ZoomMath.getCenterOffset(mTmpBounds[1], mTmpBounds[3], mViewTop, mViewBottom);
+        }
+
+        if (!horizontal) {
+            out[0] = 0;
+        }
+        if (!vertical) {
+            out[1] = 0;
+        }
+    }
+
+    /**
+     * Returns true if the image is zoomed in, or if it's not entirely contained in the viewport
+     */
+    public boolean canScroll() {
+        update();
+        return mCanScroll;
+    }
+
+    private void update() {
+        if (mComputedVersion == mVersion) {
+            return;
+        }
+
+        mDisplay.setConcat(mSupport, mBase);
+        mapImage(mDisplay, mBounds);
+        mCenterX = ZoomMath.getCenterOffset(mBounds[0], mBounds[2], mViewLeft, mViewRight);
+        mCenterY = ZoomMath.getCenterOffset(mBounds[1], mBounds[3], mViewTop, mViewBottom);
+        mCanScroll = mSupport.getScaleX() > 1 || !viewPortContains(mBounds);
+        mComputedVersion = mVersion;
+    }
+
+    private void mapImage(Transform transform, float[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = mImageWidth;
+        out[3] = mImageHeight;
+        transform.mapRect(out);
+    }
+
+    private boolean viewPortContains(float[] rect) {
+        return mViewLeft < mViewRight && mViewTop < mViewBottom
+            && mViewLeft <= rect[0] && mViewTop <= rect[1] && mViewRight >= rect[2] && mViewBottom >= rect[3];
+    }
+}
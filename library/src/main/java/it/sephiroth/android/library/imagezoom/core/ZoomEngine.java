@@ -0,0 +1,494 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * The zoom and pan logic of the image views, without any dependency on the Android view system: given the
+ * viewport, the content size and the {@link FitMode} it lays out the content, applies zoom and pan
+ * deltas keeping the content centered and within the zoom limits, and computes the destination
+ * of the animations.<br />
+ * The geometry is kept in a {@link TransformState}. An engine can be used on any thread, for instance to
+ * precompute the initial state of the next image, but a single instance is not thread safe.
+ */
+public class ZoomEngine {
+    public static final float ZOOM_INVALID = -1f;
+    public static final float MIN_SCALE_DIFF = 0.1f;
+
+    private final TransformState mState = new TransformState();
+    private final Transform mBase = mState.getBase();
+    private final Transform mSupport = mState.getSupport();
+    private final float[] mBounds = new float[4];
+    private final float[] mPoint = new float[2];
+    private final Transform mInverse = new Transform();
+    private FitMode mFitMode = FitMode.FIT_IF_BIGGER;
+    private float mMinZoom = ZOOM_INVALID;
+    private float mMaxZoom = ZOOM_INVALID;
+    // true when min and max zoom are explicitly defined
+    private boolean mMinZoomDefined;
+    private boolean mMaxZoomDefined;
+
+    public TransformState getState() {
+        return mState;
+    }
+
+    public void setViewPort(float left, float top, float right, float bottom) {
+        mState.setViewPort(left, top, right, bottom);
+    }
+
+    public void setContentSize(float width, float height) {
+        mState.setImageSize(width, height);
+    }
+
+    public void setFitMode(FitMode mode) {
+        mFitMode = mode;
+    }
+
+    public FitMode getFitMode() {
+        return mFitMode;
+    }
+
+    /**
+     * Set the zoom limits of the content. Pass {@link #ZOOM_INVALID} to use the default limits.<br />
+     * With {@link FitMode#FIT_TO_SCREEN} and {@link FitMode#FIT_IF_BIGGER} the minimum zoom must be lower
+     * than 1 and the maximum zoom greater than 1, otherwise the default is used.
+     */
+    public void setZoomLimits(float minZoom, float maxZoom) {
+        if (minZoom != ZOOM_INVALID && maxZoom != ZOOM_INVALID) {
+            mMinZoom = Math.min(minZoom, maxZoom);
+            mMaxZoom = Math.max(minZoom, maxZoom);
+            mMinZoomDefined = true;
+            mMaxZoomDefined = true;
+
+            if (mFitMode == FitMode.FIT_TO_SCREEN || mFitMode == FitMode.FIT_IF_BIGGER) {
+                if (mMinZoom >= 1) {
+                    mMinZoomDefined = false;
+                    mMinZoom = ZOOM_INVALID;
+                }
+
+                if (mMaxZoom <= 1) {
+                    mMaxZoomDefined = true;
+                    mMaxZoom = ZOOM_INVALID;
+                }
+            }
+        } else {
+            mMinZoom = ZOOM_INVALID;
+            mMaxZoom = ZOOM_INVALID;
+            mMinZoomDefined = false;
+            mMaxZoomDefined = false;
+        }
+    }
+
+    /**
+     * Discard the computed zoom limits, which depend on the content and viewport size.
+     * Explicitly defined limits are kept
+     */
+    public void resetZoomLimits() {
+        if (!mMinZoomDefined) {
+            mMinZoom = ZOOM_INVALID;
+        }
+        if (!mMaxZoomDefined) {
+            mMaxZoom = ZOOM_INVALID;
+        }
+    }
+
+    public void setMinZoom(float value) {
+        mMinZoom = value;
+    }
+
+    public void setMaxZoom(float value) {
+        mMaxZoom = value;
+    }
+
+    public float getMinScale() {
+        if (mMinZoom == ZOOM_INVALID) {
+            mMinZoom = computeMinZoom();
+        }
+        return mMinZoom;
+    }
+
+    public float getMaxScale() {
+        if (mMaxZoom == ZOOM_INVALID) {
+            mMaxZoom = computeMaxZoom();
+        }
+        return mMaxZoom;
+    }
+
+    public float computeMinZoom() {
+        if (!hasContent()) {
+            return 1f;
+        }
+        return ZoomMath.computeMinZoom(mBase.getScaleX());
+    }
+
+    public float computeMaxZoom() {
+        if (!hasContent()) {
+            return 1f;
+        }
+        return ZoomMath.computeMaxZoom(
+            mState.getImageWidth(), mState.getImageHeight(), getViewPortWidth(), getViewPortHeight());
+    }
+
+    /**
+     * Returns the initial scale for the given fit mode
+     */
+    public float getDefaultScale(FitMode mode) {
+        return ZoomMath.getDefaultScale(
+            mode, mBase.getScaleX(), mBase.getScaleY(), mState.getImageWidth(), mState.getImageHeight(), getViewPortWidth(),
+            getViewPortHeight()
+        );
+    }
+
+    /**
+     * Returns the current scale, relative to the base transform
+     */
+    public float getScale() {
+        return mSupport.getScaleX();
+    }
+
+    public float getBaseScale() {
+        return mBase.getScaleX();
+    }
+
+    /**
+     * Lay out new content, or the current content with a new fit mode: the base transform fits the content into
+     * the viewport, then the initial support transform, or the default scale of the fit mode, is applied
+     *
+     * @param initialSupport the initial support transform, or null
+     */
+    public void layoutContent(Transform initialSupport) {
+        ZoomMath.getBaseTransform(
+            mState.getImageWidth(), mState.getImageHeight(), mState.getViewPortLeft(), mState.getViewPortTop(),
+            mState.getViewPortRight(), mState.getViewPortBottom(), mBase
+        );
+
+        final float scale;
+        if (null != initialSupport) {
+            mState.setSupport(initialSupport);
+            scale = getScale();
+        } else {
+            mState.resetSupport();
+            scale = getDefaultScale(mFitMode);
+        }
+
+        if (scale != getScale()) {
+            zoomTo(scale);
+        }
+        clampScale(scale);
+        center(true, true);
+    }
+
+    /**
+     * Lay out the current content after the viewport size changed. Must be called after {@link #setViewPort}
+     *
+     * @param deltaWidth  the change of the viewport width
+     * @param deltaHeight the change of the viewport height
+     * @param userScaled  true if the current scale has been chosen by the user, and should be preserved
+     */
+    public void layoutViewPort(float deltaWidth, float deltaHeight, boolean userScaled) {
+        final float oldBaseScale = mBase.getScaleX();
+        final float oldScale = getScale();
+        final float oldMinScale = Math.min(1f, 1f / oldBaseScale);
+
+        ZoomMath.getBaseTransform(
+            mState.getImageWidth(), mState.getImageHeight(), mState.getViewPortLeft(), mState.getViewPortTop(),
+            mState.getViewPortRight(), mState.getViewPortBottom(), mBase
+        );
+        mState.invalidate();
+        resetZoomLimits();
+        mState.postTranslate(-deltaWidth, -deltaHeight);
+
+        float scale = 1;
+        if (!userScaled) {
+            scale = getDefaultScale(mFitMode);
+        } else if (Math.abs(oldScale - oldMinScale) > MIN_SCALE_DIFF) {
+            scale = (oldBaseScale / mBase.getScaleX()) * oldScale;
+        }
+        zoomTo(scale);
+        clampScale(scale);
+        center(true, true);
+    }
+
+    /**
+     * Returns the explicitly defined minimum zoom, or {@link #ZOOM_INVALID}
+     */
+    public float getMinZoomLimit() {
+        return mMinZoomDefined ? mMinZoom : ZOOM_INVALID;
+    }
+
+    /**
+     * Returns the explicitly defined maximum zoom, or {@link #ZOOM_INVALID}
+     */
+    public float getMaxZoomLimit() {
+        return mMaxZoomDefined ? mMaxZoom : ZOOM_INVALID;
+    }
+
+    /**
+     * Compute the content point displayed at the center of the viewport, relative to the content size:
+     * { 0, 0 } is the top left corner of the content and { 1, 1 } the bottom right one.
+     * Together with {@link #getScale()} it describes the zoom independently from the viewport size
+     *
+     * @return false if there's no content
+     */
+    public boolean getFocus(float[] out) {
+        if (!hasContent() || !getContentPoint(
+            (mState.getViewPortLeft() + mState.getViewPortRight()) / 2, (mState.getViewPortTop() + mState.getViewPortBottom()) / 2,
+            out
+        )) {
+            return false;
+        }
+        out[0] /= mState.getImageWidth();
+        out[1] /= mState.getImageHeight();
+        return true;
+    }
+
+    /**
+     * Zoom to the given scale, within the zoom limits, and display the given content point at the center
+     * of the viewport, as far as the content bounds allow. Must be called after the content has been laid out
+     *
+     * @param focusX the content point, relative to the content width. See {@link #getFocus(float[])}
+     * @param focusY the content point, relative to the content height
+     */
+    public void restoreFocus(float scale, float focusX, float focusY) {
+        if (!hasContent()) {
+            return;
+        }
+        zoomTo(scale);
+        anchorContentPoint(
+            focusX * mState.getImageWidth(), focusY * mState.getImageHeight(),
+            (mState.getViewPortLeft() + mState.getViewPortRight()) / 2, (mState.getViewPortTop() + mState.getViewPortBottom()) / 2
+        );
+        center(true, true);
+    }
+
+    /**
+     * Copy the current layout into <code>out</code>. The user scaled flag is not known to the engine
+     */
+    public void saveState(LayoutState out) {
+        out.mBase.set(mBase);
+        out.mSupport.set(mSupport);
+        out.mViewPortWidth = getViewPortWidth();
+        out.mViewPortHeight = getViewPortHeight();
+        out.mContentWidth = mState.getImageWidth();
+        out.mContentHeight = mState.getImageHeight();
+        out.mFitMode = mFitMode;
+        out.mMinZoom = mMinZoom;
+        out.mMaxZoom = mMaxZoom;
+        out.mMinZoomDefined = mMinZoomDefined;
+        out.mMaxZoomDefined = mMaxZoomDefined;
+        out.mValid = hasContent();
+    }
+
+    /**
+     * Restore a layout saved by {@link #saveState(LayoutState)}, instead of laying out the content again.
+     * Must be called after {@link #setViewPort} and {@link #setContentSize}
+     *
+     * @return false if the state does not match the current viewport, content size and fit mode: nothing is changed
+     */
+    public boolean restoreState(LayoutState state) {
+        if (!state.matches(getViewPortWidth(), getViewPortHeight(), mState.getImageWidth(), mState.getImageHeight(), mFitMode)) {
+            return false;
+        }
+        mBase.set(state.mBase);
+        mState.setSupport(state.mSupport);
+        mMinZoom = state.mMinZoom;
+        mMaxZoom = state.mMaxZoom;
+        mMinZoomDefined = state.mMinZoomDefined;
+        mMaxZoomDefined = state.mMaxZoomDefined;
+        return true;
+    }
+
+    /**
+     * Zoom to the given scale, within the zoom limits, around the center of the viewport
+     */
+    public void zoomTo(float scale) {
+        scale = Math.max(getMinScale(), Math.min(scale, getMaxScale()));
+        zoomTo(scale, (mState.getViewPortLeft() + mState.getViewPortRight()) / 2,
+            (mState.getViewPortTop() + mState.getViewPortBottom()) / 2
+        );
+    }
+
+    /**
+     * Zoom to the given scale, not greater than the maximum zoom, around the given point, then center the content
+     */
+    public void zoomTo(float scale, float centerX, float centerY) {
+        if (scale > getMaxScale()) {
+            scale = getMaxScale();
+        }
+        mState.postScale(scale / getScale(), centerX, centerY);
+        center(true, true);
+    }
+
+    /**
+     * Zoom to the given scale, not greater than the maximum zoom, around the given point and pan by the
+     * given distance, then center the content. The whole change is applied as a single update
+     */
+    public void zoomAndPanBy(float scale, float centerX, float centerY, float dx, float dy) {
+        if (scale > getMaxScale()) {
+            scale = getMaxScale();
+        }
+        if (scale != getScale()) {
+            mState.postScale(scale / getScale(), centerX, centerY);
+        }
+        if (dx != 0 || dy != 0) {
+            mState.postTranslate(dx, dy);
+        }
+        center(true, true);
+    }
+
+    /**
+     * Pan by the given distance, then center the content
+     */
+    public void panBy(float dx, float dy) {
+        if (dx != 0 || dy != 0) {
+            mState.postTranslate(dx, dy);
+            center(true, true);
+        }
+    }
+
+    /**
+     * Translate the content so that it's centered if smaller than the viewport, or it
+     * has no empty space at its sides otherwise
+     *
+     * @return true if the content has been moved
+     */
+    public boolean center(boolean horizontal, boolean vertical) {
+        if (!hasContent()) {
+            return false;
+        }
+
+        mState.getCenter(mSupport, horizontal, vertical, mPoint);
+        if (mPoint[0] != 0 || mPoint[1] != 0) {
+            mState.postTranslate(mPoint[0], mPoint[1]);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compute the range of the translation allowed by a fling, as { min x, max x, min y, max y }. On
+     * an axis where the content is smaller than the viewport the range is the translation which centers it
+     */
+    public void getFlingBounds(float[] out) {
+        mState.getBounds(mBounds);
+        mState.getCenter(mSupport, true, true, mPoint);
+        final float minX = mState.getViewPortRight() - mBounds[2];
+        final float maxX = mState.getViewPortLeft() - mBounds[0];
+        final float minY = mState.getViewPortBottom() - mBounds[3];
+        final float maxY = mState.getViewPortTop() - mBounds[1];
+
+        out[0] = minX <= maxX ? minX : mPoint[0];
+        out[1] = minX <= maxX ? maxX : mPoint[0];
+        out[2] = minY <= maxY ? minY : mPoint[1];
+        out[3] = minY <= maxY ? maxY : mPoint[1];
+    }
+
+    /**
+     * Compute the support transform reached scrolling by the given distance, clamped to the content bounds
+     *
+     * @return <code>out</code>
+     */
+    public Transform getScrollDestination(float dx, float dy, Transform out) {
+        out.set(mSupport);
+        out.postTranslate(dx, dy);
+        mState.getCenter(out, true, true, mPoint);
+        out.postTranslate(mPoint[0], mPoint[1]);
+        return out;
+    }
+
+    /**
+     * Compute the support transform reached zooming to the given scale around the given point, and the
+     * point around which the zoom must be animated to reach it with the content centered
+     *
+     * @param scale the final scale, not greater than the maximum zoom
+     * @param out   receives the final support transform
+     * @param focus receives the zoom center as { x, y }
+     * @return <code>out</code>
+     */
+    public Transform getZoomDestination(float scale, float centerX, float centerY, Transform out, float[] focus) {
+        final float oldScale = getScale();
+
+        out.set(mSupport);
+        out.postScale(scale, scale, centerX, centerY);
+        mState.getCenter(out, true, true, mPoint);
+        focus[0] = centerX + mPoint[0] * scale;
+        focus[1] = centerY + mPoint[1] * scale;
+
+        out.set(mSupport);
+        out.postScale(scale / oldScale, scale / oldScale, focus[0], focus[1]);
+        mState.getCenter(out, true, true, mPoint);
+        out.postTranslate(mPoint[0], mPoint[1]);
+        return out;
+    }
+
+    /**
+     * Map a point from viewport to content coordinates
+     *
+     * @param out receives the content point as { x, y }
+     * @return false if the display transform cannot be inverted
+     */
+    public boolean getContentPoint(float x, float y, float[] out) {
+        if (!mState.getDisplay().invert(mInverse)) {
+            return false;
+        }
+        out[0] = mInverse.mapX(x);
+        out[1] = mInverse.mapY(y);
+        return true;
+    }
+
+    /**
+     * Translate the content, without changing the scale, so that the given content point is
+     * displayed at the given viewport point
+     */
+    public void anchorContentPoint(float contentX, float contentY, float x, float y) {
+        final Transform display = mState.getDisplay();
+        final float dx = x - display.mapX(contentX);
+        final float dy = y - display.mapY(contentY);
+        if (dx != 0 || dy != 0) {
+            mState.postTranslate(dx, dy);
+        }
+    }
+
+    public boolean canScroll() {
+        return mState.canScroll();
+    }
+
+    /**
+     * Copy the content bounds, in viewport coordinates, into <code>out</code> as { left, top, right, bottom }
+     */
+    public void getBounds(float[] out) {
+        mState.getBounds(out);
+    }
+
+    /**
+     * Returns the display transform, from content to viewport coordinates. Do not modify it
+     */
+    public Transform getDisplay() {
+        return mState.getDisplay();
+    }
+
+    private boolean hasContent() {
+        return mState.getImageWidth() > 0 && mState.getImageHeight() > 0;
+    }
+
+    private float getViewPortWidth() {
+        return mState.getViewPortRight() - mState.getViewPortLeft();
+    }
+
+    private float getViewPortHeight() {
+        return mState.getViewPortBottom() - mState.getViewPortTop();
+    }
+
+    /**
+     * Bring the scale back within the zoom limits, zooming around the center of the viewport, then center the
+     * content. Needed when the limits changed without a new layout, like after {@link TransformState#preScaleBase}
+     */
+    public void clampToLimits() {
+        clampScale(getScale());
+        center(true, true);
+    }
+
+    // if the scale is outside the zoom limits, restore a valid scale
+    private void clampScale(float scale) {
+        if (scale > getMaxScale() || scale < getMinScale()) {
+            zoomTo(scale);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+/**
+ * The computations behind the default zoom and pan behavior of the image views, with no
+ * dependency on the Android framework so they can also be measured and verified on the JVM.
+ */
+public final class ZoomMath {
+    /**
+     * The default maximum zoom lets the image be magnified 4 times past its size
+     */
+    public static final int MAX_ZOOM_FACTOR = 4;
+
+    private ZoomMath() {
+    }
+
+    /**
+     * Computes the base transform, which fits the image into the viewport preserving
+     * its aspect ratio and centers it
+     *
+     * @param out receives the base transform
+     * @return <code>out</code>
+     */
+    public static Transform getBaseTransform(
+        float imageWidth, float imageHeight, float left, float top, float right, float bottom, Transform out) {
+        final float width = right - left;
+        final float height = bottom - top;
+        final float scale = Math.min(width / imageWidth, height / imageHeight);
+
+        out.reset();
+        out.postScale(scale, scale);
+        out.postTranslate(left, top);
+        out.postTranslate((width - imageWidth * scale) / 2.0f, (height - imageHeight * scale) / 2.0f);
+        return out;
+    }
+
+    /**
+     * Returns the initial scale, relative to the base transform, for the given fit mode
+     *
+     * @param mode        the fit mode
+     * @param baseScaleX  horizontal scale of the base transform
+     * @param baseScaleY  vertical scale of the base transform
+     * @param imageWidth  image width
+     * @param imageHeight image height
+     * @param viewWidth   view width
+     * @param viewHeight  view height
+     */
+    public static float getDefaultScale(
+        FitMode mode, float baseScaleX, float baseScaleY, float imageWidth, float imageHeight, float viewWidth,
+        float viewHeight) {
+        switch (mode) {
+            case FIT_TO_SCREEN:
+                // always fit to screen
+                return 1f;
+            case FIT_IF_BIGGER:
+                // normal scale if smaller, fit to screen otherwise
+                return Math.min(1f, 1f / baseScaleX);
+            case FIT_HEIGHT:
+                // scale to match the view height
+                return viewHeight / (baseScaleY * imageHeight);
+            case FIT_WIDTH:
+                // scale to match the view width
+                return viewWidth / (baseScaleX * imageWidth);
+            default:
+                // no scale
+                return 1f / baseScaleX;
+        }
+    }
+
+    /**
+     * Default minimum zoom: the image is never smaller than its fitted size, or its real size if smaller
+     */
+    public static float computeMinZoom(float baseScale) {
+        return Math.min(1f, 1f / baseScale);
+    }
+
+    /**
+     * Default maximum zoom, see {@link #MAX_ZOOM_FACTOR}
+     */
+    public static float computeMaxZoom(float imageWidth, float imageHeight, float viewWidth, float viewHeight) {
+        return Math.max(imageWidth / viewWidth, imageHeight / viewHeight) * MAX_ZOOM_FACTOR;
+    }
+
+    /**
+     * Returns the translation, along one axis, which keeps the image centered when smaller than the viewport,
+     * or removes the empty space at its edges otherwise
+     *
+     * @param start     image start, in view coordinates
+     * @param end       image end, in view coordinates
+     * @param viewStart viewport start
+     * @param viewEnd   viewport end
+     */
+    public static float getCenterOffset(float start, float end, float viewStart, float viewEnd) {
+        final float size = end - start;
+        final float viewSize = viewEnd - viewStart;
+        if (size < viewSize) {
+            return (viewSize - size) / 2 - (start - viewStart);
+        } else if (start > viewStart) {
+            return -(start - viewStart);
+        } else if (end < viewEnd) {
+            return viewEnd - end;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the zoom step of the double tap, half of the zoom range
+     */
+    public static float getDoubleTapStep(float minScale, float maxScale) {
+        return (maxScale - minScale) / 2f + 0.5f;
+    }
+
+    /**
+     * Returns the scale reached with a double tap: the current scale increased by
+     * <code>step</code>, or back to the minimum scale once the maximum would be exceeded
+     */
+    public static float getDoubleTapTarget(float scale, float step, float maxScale, float minScale) {
+        if ((scale + step) <= maxScale) {
+            return scale + step;
+        } else {
+            return minScale;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package it.sephiroth.android.library.imagezoom.graphics;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+
+/**
+ * Pool of mutable bitmaps which can be reused, instead of allocating new ones, for decoding
+ * (see {@link android.graphics.BitmapFactory.Options#inBitmap}) or drawing.<br />
+ * Bitmaps are grouped by width, height and config. The pool capacity is expressed in bytes, when
+ * exceeded the oldest bitmaps are recycled.<br />
+ * Use {@link ImageViewTouchBase#setBitmapPool(BitmapPool)} to let the view return its bitmaps
+ * to the pool once they are no more displayed.
+ */
+public class BitmapPool {
+    private static final int MEMORY_FRACTION = 16;
+    private static BitmapPool sInstance;
+
+    private final Map<Bucket, ArrayDeque<Bitmap>> mBuckets = new HashMap<>();
+    private final ArrayDeque<Bitmap> mOrder = new ArrayDeque<>();
+    private final Bucket mLookup = new Bucket();
+    private long mMaxSize;
+    private long mSize;
+    private int mHitCount;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * Returns the process wide shared pool, by default 1/16 of the available heap
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (null == sInstance) {
+            sInstance = new BitmapPool(Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxSize the maximum size, in bytes, of the pooled bitmaps
+     */
+    public BitmapPool(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns a pooled bitmap with the given size and config, or null if
+     * no such bitmap is available. The content of the returned bitmap is undefined
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        mLookup.set(width, height, config);
+        ArrayDeque<Bitmap> bucket = mBuckets.get(mLookup);
+        Bitmap bitmap = null != bucket ? bucket.pollLast() : null;
+
+        if (null != bitmap) {
+            mOrder.remove(bitmap);
+            mSize -= TileCache.getBitmapSize(bitmap);
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Add a bitmap to the pool. The caller must not use the bitmap anymore.
+     *
+     * @param bitmap a mutable bitmap
+     * @return true if the bitmap has been added, false if it cannot be reused
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+        if (null == bitmap || bitmap.isRecycled() || !bitmap.isMutable() || null == bitmap.getConfig()) {
+            return false;
+        }
+
+        final int size = TileCache.getBitmapSize(bitmap);
+        if (size > mMaxSize || mOrder.contains(bitmap)) {
+            return false;
+        }
+
+        Bucket key = new Bucket();
+        key.set(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> bucket = mBuckets.get(key);
+        if (null == bucket) {
+            bucket = new ArrayDeque<>();
+            mBuckets.put(key, bucket);
+        }
+
+        bucket.addLast(bitmap);
+        mOrder.addLast(bitmap);
+        mSize += size;
+        mPutCount++;
+        trimToSize(mMaxSize);
+        return true;
+    }
+
+    /**
+     * Recycle the oldest pooled bitmaps until the pool size is below <code>maxSize</code>
+     */
+    public synchronized void trimToSize(long maxSize) {
+        while (mSize > maxSize && !mOrder.isEmpty()) {
+            Bitmap bitmap = mOrder.pollFirst();
+            mLookup.set(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            ArrayDeque<Bitmap> bucket = mBuckets.get(mLookup);
+            if (null != bucket) {
+                bucket.remove(bitmap);
+            }
+            mSize -= TileCache.getBitmapSize(bitmap);
+            mEvictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the size, in bytes, of the pooled bitmaps
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Number of {@link #get(int, int, Bitmap.Config)} calls which returned a pooled bitmap
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Number of {@link #get(int, int, Bitmap.Config)} calls which returned null
+     */
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getPutCount() {
+        return mPutCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool{size: " + mSize + "/" + mMaxSize + ", hits: " + mHitCount + ", misses: " + mMissCount
+            + ", puts: " + mPutCount + ", evictions: " + mEvictionCount + "}";
+    }
+
+    private static final class Bucket {
+        int width;
+        int height;
+        Bitmap.Config config;
+
+        void set(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Bucket)) {
+                return false;
+            }
+            Bucket other = (Bucket) o;
+            return width == other.width && height == other.height && config == other.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + (null != config ? config.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -5,23 +5,51 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.util.Log;
 
 import java.io.InputStream;
+import java.util.Arrays;
+
+import it.sephiroth.android.library.imagezoom.utils.DecodeScheduler;
 
 /**
  * Fast bitmap drawable. Does not support states. it only
- * support alpha and colormatrix
+ * support alpha and colormatrix.<br />
+ * Optionally (see {@link #setMipmapEnabled(boolean)}) it can draw from a pyramid of
+ * half resolution copies of the bitmap, built lazily by the {@link DecodeScheduler}, when
+ * the image is displayed zoomed out.<br />
+ * Use {@link #recycleBitmap(BitmapPool)} to return the bitmap to a pool: it waits for the mipmap builds
+ * still reading it.
  *
  * @author alessandro
  */
-public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
+public class FastBitmapDrawable extends Drawable implements IBitmapDrawable, IViewportDrawable, IRenderQualityDrawable {
+    private static final String TAG = "FastBitmapDrawable";
+    /**
+     * Maximum number of half resolution levels
+     */
+    public static final int MAX_MIPMAP_LEVELS = 6;
     protected Bitmap mBitmap;
     protected Paint mPaint;
     protected int mIntrinsicWidth, mIntrinsicHeight;
+    protected boolean mMipmapEnabled;
+    protected float mDisplayScale = 1f;
+    protected int mRenderQuality = RenderQualityPolicy.QUALITY_HIGH;
+    private final float[] mMatrixValues = new float[9];
+    // mLevels[0] is always mBitmap, null entries are not built yet
+    private Bitmap[] mLevels;
+    private boolean mLevelsBuilding;
+    private volatile int mLevelsGeneration;
+    // mipmap builds reading the bitmaps, and the bitmap to pool once they're done. Guarded by mSourceLock
+    private final Object mSourceLock = new Object();
+    private int mSourceReaders;
+    private Bitmap mReleasedBitmap;
+    private BitmapPool mReleasePool;
 
     public FastBitmapDrawable(Bitmap b) {
         mBitmap = b;
@@ -39,6 +67,7 @@ public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
 
     public void setBitmap(Bitmap bitmap) {
         mBitmap = bitmap;
+        resetLevels();
     }
 
     public FastBitmapDrawable(Resources res, InputStream is) {
@@ -50,13 +79,205 @@ public class FastBitmapDrawable extends Drawable implements IBitmapDrawable {
         if (null != mBitmap && !mBitmap.isRecycled()) {
             final Rect bounds = getBounds();
             if (!bounds.isEmpty()) {
-                canvas.drawBitmap(mBitmap, null, bounds, mPaint);
+                canvas.drawBitmap(getLevelBitmap(bounds), null, bounds, mPaint);
             } else {
                 canvas.drawBitmap(mBitmap, 0f, 0f, mPaint);
             }
         }
     }
 
+    @Override
+    public void setDisplayMatrix(Matrix matrix) {
+        matrix.getValues(mMatrixValues);
+        mDisplayScale = mMatrixValues[Matrix.MSCALE_X];
+    }
+
+    /**
+     * Enable or disable the mipmap mode. When enabled, and the bitmap is drawn
+     * at less than half its size, a downsampled copy (built in background the first time
+     * it's needed) is drawn instead of the full bitmap
+     *
+     * @param value true to enable the mipmap levels
+     */
+    public void setMipmapEnabled(boolean value) {
+        if (value != mMipmapEnabled) {
+            mMipmapEnabled = value;
+            resetLevels();
+            invalidateSelf();
+        }
+    }
+
+    public boolean getMipmapEnabled() {
+        return mMipmapEnabled;
+    }
+
+    /**
+     * Returns the bitmap to be drawn for the current display scale.
+     * Missing levels are scheduled for creation and the closest available one is returned
+     */
+    protected Bitmap getLevelBitmap(Rect bounds) {
+        if (!mMipmapEnabled || mIntrinsicWidth <= 0) {
+            return mBitmap;
+        }
+
+        if (null == mLevels) {
+            int count = 1;
+            while (count <= MAX_MIPMAP_LEVELS && Math.min(mBitmap.getWidth(), mBitmap.getHeight()) >> count > 0) {
+                count++;
+            }
+            mLevels = new Bitmap[count];
+            mLevels[0] = mBitmap;
+        }
+
+        final float scale = mDisplayScale * bounds.width() / mIntrinsicWidth;
+        final int level = Math.min(
+            mLevels.length - 1, Integer.numberOfTrailingZeros(TiledBitmapDrawable.computeSampleSize(scale)));
+
+        int available = level;
+        while (null == mLevels[available] || mLevels[available].isRecycled()) {
+            available--;
+        }
+
+        if (available < level && !mLevelsBuilding) {
+            buildLevels(available, level);
+        }
+        return mLevels[available];
+    }
+
+    /**
+     * Creates in background all the levels after <code>fromLevel</code> up to <code>toLevel</code>,
+     * every level is half the size of the previous one
+     */
+    protected void buildLevels(final int fromLevel, final int toLevel) {
+        final Bitmap source = mLevels[fromLevel];
+        final int generation = mLevelsGeneration;
+
+        mLevelsBuilding = true;
+        DecodeScheduler.getInstance().submit(
+            new DecodeScheduler.Task<Bitmap[]>(DecodeScheduler.PRIORITY_PREFETCH, this) {
+                @Override
+                protected Bitmap[] doInBackground() {
+                    final Bitmap[] result = new Bitmap[toLevel - fromLevel];
+                    if (!acquireSource(generation)) {
+                        // the bitmap has been replaced or released meanwhile
+                        return result;
+                    }
+                    Bitmap current = source;
+                    try {
+                        for (int i = 0; i < result.length && !current.isRecycled(); i++) {
+                            current = Bitmap.createScaledBitmap(
+                                current, Math.max(1, current.getWidth() / 2), Math.max(1, current.getHeight() / 2), true);
+                            result[i] = current;
+                        }
+                    } catch (OutOfMemoryError e) {
+                        Log.w(TAG, "failed to create the mipmap levels: " + e);
+                    } finally {
+                        releaseSource();
+                    }
+                    return result;
+                }
+
+                @Override
+                protected boolean isStale() {
+                    return generation != mLevelsGeneration;
+                }
+
+                @Override
+                protected void onComplete(final Bitmap[] result) {
+                    onLevelsBuilt(generation, fromLevel, result);
+                }
+            }
+        );
+    }
+
+    void onLevelsBuilt(int generation, int fromLevel, Bitmap[] levels) {
+        if (generation != mLevelsGeneration) {
+            return;
+        }
+        mLevelsBuilding = false;
+        if (null != mLevels) {
+            for (int i = 0; i < levels.length && fromLevel + i + 1 < mLevels.length; i++) {
+                if (null == levels[i]) {
+                    // do not try again to build the levels which failed
+                    mLevels = Arrays.copyOf(mLevels, fromLevel + i + 1);
+                    break;
+                }
+                mLevels[fromLevel + i + 1] = levels[i];
+            }
+            invalidateSelf();
+        }
+    }
+
+    // called on the decode thread before reading the bitmap, returns false if the levels are obsolete
+    private boolean acquireSource(int generation) {
+        synchronized (mSourceLock) {
+            if (generation != mLevelsGeneration) {
+                return false;
+            }
+            mSourceReaders++;
+            return true;
+        }
+    }
+
+    private void releaseSource() {
+        final Bitmap bitmap;
+        final BitmapPool pool;
+        synchronized (mSourceLock) {
+            if (--mSourceReaders > 0 || null == mReleasedBitmap) {
+                return;
+            }
+            bitmap = mReleasedBitmap;
+            pool = mReleasePool;
+            mReleasedBitmap = null;
+            mReleasePool = null;
+        }
+        pool.put(bitmap);
+    }
+
+    /**
+     * Detach the bitmap from this drawable, which will not draw it anymore, and return it to the given pool.
+     * Pending mipmap builds are cancelled; if a build is already reading the bitmap, it is returned to the pool
+     * only once the build is completed. Must be called after the drawable has been removed from its view
+     *
+     * @param pool the pool which receives the bitmap
+     */
+    public void recycleBitmap(BitmapPool pool) {
+        final Bitmap bitmap = mBitmap;
+        DecodeScheduler.getInstance().cancel(this);
+        mBitmap = null;
+        resetLevels();
+        if (null == bitmap) {
+            return;
+        }
+
+        synchronized (mSourceLock) {
+            if (mSourceReaders > 0) {
+                mReleasedBitmap = bitmap;
+                mReleasePool = pool;
+                return;
+            }
+        }
+        pool.put(bitmap);
+    }
+
+    protected void resetLevels() {
+        mLevelsGeneration++;
+        mLevelsBuilding = false;
+        mLevels = null;
+    }
+
+    @Override
+    public void setRenderQuality(int quality) {
+        if (quality != mRenderQuality) {
+            mRenderQuality = quality;
+            RenderQualityPolicy.apply(mPaint, quality);
+        }
+    }
+
+    public int getRenderQuality() {
+        return mRenderQuality;
+    }
+
     @Override
     public int getOpacity() {
         return PixelFormat.TRANSLUCENT;
@@ -0,0 +1,22 @@
+package it.sephiroth.android.library.imagezoom.graphics;
+
+import android.graphics.RectF;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+
+/**
+ * Drawables implementing this interface are notified by the {@link ImageViewTouchBase}
+ * when a fling or zoom animation starts, with the area which will be visible once
+ * the animation ends, so they can start loading its content in advance
+ */
+public interface IPrefetchDrawable {
+
+    /**
+     * Called when an animation starts
+     *
+     * @param rect  the area, in drawable coordinates, visible at the end of the animation.
+     *              Do not keep a reference to it
+     * @param scale the scale of the image matrix at the end of the animation
+     */
+    void prefetch(RectF rect, float scale);
+}
@@ -0,0 +1,18 @@
+package it.sephiroth.android.library.imagezoom.graphics;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+
+/**
+ * Drawables implementing this interface let the {@link ImageViewTouchBase} lower their
+ * rendering quality while the user is interacting with the image, see {@link RenderQualityPolicy}
+ */
+public interface IRenderQualityDrawable {
+
+    /**
+     * Called before every draw with the quality to be used
+     *
+     * @param quality one of {@link RenderQualityPolicy#QUALITY_HIGH}, {@link RenderQualityPolicy#QUALITY_LOW}
+     *                or {@link RenderQualityPolicy#QUALITY_NEAREST}
+     */
+    void setRenderQuality(int quality);
+}
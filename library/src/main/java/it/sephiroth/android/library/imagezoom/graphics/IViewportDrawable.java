@@ -0,0 +1,20 @@
+package it.sephiroth.android.library.imagezoom.graphics;
+
+import android.graphics.Matrix;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+
+/**
+ * Drawables implementing this interface are notified by the {@link ImageViewTouchBase}
+ * every time its image matrix is updated, so they can adapt what they
+ * draw to the current zoom level
+ */
+public interface IViewportDrawable {
+
+    /**
+     * Called every time the image matrix used to draw this drawable has changed
+     *
+     * @param matrix the current image matrix. Do not keep a reference to it
+     */
+    void setDisplayMatrix(Matrix matrix);
+}
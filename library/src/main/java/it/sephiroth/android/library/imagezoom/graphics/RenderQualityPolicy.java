@@ -0,0 +1,127 @@
+package it.sephiroth.android.library.imagezoom.graphics;
+
+import android.graphics.Paint;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+
+/**
+ * Decides the quality used by the {@link ImageViewTouchBase} to draw its
+ * {@link IRenderQualityDrawable}, depending on the interaction state.<br />
+ * By default the image is drawn without filtering and dithering while a gesture or an animation is running,
+ * and with full quality once idle. Optionally, when idle and zoomed above 1:1, the image is drawn
+ * using nearest neighbour sampling. Subclasses can override {@link #selectQuality(boolean, float)}.<br />
+ * The time spent drawing every frame is collected per quality mode, so the saving
+ * of every mode on the current device can be measured with {@link #getFrameTimeSaving(int)}.
+ */
+public class RenderQualityPolicy {
+    /**
+     * Bitmap filtering and dithering enabled
+     */
+    public static final int QUALITY_HIGH = 0;
+    /**
+     * Bitmap filtering and dithering disabled
+     */
+    public static final int QUALITY_LOW = 1;
+    /**
+     * Nearest neighbour sampling, dithering enabled
+     */
+    public static final int QUALITY_NEAREST = 2;
+    private static final int QUALITY_COUNT = 3;
+
+    private boolean mNearestNeighbourEnabled;
+    private final long[] mFrameCount = new long[QUALITY_COUNT];
+    private final long[] mFrameTime = new long[QUALITY_COUNT];
+
+    public RenderQualityPolicy() {
+        this(false);
+    }
+
+    /**
+     * @param nearestNeighbour true to use {@link #QUALITY_NEAREST} when the image is zoomed above 1:1
+     */
+    public RenderQualityPolicy(boolean nearestNeighbour) {
+        mNearestNeighbourEnabled = nearestNeighbour;
+    }
+
+    public void setNearestNeighbourEnabled(boolean value) {
+        mNearestNeighbourEnabled = value;
+    }
+
+    public boolean getNearestNeighbourEnabled() {
+        return mNearestNeighbourEnabled;
+    }
+
+    /**
+     * Returns the quality to be used for the next frame
+     *
+     * @param interacting true if a gesture or an animation is in progress
+     * @param pixelScale  the current image scale, 1 means one drawable pixel per screen pixel
+     * @return one of {@link #QUALITY_HIGH}, {@link #QUALITY_LOW} or {@link #QUALITY_NEAREST}
+     */
+    public int selectQuality(boolean interacting, float pixelScale) {
+        if (interacting) {
+            return QUALITY_LOW;
+        }
+        if (mNearestNeighbourEnabled && pixelScale > 1) {
+            return QUALITY_NEAREST;
+        }
+        return QUALITY_HIGH;
+    }
+
+    /**
+     * Called by the view after every frame
+     *
+     * @param quality the quality used
+     * @param nanos   the time spent drawing the frame, in nanoseconds
+     */
+    public void onFrameRendered(int quality, long nanos) {
+        if (quality >= 0 && quality < QUALITY_COUNT) {
+            mFrameCount[quality]++;
+            mFrameTime[quality] += nanos;
+        }
+    }
+
+    public long getFrameCount(int quality) {
+        return mFrameCount[quality];
+    }
+
+    /**
+     * Returns the average time, in nanoseconds, spent drawing a frame with the given quality,
+     * or 0 if no frame has been drawn with it yet
+     */
+    public long getAverageFrameTime(int quality) {
+        return mFrameCount[quality] > 0 ? mFrameTime[quality] / mFrameCount[quality] : 0;
+    }
+
+    /**
+     * Returns the average time, in nanoseconds, saved by drawing a frame with the given quality instead
+     * of {@link #QUALITY_HIGH}. Returns 0 until frames have been drawn with both the qualities
+     */
+    public long getFrameTimeSaving(int quality) {
+        if (0 == mFrameCount[quality] || 0 == mFrameCount[QUALITY_HIGH]) {
+            return 0;
+        }
+        return getAverageFrameTime(QUALITY_HIGH) - getAverageFrameTime(quality);
+    }
+
+    public void resetStats() {
+        for (int i = 0; i < QUALITY_COUNT; i++) {
+            mFrameCount[i] = 0;
+            mFrameTime[i] = 0;
+        }
+    }
+
+    /**
+     * Configure the paint for the given quality
+     */
+    public static void apply(Paint paint, int quality) {
+        paint.setFilterBitmap(quality == QUALITY_HIGH);
+        paint.setDither(quality != QUALITY_LOW);
+    }
+
+    @Override
+    public String toString() {
+        return "RenderQualityPolicy{high: " + getAverageFrameTime(QUALITY_HIGH) + "ns, low: " + getAverageFrameTime(QUALITY_LOW)
+            + "ns, nearest: " + getAverageFrameTime(QUALITY_NEAREST) + "ns}";
+    }
+}
@@ -0,0 +1,276 @@
+package it.sephiroth.android.library.imagezoom.graphics;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of decoded bitmaps (tiles, previews) which can be shared by every drawable
+ * displayed in the process, so that switching between views does not decode again pixels
+ * already available.<br />
+ * Entries are identified by a {@link Key} (source id, sample size and tile coordinates) and the cache
+ * capacity is expressed in bytes. When the capacity is exceeded entries are removed using the
+ * current {@link EvictionPolicy}.<br />
+ * Evicted bitmaps are never recycled, because they may still be referenced by a drawable.
+ */
+public class TileCache {
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MEMORY_FRACTION = 8;
+
+    /**
+     * Evicts the least recently used entry
+     */
+    public static final EvictionPolicy LRU = new EvictionPolicy() {
+        @Override
+        public Key selectVictim(final Iterator<Key> keys, final Set<Key> pinned) {
+            return keys.hasNext() ? keys.next() : null;
+        }
+    };
+
+    /**
+     * Evicts the least recently used entry which is not pinned.
+     * See {@link #pin(Key)}
+     */
+    public static final EvictionPolicy PIN_VISIBLE = new EvictionPolicy() {
+        @Override
+        public Key selectVictim(final Iterator<Key> keys, final Set<Key> pinned) {
+            while (keys.hasNext()) {
+                Key key = keys.next();
+                if (!pinned.contains(key)) {
+                    return key;
+                }
+            }
+            return null;
+        }
+    };
+
+    public interface EvictionPolicy {
+        /**
+         * Select the next entry to be removed from the cache
+         *
+         * @param keys   the cached keys, from the least recently used to the most recently used
+         * @param pinned the keys currently pinned
+         * @return the key to be evicted, or null if no entry can be evicted
+         */
+        Key selectVictim(Iterator<Key> keys, Set<Key> pinned);
+    }
+
+    private static TileCache sInstance;
+
+    private final LinkedHashMap<Key, Bitmap> mMap = new LinkedHashMap<>(0, LOAD_FACTOR, true);
+    private final Map<Key, Integer> mPinned = new HashMap<>();
+    private EvictionPolicy mPolicy = PIN_VISIBLE;
+    private long mMaxSize;
+    private long mSize;
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * Returns the process wide shared cache, by default 1/8 of the available heap
+     */
+    public static synchronized TileCache getInstance() {
+        if (null == sInstance) {
+            sInstance = new TileCache(Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxSize the maximum size, in bytes, of the cached bitmaps
+     */
+    public TileCache(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    public synchronized Bitmap get(Key key) {
+        Bitmap bitmap = mMap.get(key);
+        if (null != bitmap && bitmap.isRecycled()) {
+            remove(key);
+            bitmap = null;
+        }
+        if (null != bitmap) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns true if the entry is cached. Unlike {@link #get(Key)} this does not
+     * count as an access, neither for the statistics nor for the eviction order
+     */
+    public synchronized boolean contains(Key key) {
+        return mMap.containsKey(key);
+    }
+
+    public synchronized void put(Key key, Bitmap bitmap) {
+        if (null == key || null == bitmap) {
+            return;
+        }
+        mSize += getBitmapSize(bitmap);
+        Bitmap previous = mMap.put(key, bitmap);
+        if (null != previous) {
+            mSize -= getBitmapSize(previous);
+        }
+        trimToSize(mMaxSize);
+    }
+
+    public synchronized Bitmap remove(Key key) {
+        Bitmap previous = mMap.remove(key);
+        if (null != previous) {
+            mSize -= getBitmapSize(previous);
+        }
+        return previous;
+    }
+
+    /**
+     * Remove all the entries of the given source
+     */
+    public synchronized void removeSource(String sourceId) {
+        Iterator<Map.Entry<Key, Bitmap>> iterator = mMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Bitmap> entry = iterator.next();
+            if (entry.getKey().sourceId.equals(sourceId)) {
+                mSize -= getBitmapSize(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Marks the entry as currently visible. Pin requests are counted, so
+     * every call must be balanced by a call to {@link #unpin(Key)}.<br />
+     * With {@link #PIN_VISIBLE} pinned entries are kept even beyond the maximum size, so they must be unpinned as
+     * soon as they're no more displayed: {@link TiledBitmapDrawable} does it when hidden, detached or disposed
+     */
+    public synchronized void pin(Key key) {
+        Integer count = mPinned.get(key);
+        mPinned.put(key, null == count ? 1 : count + 1);
+    }
+
+    public synchronized void unpin(Key key) {
+        Integer count = mPinned.get(key);
+        if (null != count) {
+            if (count > 1) {
+                mPinned.put(key, count - 1);
+            } else {
+                mPinned.remove(key);
+            }
+        }
+    }
+
+    public synchronized void setEvictionPolicy(EvictionPolicy policy) {
+        mPolicy = policy;
+        trimToSize(mMaxSize);
+    }
+
+    public synchronized EvictionPolicy getEvictionPolicy() {
+        return mPolicy;
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(mMaxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the size, in bytes, of the cached bitmaps
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * Evicts entries until the cache size is below <code>maxSize</code> or
+     * the eviction policy does not allow to remove more entries
+     */
+    public synchronized void trimToSize(long maxSize) {
+        while (mSize > maxSize && !mMap.isEmpty()) {
+            Key victim = mPolicy.selectVictim(mMap.keySet().iterator(), mPinned.keySet());
+            if (null == victim || null == remove(victim)) {
+                break;
+            }
+            mEvictionCount++;
+        }
+    }
+
+    public synchronized void clear() {
+        mMap.clear();
+        mSize = 0;
+    }
+
+    @TargetApi (19)
+    public static int getBitmapSize(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= 19) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Identifies a decoded region of a source image
+     */
+    public static final class Key {
+        public final String sourceId;
+        public final int sampleSize;
+        public final int column;
+        public final int row;
+
+        public Key(String sourceId, int sampleSize, int column, int row) {
+            this.sourceId = sourceId;
+            this.sampleSize = sampleSize;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return sampleSize == other.sampleSize && column == other.column && row == other.row && sourceId.equals(other.sourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = sourceId.hashCode();
+            result = 31 * result + sampleSize;
+            result = 31 * result + column;
+            result = 31 * result + row;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" + sourceId + ", sampleSize: " + sampleSize + ", column: " + column + ", row: " + row + "}";
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package it.sephiroth.android.library.imagezoom.graphics;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+import it.sephiroth.android.library.imagezoom.utils.DecodeScheduler;
+import it.sephiroth.android.library.imagezoom.utils.IDisposable;
+
+/**
+ * Drawable for images too big to be decoded at once.<br />
+ * A low resolution preview of the whole image is decoded immediately, then only
+ * the tiles intersecting the visible area are decoded, by the {@link DecodeScheduler}, using a sample size
+ * which depends on the current display scale. Memory usage is then bounded by the view
+ * size and not by the image size.<br />
+ * Use it inside an {@link ImageViewTouchBase}, which feeds the current image matrix
+ * through {@link IViewportDrawable#setDisplayMatrix(Matrix)}.<br />
+ * Decoded tiles are stored in a {@link TileCache} (by default the shared one) using the
+ * source id, so drawables created for the same source reuse the tiles already decoded.<br />
+ * When a fling or zoom animation starts the tiles of its destination are decoded in advance,
+ * with a lower priority, see {@link IPrefetchDrawable}.
+ */
+public class TiledBitmapDrawable extends Drawable
+    implements IBitmapDrawable, IViewportDrawable, IPrefetchDrawable, IRenderQualityDrawable, IDisposable {
+    private static final String TAG = "TiledBitmapDrawable";
+    public static final int DEFAULT_TILE_SIZE = 512;
+    public static final int DEFAULT_PREVIEW_SIZE = 1024;
+    // retries of a tile after its first failed decode, and delay before the first retry (doubled at every failure)
+    public static final int MAX_DECODE_RETRIES = 2;
+    private static final long RETRY_DELAY_MS = 250;
+    private static final AtomicInteger SOURCE_ID = new AtomicInteger();
+
+    protected BitmapRegionDecoder mDecoder;
+    protected final String mSourceId;
+    protected TileCache mCache = TileCache.getInstance();
+    protected DecodeScheduler mScheduler = DecodeScheduler.getInstance();
+    protected Bitmap mPreview;
+    protected Paint mPaint;
+    protected int mIntrinsicWidth, mIntrinsicHeight;
+    protected int mTileSize;
+    protected int mPreviewSampleSize;
+    protected int mSampleSize;
+    protected float mDisplayScale = 1f;
+    protected int mRenderQuality = RenderQualityPolicy.QUALITY_HIGH;
+    private final float[] mMatrixValues = new float[9];
+    private final SparseArray<Tile> mTiles = new SparseArray<>();
+    private final Rect mVisibleRect = new Rect();
+    private final Rect mDrawRect = new Rect();
+    private final Rect mPrefetchRect = new Rect();
+    // incremented at every prefetch request, older prefetch tiles are discarded
+    private volatile int mPrefetchGeneration;
+    private boolean mDisposed;
+    private final Runnable mRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            invalidateSelf();
+        }
+    };
+
+    public TiledBitmapDrawable(InputStream is) throws IOException {
+        this(BitmapRegionDecoder.newInstance(is, false));
+    }
+
+    public TiledBitmapDrawable(String pathName) throws IOException {
+        this(BitmapRegionDecoder.newInstance(pathName, false), pathName, DEFAULT_TILE_SIZE, DEFAULT_PREVIEW_SIZE);
+    }
+
+    public TiledBitmapDrawable(BitmapRegionDecoder decoder) {
+        this(decoder, null, DEFAULT_TILE_SIZE, DEFAULT_PREVIEW_SIZE);
+    }
+
+    /**
+     * @param decoder     the region decoder of the source image
+     * @param sourceId    unique id of the source image, used as key in the {@link TileCache}.
+     *                    If null a new id is generated and tiles will not be shared with other drawables
+     * @param tileSize    the size, in decoded pixels, of every tile
+     * @param previewSize the maximum size of the low resolution preview
+     */
+    public TiledBitmapDrawable(BitmapRegionDecoder decoder, String sourceId, int tileSize, int previewSize) {
+        mDecoder = decoder;
+        mSourceId = null != sourceId ? sourceId : TAG + "#" + SOURCE_ID.incrementAndGet();
+        mTileSize = tileSize;
+        mIntrinsicWidth = decoder.getWidth();
+        mIntrinsicHeight = decoder.getHeight();
+        mPaint = new Paint();
+        mPaint.setDither(true);
+        mPaint.setFilterBitmap(true);
+
+        mPreviewSampleSize = 1;
+        while (Math.max(mIntrinsicWidth, mIntrinsicHeight) / mPreviewSampleSize > previewSize) {
+            mPreviewSampleSize *= 2;
+        }
+        mSampleSize = mPreviewSampleSize;
+
+        // the preview uses negative coordinates to not collide with the tiles
+        final TileCache.Key previewKey = new TileCache.Key(mSourceId, mPreviewSampleSize, -1, -1);
+        mPreview = mCache.get(previewKey);
+        if (null == mPreview) {
+            mPreview = decodeRegion(new Rect(0, 0, mIntrinsicWidth, mIntrinsicHeight), mPreviewSampleSize);
+            mCache.put(previewKey, mPreview);
+        }
+    }
+
+    /**
+     * Use a different cache for the decoded tiles
+     */
+    public void setTileCache(TileCache cache) {
+        releaseTiles();
+        mCache = cache;
+    }
+
+    public TileCache getTileCache() {
+        return mCache;
+    }
+
+    /**
+     * Use a different scheduler for decoding the tiles
+     */
+    public void setDecodeScheduler(DecodeScheduler scheduler) {
+        releaseTiles();
+        mScheduler = scheduler;
+    }
+
+    public DecodeScheduler getDecodeScheduler() {
+        return mScheduler;
+    }
+
+    public String getSourceId() {
+        return mSourceId;
+    }
+
+    @Override
+    public void setDisplayMatrix(Matrix matrix) {
+        matrix.getValues(mMatrixValues);
+        mDisplayScale = mMatrixValues[Matrix.MSCALE_X];
+    }
+
+    /**
+     * Enqueue, with {@link DecodeScheduler#PRIORITY_PREFETCH}, the tiles needed to draw the
+     * given area which are not in the cache yet. Tiles requested by a previous call and not
+     * yet decoded are discarded
+     */
+    @Override
+    public void prefetch(RectF rect, float scale) {
+        final Rect bounds = getBounds();
+        if (mDisposed || bounds.isEmpty() || mIntrinsicWidth <= 0 || mIntrinsicHeight <= 0) {
+            return;
+        }
+
+        final int generation = ++mPrefetchGeneration;
+        final float ratioX = (float) mIntrinsicWidth / bounds.width();
+        final float ratioY = (float) mIntrinsicHeight / bounds.height();
+        final int sampleSize = computeSampleSize(scale / ratioX);
+
+        if (sampleSize >= mPreviewSampleSize) {
+            return;
+        }
+
+        // drawable to source image coordinates
+        mPrefetchRect.set(
+            (int) Math.floor((rect.left - bounds.left) * ratioX), (int) Math.floor((rect.top - bounds.top) * ratioY),
+            (int) Math.ceil((rect.right - bounds.left) * ratioX), (int) Math.ceil((rect.bottom - bounds.top) * ratioY)
+        );
+
+        if (!mPrefetchRect.intersect(0, 0, mIntrinsicWidth, mIntrinsicHeight)) {
+            return;
+        }
+
+        final int size = mTileSize * sampleSize;
+        for (int row = mPrefetchRect.top / size; row <= (mPrefetchRect.bottom - 1) / size; row++) {
+            for (int column = mPrefetchRect.left / size; column <= (mPrefetchRect.right - 1) / size; column++) {
+                Tile tile = new Tile(column, row, sampleSize, DecodeScheduler.PRIORITY_PREFETCH, generation);
+                if (!mCache.contains(tile.key)) {
+                    mScheduler.submit(tile);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        final Rect bounds = getBounds();
+        if (mDisposed || bounds.isEmpty() || mIntrinsicWidth <= 0 || mIntrinsicHeight <= 0) {
+            return;
+        }
+
+        // from now on we work in source image coordinates
+        final int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale((float) bounds.width() / mIntrinsicWidth, (float) bounds.height() / mIntrinsicHeight);
+
+        if (null != mPreview && !mPreview.isRecycled()) {
+            mDrawRect.set(0, 0, mIntrinsicWidth, mIntrinsicHeight);
+            canvas.drawBitmap(mPreview, null, mDrawRect, mPaint);
+        }
+
+        final int sampleSize = computeSampleSize(mDisplayScale * bounds.width() / mIntrinsicWidth);
+
+        if (sampleSize >= mPreviewSampleSize) {
+            // the preview is already detailed enough
+            releaseTiles();
+        } else if (canvas.getClipBounds(mVisibleRect) && mVisibleRect.intersect(0, 0, mIntrinsicWidth, mIntrinsicHeight)) {
+            drawTiles(canvas, mVisibleRect, sampleSize);
+        }
+
+        canvas.restoreToCount(saveCount);
+    }
+
+    protected void drawTiles(Canvas canvas, Rect visible, int sampleSize) {
+        if (sampleSize != mSampleSize) {
+            releaseTiles();
+            mSampleSize = sampleSize;
+        }
+
+        final int size = mTileSize * sampleSize;
+        final int columns = (mIntrinsicWidth + size - 1) / size;
+        final int firstColumn = visible.left / size;
+        final int lastColumn = (visible.right - 1) / size;
+        final int firstRow = visible.top / size;
+        final int lastRow = (visible.bottom - 1) / size;
+
+        // tiles no more visible are released
+        for (int i = mTiles.size() - 1; i >= 0; i--) {
+            final Tile tile = mTiles.valueAt(i);
+            if (tile.column < firstColumn || tile.column > lastColumn || tile.row < firstRow || tile.row > lastRow) {
+                releaseTile(tile);
+                mTiles.removeAt(i);
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final int key = row * columns + column;
+                Tile tile = mTiles.get(key);
+
+                if (null == tile) {
+                    tile = new Tile(column, row, sampleSize);
+                    mTiles.put(key, tile);
+                    mCache.pin(tile.key);
+                }
+
+                final Bitmap bitmap = mCache.get(tile.key);
+                if (null != bitmap) {
+                    canvas.drawBitmap(bitmap, null, tile.rect, mPaint);
+                } else if (!tile.loading && tile.canRetry(SystemClock.uptimeMillis())) {
+                    // never decoded, evicted from the cache, or a previous decode failed
+                    tile.loading = true;
+                    mScheduler.submit(tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the largest power of 2 sample size which still
+     * gives at least one decoded pixel per screen pixel
+     *
+     * @param scale the current source to screen scale
+     * @return the sample size
+     */
+    protected static int computeSampleSize(float scale) {
+        int sampleSize = 1;
+        if (scale > 0) {
+            while (scale * sampleSize * 2 <= 1) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    protected Bitmap decodeRegion(Rect rect, int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        try {
+            return mDecoder.decodeRegion(rect, options);
+        } catch (IllegalStateException | IllegalArgumentException | OutOfMemoryError e) {
+            Log.w(TAG, "failed to decode " + rect + ": " + e);
+            return null;
+        }
+    }
+
+    protected void releaseTiles() {
+        for (int i = 0; i < mTiles.size(); i++) {
+            releaseTile(mTiles.valueAt(i));
+        }
+        mTiles.clear();
+    }
+
+    private void releaseTile(Tile tile) {
+        // pending decodes of tiles no more visible are discarded
+        tile.cancel();
+        mCache.unpin(tile.key);
+    }
+
+    /**
+     * Called by the view when it's detached from the window or hidden: the visible tiles are unpinned, so the
+     * {@link TileCache} can evict them, and the pending decodes are discarded. Tiles are pinned again, and
+     * decoded if evicted meanwhile, at the next draw
+     */
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        final boolean changed = super.setVisible(visible, restart);
+        if (!visible) {
+            unscheduleSelf(mRetryRunnable);
+            releaseTiles();
+            mScheduler.cancel(this);
+        }
+        return changed;
+    }
+
+    /**
+     * Release the region decoder and unpin the visible tiles. Decoded tiles are left in the {@link TileCache}
+     * as other drawables of the same source can use them. Called by the view when the drawable is replaced
+     */
+    @Override
+    public void dispose() {
+        mDisposed = true;
+        unscheduleSelf(mRetryRunnable);
+        releaseTiles();
+        mScheduler.cancel(this);
+        mDecoder.recycle();
+        mPreview = null;
+    }
+
+    @Override
+    public void setRenderQuality(int quality) {
+        if (quality != mRenderQuality) {
+            mRenderQuality = quality;
+            RenderQualityPolicy.apply(mPaint, quality);
+        }
+    }
+
+    public int getRenderQuality() {
+        return mRenderQuality;
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+        mPaint.setColorFilter(cf);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicHeight;
+    }
+
+    @Override
+    public int getMinimumWidth() {
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getMinimumHeight() {
+        return mIntrinsicHeight;
+    }
+
+    /**
+     * Returns the low resolution preview of the whole image
+     */
+    @Override
+    public Bitmap getBitmap() {
+        return mPreview;
+    }
+
+    public Paint getPaint() {
+        return mPaint;
+    }
+
+    /**
+     * A single region of the source image, decoded in background
+     */
+    class Tile extends DecodeScheduler.Task<Bitmap> {
+        final int column;
+        final int row;
+        final int sampleSize;
+        final Rect rect;
+        final TileCache.Key key;
+        // prefetch generation, -1 for visible tiles
+        final int generation;
+        boolean loading;
+        // failed decodes, and time of the next attempt
+        int failures;
+        long retryTime;
+
+        Tile(int column, int row, int sampleSize) {
+            this(column, row, sampleSize, DecodeScheduler.PRIORITY_VISIBLE, -1);
+        }
+
+        Tile(int column, int row, int sampleSize, int priority, int generation) {
+            super(priority, TiledBitmapDrawable.this);
+            final int size = mTileSize * sampleSize;
+            this.column = column;
+            this.row = row;
+            this.sampleSize = sampleSize;
+            this.generation = generation;
+            this.key = new TileCache.Key(mSourceId, sampleSize, column, row);
+            this.rect = new Rect(
+                column * size, row * size,
+                Math.min(mIntrinsicWidth, (column + 1) * size), Math.min(mIntrinsicHeight, (row + 1) * size)
+            );
+        }
+
+        @Override
+        protected boolean isStale() {
+            return generation >= 0 && generation != mPrefetchGeneration;
+        }
+
+        @Override
+        protected Bitmap doInBackground() {
+            // another drawable of the same source may have decoded it already
+            final Bitmap cached = mCache.get(key);
+            return null != cached ? cached : decodeRegion(rect, sampleSize);
+        }
+
+        /**
+         * Returns false if the decode failed too many times, or if it's too early to try again
+         */
+        boolean canRetry(long now) {
+            return failures == 0 || (failures <= MAX_DECODE_RETRIES && now >= retryTime);
+        }
+
+        @Override
+        protected void onComplete(final Bitmap result) {
+            loading = false;
+            if (null == result) {
+                // the preview is drawn meanwhile. Not redrawn after the last attempt
+                failures++;
+                if (!mDisposed && generation < 0 && failures <= MAX_DECODE_RETRIES) {
+                    retryTime = SystemClock.uptimeMillis() + (RETRY_DELAY_MS << (failures - 1));
+                    scheduleSelf(mRetryRunnable, retryTime);
+                }
+                return;
+            }
+
+            failures = 0;
+            mCache.put(key, result);
+            if (!mDisposed && generation < 0) {
+                invalidateSelf();
+            }
+        }
+
+        @Override
+        protected void onCancelled(final Bitmap result) {
+            // even if no more visible the tile can be useful later
+            mCache.put(key, result);
+        }
+    }
+}
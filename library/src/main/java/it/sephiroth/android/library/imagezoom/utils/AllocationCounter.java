@@ -0,0 +1,154 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import android.os.Debug;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Counts the allocations of the thread which created it, with the best mechanism of the runtime:
+ * <ul>
+ * <li>on Android, the objects counted by {@link Debug#getThreadAllocCount()}</li>
+ * <li>on the JVM (unit tests, Robolectric), the bytes reported by <code>com.sun.management.ThreadMXBean</code>.
+ * Robolectric shadows {@link Debug} and always reports 0 allocations</li>
+ * </ul>
+ * Reading the counter does not count as an allocation, so two consecutive reads return the same value.<br />
+ * Usage:
+ * <pre>
+ * AllocationCounter counter = AllocationCounter.create();
+ * counter.start();
+ * long before = counter.getCount();
+ * // ...
+ * long allocations = counter.getCount() - before;
+ * counter.stop();
+ * </pre>
+ */
+public abstract class AllocationCounter {
+    // enough reads for the reflective call to be compiled to bytecode, see sun.reflect.ReflectionFactory
+    private static final int WARM_UP_READS = 32;
+
+    /**
+     * Returns a counter for the current thread
+     */
+    public static AllocationCounter create() {
+        if ("Dalvik".equals(System.getProperty("java.vm.name"))) {
+            return new DebugCounter();
+        }
+        AllocationCounter counter = JvmCounter.tryCreate();
+        return null != counter ? counter : new DebugCounter();
+    }
+
+    /**
+     * Start counting
+     */
+    public abstract void start();
+
+    /**
+     * Returns the allocations counted since {@link #start()}, in {@link #getUnit()}
+     */
+    public abstract long getCount();
+
+    /**
+     * Stop counting
+     */
+    public abstract void stop();
+
+    /**
+     * Returns the unit of {@link #getCount()}: "objects" or "bytes"
+     */
+    public abstract String getUnit();
+
+    private static final class DebugCounter extends AllocationCounter {
+        @SuppressWarnings ("deprecation")
+        @Override
+        public void start() {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+        }
+
+        @SuppressWarnings ("deprecation")
+        @Override
+        public long getCount() {
+            return Debug.getThreadAllocCount();
+        }
+
+        @SuppressWarnings ("deprecation")
+        @Override
+        public void stop() {
+            Debug.stopAllocCounting();
+        }
+
+        @Override
+        public String getUnit() {
+            return "objects";
+        }
+    }
+
+    // java.lang.management is not part of the Android SDK, so the bean is accessed with reflection
+    private static final class JvmCounter extends AllocationCounter {
+        private final Object mBean;
+        private final Method mGetAllocatedBytes;
+        private final Object[] mArguments;
+        private long mStart;
+        // bytes allocated by a single read, boxing the result
+        private long mReadBytes;
+        private long mReads;
+
+        private JvmCounter(Object bean, Method getAllocatedBytes) {
+            mBean = bean;
+            mGetAllocatedBytes = getAllocatedBytes;
+            mArguments = new Object[]{Thread.currentThread().getId()};
+        }
+
+        // null if the runtime does not support it
+        static JvmCounter tryCreate() {
+            try {
+                Object bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+                Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+                if (!beanClass.isInstance(bean)
+                    || !((Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(bean))) {
+                    return null;
+                }
+                beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+                return new JvmCounter(bean, beanClass.getMethod("getThreadAllocatedBytes", long.class));
+            } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void start() {
+            for (int i = 0; i < WARM_UP_READS; i++) {
+                read();
+            }
+            final long first = read();
+            mReadBytes = read() - first;
+            mReads = 0;
+            mStart = read();
+        }
+
+        @Override
+        public long getCount() {
+            final long bytes = read();
+            // every previous read allocated its result
+            return bytes - mStart - ++mReads * mReadBytes;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public String getUnit() {
+            return "bytes";
+        }
+
+        private long read() {
+            try {
+                return (Long) mGetAllocatedBytes.invoke(mBean, mArguments);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
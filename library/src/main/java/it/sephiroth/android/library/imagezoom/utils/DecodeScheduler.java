@@ -0,0 +1,229 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes decode operations on a bounded pool of background threads.<br />
+ * Pending tasks are executed by priority: first the content currently visible ({@link #PRIORITY_VISIBLE}),
+ * then the content next to it ({@link #PRIORITY_NEIGHBOUR}) and finally the content which
+ * might be needed later ({@link #PRIORITY_PREFETCH}). Tasks which become obsolete can be
+ * cancelled, and they're discarded before running.<br />
+ * Results are delivered on the main thread.
+ */
+public class DecodeScheduler {
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_NEIGHBOUR = 1;
+    public static final int PRIORITY_PREFETCH = 2;
+
+    private static final int MAX_THREADS = 4;
+    private static final int KEEP_ALIVE_SECONDS = 10;
+    private static DecodeScheduler sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final PriorityBlockingQueue<Runnable> mQueue = new PriorityBlockingQueue<>();
+    // pending and running tasks
+    private final Set<Task<?>> mActive = Collections.newSetFromMap(new ConcurrentHashMap<Task<?>, Boolean>());
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicInteger mCompletedCount = new AtomicInteger();
+    private final AtomicInteger mDiscardedCount = new AtomicInteger();
+
+    /**
+     * Returns the shared scheduler, which uses up to 4 threads, depending on the available cores
+     */
+    public static synchronized DecodeScheduler getInstance() {
+        if (null == sInstance) {
+            final int cores = Runtime.getRuntime().availableProcessors();
+            sInstance = new DecodeScheduler(Math.max(1, Math.min(cores - 1, MAX_THREADS)));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param threads the maximum number of decode threads
+     */
+    public DecodeScheduler(int threads) {
+        mExecutor = new ThreadPoolExecutor(
+            threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, mQueue, new DecodeThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Enqueue a new task
+     *
+     * @return the same task
+     */
+    public <T> Task<T> submit(Task<T> task) {
+        task.mScheduler = this;
+        task.mSequence = mSequence.getAndIncrement();
+        mActive.add(task);
+        mExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Cancel all the tasks with the given tag. Pending tasks are removed from the queue, while
+     * the running ones will deliver their result to {@link Task#onCancelled(Object)}
+     */
+    public void cancel(Object tag) {
+        Iterator<Task<?>> iterator = mActive.iterator();
+        while (iterator.hasNext()) {
+            Task<?> task = iterator.next();
+            if (task.mTag == tag) {
+                task.cancel();
+                if (mQueue.remove(task)) {
+                    iterator.remove();
+                    mDiscardedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting to be executed
+     */
+    public int getPendingCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * Returns the number of tasks executed
+     */
+    public int getCompletedCount() {
+        return mCompletedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks cancelled, or found stale, before running
+     */
+    public int getDiscardedCount() {
+        return mDiscardedCount.get();
+    }
+
+    /**
+     * A single decode operation. {@link #doInBackground()} is executed on a decode thread,
+     * then the result is passed to {@link #onComplete(Object)} on the main thread
+     *
+     * @param <T> the result type
+     */
+    public abstract static class Task<T> implements Runnable, Comparable<Task<?>> {
+        private final int mPriority;
+        private final Object mTag;
+        private volatile boolean mCancelled;
+        long mSequence;
+        DecodeScheduler mScheduler;
+
+        /**
+         * @param priority one of {@link #PRIORITY_VISIBLE}, {@link #PRIORITY_NEIGHBOUR} or {@link #PRIORITY_PREFETCH}
+         * @param tag      optional tag, used to cancel a group of tasks. See {@link DecodeScheduler#cancel(Object)}
+         */
+        protected Task(int priority, Object tag) {
+            mPriority = priority;
+            mTag = tag;
+        }
+
+        /**
+         * Executed on the decode thread
+         */
+        protected abstract T doInBackground();
+
+        /**
+         * Executed on the main thread with the result of {@link #doInBackground()}
+         */
+        protected void onComplete(T result) {
+        }
+
+        /**
+         * Executed on the main thread, instead of {@link #onComplete(Object)}, when the
+         * task has been cancelled while running
+         */
+        protected void onCancelled(T result) {
+        }
+
+        /**
+         * Called on the decode thread just before running. Return true if the result
+         * is no more needed and the task must be discarded
+         */
+        protected boolean isStale() {
+            return false;
+        }
+
+        public void cancel() {
+            mCancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        public int getPriority() {
+            return mPriority;
+        }
+
+        public Object getTag() {
+            return mTag;
+        }
+
+        @Override
+        public final void run() {
+            if (mCancelled || isStale()) {
+                mCancelled = true;
+                mScheduler.mActive.remove(this);
+                mScheduler.mDiscardedCount.incrementAndGet();
+                return;
+            }
+
+            final T result = doInBackground();
+            mScheduler.mCompletedCount.incrementAndGet();
+            mScheduler.mHandler.post(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        mScheduler.mActive.remove(Task.this);
+                        if (mCancelled) {
+                            onCancelled(result);
+                        } else {
+                            onComplete(result);
+                        }
+                    }
+                }
+            );
+        }
+
+        @Override
+        public int compareTo(final Task<?> another) {
+            if (mPriority != another.mPriority) {
+                return mPriority < another.mPriority ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+    }
+
+    private static final class DecodeThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread("DecodeScheduler #" + mCount.incrementAndGet()) {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouch;
+
+/**
+ * Replays a {@link GestureTrace} against an {@link ImageViewTouch}, on a device or in a JVM test
+ * environment such as Robolectric, and measures every event: dispatch time, image matrix commits
+ * and allocations, counted by an {@link AllocationCounter}.<br />
+ * Events are dispatched back to back, each one followed by a frame (the pending image matrix
+ * changes are committed), so the result only depends on the trace. Animations started by
+ * the gestures (fling, double tap) are not stepped.<br />
+ * Must be called on the main thread.
+ */
+public final class GestureReplay {
+    private GestureReplay() {
+    }
+
+    /**
+     * Replay the trace. The view is laid out with the size of the recorded viewport if needed, and
+     * its drawable must have the recorded size
+     *
+     * @throws IllegalArgumentException if the view has no drawable or its size is not the recorded one
+     */
+    public static Result replay(ImageViewTouch view, GestureTrace trace) {
+        return replay(view, trace, AllocationCounter.create());
+    }
+
+    /**
+     * Replay the trace, counting the allocations with the given counter
+     *
+     * @throws IllegalArgumentException if the view has no drawable or its size is not the recorded one
+     */
+    public static Result replay(ImageViewTouch view, GestureTrace trace, AllocationCounter counter) {
+        final Drawable drawable = view.getDrawable();
+        if (null == drawable || drawable.getIntrinsicWidth() != trace.getDrawableWidth()
+            || drawable.getIntrinsicHeight() != trace.getDrawableHeight()) {
+            throw new IllegalArgumentException(
+                "the drawable must be " + trace.getDrawableWidth() + "x" + trace.getDrawableHeight());
+        }
+
+        if (view.getWidth() != trace.getViewWidth() || view.getHeight() != trace.getViewHeight() || view.getBitmapChanged()) {
+            view.measure(
+                View.MeasureSpec.makeMeasureSpec(trace.getViewWidth(), View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(trace.getViewHeight(), View.MeasureSpec.EXACTLY)
+            );
+            view.layout(0, 0, trace.getViewWidth(), trace.getViewHeight());
+        }
+
+        final int count = trace.getEventCount();
+        final Result result = new Result(count, counter.getUnit());
+        final long timeBase = SystemClock.uptimeMillis();
+        long downTime = timeBase;
+
+        view.commitImageMatrix();
+        view.resetCommitCounters();
+        counter.start();
+
+        for (int i = 0; i < count; i++) {
+            if (trace.getAction(i) == MotionEvent.ACTION_DOWN) {
+                downTime = timeBase + trace.getEventTime(i);
+            }
+
+            final MotionEvent event = trace.obtainEvent(i, timeBase, downTime);
+            final int commits = view.getCommitCount();
+            final long allocations = counter.getCount();
+            final long start = System.nanoTime();
+
+            view.dispatchTouchEvent(event);
+            view.commitImageMatrix();
+
+            result.mEventNanos[i] = System.nanoTime() - start;
+            result.mEventAllocations[i] = counter.getCount() - allocations;
+            result.mEventCommits[i] = view.getCommitCount() - commits;
+            event.recycle();
+        }
+
+        counter.stop();
+        view.getImageViewMatrix().getValues(result.mFinalMatrix);
+        return result;
+    }
+
+    /**
+     * Measurements of a replay
+     */
+    public static final class Result {
+        final long[] mEventNanos;
+        final int[] mEventCommits;
+        final long[] mEventAllocations;
+        final String mAllocationUnit;
+        final float[] mFinalMatrix = new float[9];
+
+        Result(int count, String allocationUnit) {
+            mEventNanos = new long[count];
+            mEventCommits = new int[count];
+            mEventAllocations = new long[count];
+            mAllocationUnit = allocationUnit;
+        }
+
+        public int getEventCount() {
+            return mEventNanos.length;
+        }
+
+        /**
+         * Time spent dispatching the event and committing its changes, in nanoseconds
+         */
+        public long getEventTime(int index) {
+            return mEventNanos[index];
+        }
+
+        public int getEventCommits(int index) {
+            return mEventCommits[index];
+        }
+
+        /**
+         * Allocations of the main thread while handling the event, in {@link #getAllocationUnit()}
+         */
+        public long getEventAllocations(int index) {
+            return mEventAllocations[index];
+        }
+
+        /**
+         * Returns the unit of the allocations: objects on Android, bytes on the JVM. See {@link AllocationCounter}
+         */
+        public String getAllocationUnit() {
+            return mAllocationUnit;
+        }
+
+        public long getTotalTime() {
+            long total = 0;
+            for (long value : mEventNanos) {
+                total += value;
+            }
+            return total;
+        }
+
+        public int getTotalCommits() {
+            int total = 0;
+            for (int value : mEventCommits) {
+                total += value;
+            }
+            return total;
+        }
+
+        public long getTotalAllocations() {
+            long total = 0;
+            for (long value : mEventAllocations) {
+                total += value;
+            }
+            return total;
+        }
+
+        /**
+         * Returns the values of the image matrix at the end of the replay, to be compared
+         * with a previous run to detect changes of behavior
+         */
+        public float[] getFinalMatrix() {
+            return mFinalMatrix;
+        }
+
+        @Override
+        public String toString() {
+            return "GestureReplay.Result{events: " + getEventCount() + ", time: " + getTotalTime() / 1000 + "us, commits: "
+                + getTotalCommits() + ", allocations: " + getTotalAllocations() + " " + mAllocationUnit + "}";
+        }
+    }
+}
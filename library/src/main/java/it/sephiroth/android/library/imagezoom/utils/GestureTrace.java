@@ -0,0 +1,147 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import android.view.MotionEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import it.sephiroth.android.library.imagezoom.core.TouchTrace;
+
+/**
+ * A recorded sequence of touch events, with the drawable size and the viewport size they were recorded with.
+ * See {@link it.sephiroth.android.library.imagezoom.ImageViewTouch#startGestureRecording()}
+ * and {@link GestureReplay}.<br />
+ * Historical samples are stored as separate move events, so the velocity computed during
+ * the replay is the same of the recording. The events are kept, and written, by a {@link TouchTrace},
+ * which also reads the traces on the JVM.
+ */
+public class GestureTrace {
+    public static final int MAGIC = TouchTrace.MAGIC;
+    public static final int VERSION = TouchTrace.VERSION;
+
+    private final TouchTrace mTrace;
+    private long mStartTime = -1;
+
+    public GestureTrace(int drawableWidth, int drawableHeight, int viewWidth, int viewHeight) {
+        this(new TouchTrace(drawableWidth, drawableHeight, viewWidth, viewHeight));
+    }
+
+    public GestureTrace(TouchTrace trace) {
+        mTrace = trace;
+    }
+
+    /**
+     * Append an event, and its historical samples, to the trace
+     */
+    public void record(MotionEvent event) {
+        final int pointerCount = event.getPointerCount();
+
+        if (mStartTime < 0) {
+            mStartTime = event.getHistorySize() > 0 ? event.getHistoricalEventTime(0) : event.getEventTime();
+        }
+
+        for (int h = 0; h < event.getHistorySize(); h++) {
+            final int offset = mTrace.addEvent(MotionEvent.ACTION_MOVE, 0, pointerCount, getTime(event.getHistoricalEventTime(h)));
+            for (int p = 0; p < pointerCount; p++) {
+                mTrace.setPointer(offset + p, event.getPointerId(p), event.getHistoricalX(p, h), event.getHistoricalY(p, h));
+            }
+        }
+
+        final int offset =
+            mTrace.addEvent(event.getActionMasked(), event.getActionIndex(), pointerCount, getTime(event.getEventTime()));
+        for (int p = 0; p < pointerCount; p++) {
+            mTrace.setPointer(offset + p, event.getPointerId(p), event.getX(p), event.getY(p));
+        }
+    }
+
+    // convert to the trace time base
+    private int getTime(long eventTime) {
+        return (int) (eventTime - mStartTime);
+    }
+
+    /**
+     * Returns the recorded events
+     */
+    public TouchTrace getTouchTrace() {
+        return mTrace;
+    }
+
+    public int getDrawableWidth() {
+        return mTrace.getDrawableWidth();
+    }
+
+    public int getDrawableHeight() {
+        return mTrace.getDrawableHeight();
+    }
+
+    public int getViewWidth() {
+        return mTrace.getViewWidth();
+    }
+
+    public int getViewHeight() {
+        return mTrace.getViewHeight();
+    }
+
+    public int getEventCount() {
+        return mTrace.getEventCount();
+    }
+
+    /**
+     * Returns the time of the event, in milliseconds since the first event
+     */
+    public int getEventTime(int index) {
+        return mTrace.getEventTime(index);
+    }
+
+    public int getAction(int index) {
+        return mTrace.getAction(index);
+    }
+
+    /**
+     * Create the motion event at the given index. The caller must recycle it
+     *
+     * @param index    the event index
+     * @param timeBase the time, in the {@link android.os.SystemClock#uptimeMillis()} base, of the first event
+     * @param downTime the time of the last down event, in the same time base
+     */
+    public MotionEvent obtainEvent(int index, long timeBase, long downTime) {
+        final int pointerCount = mTrace.getPointerCount(index);
+        final MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        final MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[pointerCount];
+
+        for (int p = 0; p < pointerCount; p++) {
+            properties[p] = new MotionEvent.PointerProperties();
+            properties[p].id = mTrace.getPointerId(index, p);
+            properties[p].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            coords[p] = new MotionEvent.PointerCoords();
+            coords[p].x = mTrace.getX(index, p);
+            coords[p].y = mTrace.getY(index, p);
+            coords[p].pressure = 1;
+            coords[p].size = 1;
+        }
+
+        final int action = mTrace.getAction(index) | (mTrace.getActionIndex(index) << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        return MotionEvent.obtain(
+            downTime, timeBase + mTrace.getEventTime(index), action, pointerCount, properties, coords, 0, 0, 1, 1, 0, 0, 0, 0);
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        mTrace.writeTo(stream);
+    }
+
+    /**
+     * Read a trace written by {@link #writeTo(OutputStream)}
+     *
+     * @throws IOException if the stream does not contain a valid trace
+     */
+    public static GestureTrace read(InputStream stream) throws IOException {
+        return new GestureTrace(TouchTrace.read(stream));
+    }
+
+    @Override
+    public String toString() {
+        return "GestureTrace{drawable: " + getDrawableWidth() + "x" + getDrawableHeight() + ", view: " + getViewWidth() + "x"
+            + getViewHeight() + ", events: " + getEventCount() + "}";
+    }
+}
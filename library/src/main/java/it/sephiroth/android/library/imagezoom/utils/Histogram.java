@@ -0,0 +1,121 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import java.util.Arrays;
+
+/**
+ * Histogram with a fixed set of buckets, cheap enough to be updated on every frame.<br />
+ * Every bucket counts the values less than or equal to its upper bound (and greater than the previous one),
+ * an additional last bucket counts the values greater than the last bound.<br />
+ * Not thread safe.
+ */
+public class Histogram {
+    private final long[] mUpperBounds;
+    private final long[] mCounts;
+    private long mCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax = Long.MIN_VALUE;
+
+    /**
+     * @param upperBounds the upper bound of every bucket, in ascending order
+     */
+    public Histogram(long... upperBounds) {
+        mUpperBounds = Arrays.copyOf(upperBounds, upperBounds.length);
+        mCounts = new long[upperBounds.length + 1];
+    }
+
+    public void record(long value) {
+        int index = 0;
+        while (index < mUpperBounds.length && value > mUpperBounds[index]) {
+            index++;
+        }
+        mCounts[index]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    /**
+     * Returns the number of buckets, including the last one for the values above the last bound
+     */
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * Returns the upper bound of the bucket, {@link Long#MAX_VALUE} for the last one
+     */
+    public long getUpperBound(int bucket) {
+        return bucket < mUpperBounds.length ? mUpperBounds[bucket] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of values recorded in the bucket
+     */
+    public long getBucketValue(int bucket) {
+        return mCounts[bucket];
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getSum() {
+        return mSum;
+    }
+
+    /**
+     * Returns the smallest recorded value, or 0 if empty
+     */
+    public long getMin() {
+        return mCount > 0 ? mMin : 0;
+    }
+
+    /**
+     * Returns the largest recorded value, or 0 if empty
+     */
+    public long getMax() {
+        return mCount > 0 ? mMax : 0;
+    }
+
+    public long getMean() {
+        return mCount > 0 ? mSum / mCount : 0;
+    }
+
+    /**
+     * Returns an approximation of the given percentile: the upper bound of the bucket containing it,
+     * or the largest recorded value if it falls in the last bucket
+     *
+     * @param percentile between 0 and 100
+     */
+    public long getPercentile(int percentile) {
+        if (0 == mCount) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (mCount * percentile + 99) / 100);
+        long count = 0;
+        for (int i = 0; i < mUpperBounds.length; i++) {
+            count += mCounts[i];
+            if (count >= target) {
+                return Math.min(mUpperBounds[i], mMax);
+            }
+        }
+        return mMax;
+    }
+
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = Long.MIN_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{count: " + mCount + ", mean: " + getMean() + ", p50: " + getPercentile(50) + ", p90: "
+            + getPercentile(90) + ", p99: " + getPercentile(99) + ", max: " + getMax() + "}";
+    }
+}
@@ -0,0 +1,199 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase.Gesture;
+
+/**
+ * Collects the measurements reported by an {@link ImageViewTouchBase} into fixed bucket {@link Histogram}s,
+ * globally and per {@link Gesture}.<br />
+ * Usage:
+ * <pre>
+ * ViewMetrics metrics = new ViewMetrics();
+ * imageView.setOnMetricsListener( metrics );
+ * // ... later, send metrics.getDrawTime(), metrics.getInputLatency(), etc. to your telemetry
+ * </pre>
+ * Must be used on the main thread.
+ */
+public class ViewMetrics implements ImageViewTouchBase.OnMetricsListener {
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    // draw and layout times, in microseconds
+    private final Histogram mDrawTime = newTimeHistogram();
+    private final Histogram mLayoutTime = newTimeHistogram();
+    private final Histogram mDrawableLayoutTime = newTimeHistogram();
+    // input to frame latency, in milliseconds
+    private final Histogram mInputLatency = newLatencyHistogram();
+    // dropped frames per animation
+    private final Histogram mDroppedFrames = new Histogram(0, 1, 2, 4, 8, 16, 32);
+    private final Map<Gesture, GestureMetrics> mGestures = new EnumMap<>(Gesture.class);
+
+    public ViewMetrics() {
+        for (Gesture gesture : Gesture.values()) {
+            mGestures.put(gesture, new GestureMetrics());
+        }
+    }
+
+    @Override
+    public void onFrameDrawn(Gesture gesture, long drawNanos, long inputLatencyMs) {
+        final long micros = drawNanos / NANOS_PER_MICRO;
+        mDrawTime.record(micros);
+        if (inputLatencyMs >= 0) {
+            mInputLatency.record(inputLatencyMs);
+        }
+
+        if (null != gesture) {
+            GestureMetrics metrics = mGestures.get(gesture);
+            metrics.mDrawTime.record(micros);
+            if (inputLatencyMs >= 0) {
+                metrics.mInputLatency.record(inputLatencyMs);
+            }
+        }
+    }
+
+    @Override
+    public void onAnimationCompleted(Gesture gesture, int frames, int droppedFrames) {
+        mDroppedFrames.record(droppedFrames);
+        if (null != gesture) {
+            mGestures.get(gesture).mDroppedFrames.record(droppedFrames);
+        }
+    }
+
+    @Override
+    public void onLayoutMeasured(long layoutNanos, boolean drawableChanged) {
+        final long micros = layoutNanos / NANOS_PER_MICRO;
+        mLayoutTime.record(micros);
+        if (drawableChanged) {
+            mDrawableLayoutTime.record(micros);
+        }
+    }
+
+    @Override
+    public void onGestureCompleted(Gesture gesture, long durationMs) {
+        mGestures.get(gesture).mDuration.record(durationMs);
+    }
+
+    /**
+     * Time spent in onDraw, in microseconds
+     */
+    public Histogram getDrawTime() {
+        return mDrawTime;
+    }
+
+    /**
+     * Time between an input event changing the image and the next frame, in milliseconds
+     */
+    public Histogram getInputLatency() {
+        return mInputLatency;
+    }
+
+    /**
+     * Time spent in onLayout, in microseconds
+     */
+    public Histogram getLayoutTime() {
+        return mLayoutTime;
+    }
+
+    /**
+     * Time spent in onLayout after a drawable change, in microseconds
+     */
+    public Histogram getDrawableLayoutTime() {
+        return mDrawableLayoutTime;
+    }
+
+    /**
+     * Dropped frames per fling or zoom animation
+     */
+    public Histogram getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    public GestureMetrics getGestureMetrics(Gesture gesture) {
+        return mGestures.get(gesture);
+    }
+
+    public void reset() {
+        mDrawTime.reset();
+        mLayoutTime.reset();
+        mDrawableLayoutTime.reset();
+        mInputLatency.reset();
+        mDroppedFrames.reset();
+        for (GestureMetrics metrics : mGestures.values()) {
+            metrics.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ViewMetrics{draw: ").append(mDrawTime)
+            .append(", latency: ").append(mInputLatency)
+            .append(", layout: ").append(mLayoutTime)
+            .append(", drawableLayout: ").append(mDrawableLayoutTime)
+            .append(", dropped: ").append(mDroppedFrames);
+        for (Map.Entry<Gesture, GestureMetrics> entry : mGestures.entrySet()) {
+            builder.append(", ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return builder.append("}").toString();
+    }
+
+    static Histogram newTimeHistogram() {
+        return new Histogram(250, 500, 1000, 2000, 4000, 8000, 16000, 32000);
+    }
+
+    static Histogram newLatencyHistogram() {
+        return new Histogram(8, 16, 24, 32, 48, 64, 100, 200);
+    }
+
+    /**
+     * Measurements collected while a single type of gesture was in progress
+     */
+    public static class GestureMetrics {
+        final Histogram mDuration = new Histogram(50, 100, 200, 400, 800, 1600, 3200);
+        final Histogram mDrawTime = newTimeHistogram();
+        final Histogram mInputLatency = newLatencyHistogram();
+        final Histogram mDroppedFrames = new Histogram(0, 1, 2, 4, 8, 16, 32);
+
+        /**
+         * Gesture duration, in milliseconds. The count is the number of gestures
+         */
+        public Histogram getDuration() {
+            return mDuration;
+        }
+
+        /**
+         * Time spent in onDraw during the gesture, in microseconds
+         */
+        public Histogram getDrawTime() {
+            return mDrawTime;
+        }
+
+        /**
+         * Input to frame latency during the gesture, in milliseconds
+         */
+        public Histogram getInputLatency() {
+            return mInputLatency;
+        }
+
+        /**
+         * Dropped frames per animation started by the gesture
+         */
+        public Histogram getDroppedFrames() {
+            return mDroppedFrames;
+        }
+
+        void reset() {
+            mDuration.reset();
+            mDrawTime.reset();
+            mInputLatency.reset();
+            mDroppedFrames.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "{duration: " + mDuration + ", draw: " + mDrawTime + ", latency: " + mInputLatency
+                + ", dropped: " + mDroppedFrames + "}";
+        }
+    }
+}
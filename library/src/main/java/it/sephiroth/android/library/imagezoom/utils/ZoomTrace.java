@@ -0,0 +1,88 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import it.sephiroth.android.library.imagezoom.BuildConfig;
+
+/**
+ * Sections and counters shown in systrace/Perfetto captures.<br />
+ * Tracing is compiled in only when the library is built with <code>-PimagezoomTrace</code>. Call sites must be guarded
+ * by {@link #ENABLED}, which is a compile time constant, so that they're removed entirely from regular builds:
+ * <pre>
+ * if (ZoomTrace.ENABLED) {
+ *     ZoomTrace.begin(ZoomTrace.SECTION_DRAW);
+ * }
+ * </pre>
+ * Sections require API 18, counters API 29: on older devices they're ignored.
+ */
+public final class ZoomTrace {
+    public static final boolean ENABLED = BuildConfig.TRACE_ENABLED;
+
+    public static final String SECTION_LAYOUT = "ImageViewTouch#layout";
+    public static final String SECTION_DRAW = "ImageViewTouch#draw";
+    public static final String SECTION_COMMIT = "ImageViewTouch#commit";
+    public static final String SECTION_ZOOM = "ImageViewTouch#zoom";
+    public static final String SECTION_PAN = "ImageViewTouch#pan";
+    public static final String SECTION_ANIMATION_FRAME = "ImageViewTouch#animationFrame";
+
+    public static final String COUNTER_SCALE_PERCENT = "ImageViewTouch#scale%";
+    public static final String COUNTER_DROPPED_FRAMES = "ImageViewTouch#droppedFrames";
+    public static final String COUNTER_INPUT_LATENCY = "ImageViewTouch#inputLatencyMs";
+
+    private static final int COUNTER_API = 29;
+    // counters are only set from the main thread
+    private static Method sSetCounter;
+    private static boolean sSetCounterResolved;
+
+    private ZoomTrace() {
+    }
+
+    /**
+     * Begin a section, which must be ended by {@link #end()} on the same thread
+     */
+    @TargetApi (18)
+    public static void begin(String name) {
+        if (ENABLED && Build.VERSION.SDK_INT >= 18) {
+            Trace.beginSection(name);
+        }
+    }
+
+    @TargetApi (18)
+    public static void end() {
+        if (ENABLED && Build.VERSION.SDK_INT >= 18) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Set the value of a counter
+     */
+    public static void counter(String name, long value) {
+        if (!ENABLED || Build.VERSION.SDK_INT < COUNTER_API) {
+            return;
+        }
+
+        // Trace.setCounter is not available in the compile SDK
+        if (!sSetCounterResolved) {
+            sSetCounterResolved = true;
+            try {
+                sSetCounter = Trace.class.getMethod("setCounter", String.class, long.class);
+            } catch (NoSuchMethodException e) {
+                sSetCounter = null;
+            }
+        }
+
+        if (null != sSetCounter) {
+            try {
+                sSetCounter.invoke(null, name, value);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                sSetCounter = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package it.sephiroth.android.library.imagezoom;
+
+import org.junit.Test;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase.DisplayType;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZoomSnapshotTest {
+
+    @Test
+    public void matchesTheSameAspectRatio() {
+        ZoomSnapshot snapshot = snapshotOf(800, 600);
+        assertTrue(snapshot.matches(800, 600));
+        // another resolution of the same image
+        assertTrue(snapshot.matches(4000, 3000));
+        assertTrue(snapshot.matches(4000, 3010));
+    }
+
+    @Test
+    public void doesNotMatchOtherAspectRatios() {
+        ZoomSnapshot snapshot = snapshotOf(800, 600);
+        assertFalse(snapshot.matches(600, 800));
+        assertFalse(snapshot.matches(4000, 3100));
+    }
+
+    @Test
+    public void doesNotMatchEmptyContent() {
+        ZoomSnapshot snapshot = snapshotOf(800, 600);
+        assertFalse(snapshot.matches(0, 600));
+        assertFalse(snapshot.matches(800, 0));
+    }
+
+    private static ZoomSnapshot snapshotOf(float contentWidth, float contentHeight) {
+        return new ZoomSnapshot(DisplayType.FIT_IF_BIGGER, 0.5f, 0.5f, 2, ImageViewTouchBase.ZOOM_INVALID,
+            ImageViewTouchBase.ZOOM_INVALID, contentWidth / contentHeight, true);
+    }
+}
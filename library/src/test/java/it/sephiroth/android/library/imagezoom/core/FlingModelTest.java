@@ -0,0 +1,88 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlingModelTest {
+    private static final float EPSILON = 1e-3f;
+
+    @Test
+    public void newModelIsFinished() {
+        FlingModel model = new FlingModel();
+        assertTrue(model.isFinished());
+        assertFalse(model.computeValue(0));
+    }
+
+    @Test
+    public void flingStopsWhereTheDecelerationStopsIt() {
+        FlingModel model = new FlingModel();
+        // v^2 / 2a = 1000 * 1000 / 4000
+        model.fling(0, -1000, -1000, 1000, 2000, 100);
+        assertEquals(-250f, model.getFinal(), EPSILON);
+        // v / a
+        assertEquals(500L, model.getDuration());
+    }
+
+    @Test
+    public void flingIsClampedToTheBounds() {
+        FlingModel model = new FlingModel();
+        model.fling(0, 1000, -100, 100, 2000, 0);
+        assertEquals(100f, model.getFinal(), EPSILON);
+        // the time needed to stop within 100
+        assertEquals(316L, model.getDuration());
+
+        assertTrue(model.computeValue(model.getDuration()));
+        assertTrue(model.isFinished());
+        assertEquals(100f, model.getCurrent(), 0);
+        assertFalse(model.computeValue(model.getDuration() + 16));
+    }
+
+    @Test
+    public void motionDecelerates() {
+        FlingModel model = new FlingModel();
+        model.start(0, 100, 0, 100);
+        float last = 0;
+        float lastStep = Float.MAX_VALUE;
+        for (long time = 10; time <= 100; time += 10) {
+            assertTrue(model.computeValue(time));
+            final float step = model.getCurrent() - last;
+            assertTrue(step > 0 && step < lastStep);
+            last = model.getCurrent();
+            lastStep = step;
+        }
+        assertTrue(model.isFinished());
+        assertEquals(100f, last, 0);
+    }
+
+    @Test
+    public void timeBeforeTheStartKeepsTheStart() {
+        FlingModel model = new FlingModel();
+        model.start(10, 20, 100, 50);
+        assertTrue(model.computeValue(90));
+        assertEquals(10f, model.getCurrent(), 0);
+    }
+
+    @Test
+    public void zeroDurationJumpsToTheEnd() {
+        FlingModel model = new FlingModel();
+        model.start(10, 20, 100, 0);
+        assertTrue(model.computeValue(100));
+        assertEquals(20f, model.getCurrent(), 0);
+        assertTrue(model.isFinished());
+    }
+
+    @Test
+    public void abortKeepsTheCurrentValue() {
+        FlingModel model = new FlingModel();
+        model.start(0, 100, 0, 100);
+        model.computeValue(50);
+        final float current = model.getCurrent();
+        model.abort();
+        assertTrue(model.isFinished());
+        assertFalse(model.computeValue(100));
+        assertEquals(current, model.getCurrent(), 0);
+    }
+}
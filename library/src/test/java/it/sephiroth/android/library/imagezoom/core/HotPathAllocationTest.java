@@ -0,0 +1,102 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.sephiroth.android.library.imagezoom.utils.AllocationCounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The zoom and pan work done for every touch event and every animation frame must not allocate: a scripted
+ * pinch, drag, fling and double tap zoom is run on the engine and the bytes allocated are counted.
+ */
+public class HotPathAllocationTest {
+    private static final long FRAME_MS = 16;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final float DECELERATION = 2000;
+
+    private final float[] mBounds = new float[4];
+    private final float[] mPoint = new float[2];
+    private final Transform mDestination = new Transform();
+    private final FlingModel mScrollX = new FlingModel();
+    private final FlingModel mScrollY = new FlingModel();
+    private final FlingModel mZoom = new FlingModel();
+    private final TouchPredictor mPredictor = new TouchPredictor();
+    private ZoomEngine mEngine;
+    private AllocationCounter mCounter;
+
+    @Before
+    public void setUp() {
+        mEngine = new ZoomEngine();
+        mEngine.setViewPort(0, 0, 1080, 1920);
+        mEngine.setContentSize(4000, 3000);
+        mCounter = AllocationCounter.create();
+        assumeTrue("bytes".equals(mCounter.getUnit()));
+    }
+
+    @Test
+    public void gesturesDoNotAllocate() {
+        // warm up: the first runs load classes, and the JIT compiles the methods
+        for (int i = 0; i < 20; i++) {
+            runScript();
+        }
+
+        mCounter.start();
+        final long before = mCounter.getCount();
+        runScript();
+        final long allocated = mCounter.getCount() - before;
+        mCounter.stop();
+
+        assertEquals("bytes allocated by the gestures", 0, allocated);
+    }
+
+    private void runScript() {
+        mEngine.layoutContent(null);
+        mPredictor.reset();
+        long time = 0;
+
+        // pinch out around the center, moving the fingers
+        for (int i = 1; i <= 60; i++) {
+            time += FRAME_MS / 2;
+            mEngine.zoomAndPanBy(mEngine.getScale() * 1.02f, 540, 960, 2, -1);
+            mEngine.getBounds(mBounds);
+            mEngine.canScroll();
+        }
+
+        // one finger drag, with touch prediction
+        for (int i = 1; i <= 60; i++) {
+            time += FRAME_MS / 2;
+            mPredictor.addSample(time * NANOS_PER_MILLI, 540 + i * 6, 960);
+            mPredictor.predict((time + FRAME_MS) * NANOS_PER_MILLI, mPoint);
+            mEngine.panBy(6 + mPoint[0], mPoint[1]);
+        }
+
+        // fling
+        mEngine.getFlingBounds(mBounds);
+        mScrollX.fling(0, -4000, mBounds[0], mBounds[1], DECELERATION, time);
+        mScrollY.fling(0, 1500, mBounds[2], mBounds[3], DECELERATION, time);
+        float lastX = 0;
+        float lastY = 0;
+        while (mScrollX.computeValue(time) | mScrollY.computeValue(time)) {
+            mEngine.panBy(mScrollX.getCurrent() - lastX, mScrollY.getCurrent() - lastY);
+            lastX = mScrollX.getCurrent();
+            lastY = mScrollY.getCurrent();
+            time += FRAME_MS;
+        }
+
+        // double tap: zoom back to the minimum scale
+        final float scale = ZoomMath.getDoubleTapTarget(
+            mEngine.getScale(), ZoomMath.getDoubleTapStep(mEngine.getMinScale(), mEngine.getMaxScale()), mEngine.getMaxScale(),
+            mEngine.getMinScale());
+        mEngine.getZoomDestination(scale, 200, 300, mDestination, mPoint);
+        mZoom.start(mEngine.getScale(), scale, time, 300);
+        while (mZoom.computeValue(time)) {
+            mEngine.zoomTo(mZoom.getCurrent(), mPoint[0], mPoint[1]);
+            time += FRAME_MS;
+        }
+
+        mEngine.getFocus(mPoint);
+    }
+}
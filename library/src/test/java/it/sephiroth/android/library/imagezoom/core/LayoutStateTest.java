@@ -0,0 +1,65 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LayoutStateTest {
+
+    @Test
+    public void newStateIsInvalid() {
+        LayoutState state = new LayoutState();
+        assertFalse(state.isValid());
+        assertFalse(state.matches(0, 0, 0, 0, null));
+    }
+
+    @Test
+    public void matchesTheSavedGeometry() {
+        LayoutState state = save(FitMode.FIT_IF_BIGGER);
+        assertTrue(state.isValid());
+        assertTrue(state.matches(400, 600, 800, 600, FitMode.FIT_IF_BIGGER));
+        assertFalse(state.matches(600, 400, 800, 600, FitMode.FIT_IF_BIGGER));
+        assertFalse(state.matches(400, 600, 600, 800, FitMode.FIT_IF_BIGGER));
+        assertFalse(state.matches(400, 600, 800, 600, FitMode.FIT_TO_SCREEN));
+
+        state.invalidate();
+        assertFalse(state.matches(400, 600, 800, 600, FitMode.FIT_IF_BIGGER));
+    }
+
+    @Test
+    public void scaleIsRelativeToTheBase() {
+        LayoutState state = save(FitMode.FIT_HEIGHT);
+        assertEquals(2f, state.getScale(), 1e-4f);
+    }
+
+    @Test
+    public void userScaledIsKeptByTheCaller() {
+        LayoutState state = save(FitMode.FIT_IF_BIGGER);
+        assertFalse(state.isUserScaled());
+        state.setUserScaled(true);
+        assertTrue(state.isUserScaled());
+    }
+
+    @Test
+    public void stateWithoutContentIsInvalid() {
+        ZoomEngine engine = new ZoomEngine();
+        engine.setViewPort(0, 0, 400, 600);
+        LayoutState state = new LayoutState();
+        engine.saveState(state);
+        assertFalse(state.isValid());
+    }
+
+    private static LayoutState save(FitMode mode) {
+        ZoomEngine engine = new ZoomEngine();
+        engine.setViewPort(0, 0, 400, 600);
+        engine.setContentSize(800, 600);
+        engine.setFitMode(mode);
+        engine.layoutContent(null);
+
+        LayoutState state = new LayoutState();
+        engine.saveState(state);
+        return state;
+    }
+}
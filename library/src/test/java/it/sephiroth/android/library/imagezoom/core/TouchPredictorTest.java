@@ -0,0 +1,108 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TouchPredictorTest {
+    private static final long MILLIS = 1000000L;
+    private static final float EPSILON = 1e-2f;
+
+    private TouchPredictor mPredictor;
+    private float[] mOut;
+
+    @Before
+    public void setUp() {
+        mPredictor = new TouchPredictor();
+        mOut = new float[]{-1, -1};
+    }
+
+    @Test
+    public void needsTwoSamples() {
+        assertFalse(mPredictor.predict(0, mOut));
+        mPredictor.addSample(0, 10, 10);
+        assertFalse(mPredictor.predict(8 * MILLIS, mOut));
+        assertArrayEquals(new float[]{0, 0}, mOut, 0);
+    }
+
+    @Test
+    public void extrapolatesAConstantVelocity() {
+        // 1 px/ms horizontally, 0.5 px/ms vertically
+        addSamples(0, 8, 1, 0.5f);
+        final long newest = 7 * 8 * MILLIS;
+        assertTrue(mPredictor.predict(newest + 16 * MILLIS, mOut));
+        assertArrayEquals(new float[]{16, 8}, mOut, EPSILON);
+    }
+
+    @Test
+    public void predictionIsCapped() {
+        addSamples(0, 8, 1, 0);
+        final long newest = 7 * 8 * MILLIS;
+        assertTrue(mPredictor.predict(newest + 30 * MILLIS, mOut));
+        assertEquals(TouchPredictor.DEFAULT_MAX_PREDICTION_NANOS / (float) MILLIS, mOut[0], EPSILON);
+
+        mPredictor.setMaxPrediction(30 * MILLIS);
+        assertTrue(mPredictor.predict(newest + 30 * MILLIS, mOut));
+        assertEquals(30f, mOut[0], EPSILON);
+    }
+
+    @Test
+    public void stalePointerIsNotPredicted() {
+        addSamples(0, 8, 1, 1);
+        final long newest = 7 * 8 * MILLIS;
+        assertFalse(mPredictor.predict(newest + TouchPredictor.STALE_NANOS + MILLIS, mOut));
+        assertFalse(mPredictor.predict(newest, mOut));
+    }
+
+    @Test
+    public void isStaleWithoutRecentSamples() {
+        assertTrue(mPredictor.isStale(0));
+        addSamples(0, 8, 1, 1);
+        final long newest = 7 * 8 * MILLIS;
+        assertFalse(mPredictor.isStale(newest + TouchPredictor.STALE_NANOS));
+        assertTrue(mPredictor.isStale(newest + TouchPredictor.STALE_NANOS + MILLIS));
+    }
+
+    @Test
+    public void oldSamplesAreIgnored() {
+        // moving right, then a pause longer than the window, then moving down
+        addSamples(0, 8, 1, 0);
+        final long start = 7 * 8 * MILLIS + TouchPredictor.WINDOW_NANOS * 2;
+        for (int i = 0; i < 8; i++) {
+            mPredictor.addSample(start + i * 8 * MILLIS, 56, i * 8);
+        }
+        assertTrue(mPredictor.predict(start + 7 * 8 * MILLIS + 10 * MILLIS, mOut));
+        assertArrayEquals(new float[]{0, 10}, mOut, EPSILON);
+    }
+
+    @Test
+    public void samplesOutOfOrderAreDropped() {
+        mPredictor.addSample(10 * MILLIS, 0, 0);
+        mPredictor.addSample(5 * MILLIS, 100, 100);
+        assertEquals(1, mPredictor.getSampleCount());
+
+        // same time: replaced
+        mPredictor.addSample(10 * MILLIS, 5, 5);
+        assertEquals(1, mPredictor.getSampleCount());
+    }
+
+    @Test
+    public void resetDropsTheSamples() {
+        addSamples(0, 8, 1, 1);
+        mPredictor.reset();
+        assertEquals(0, mPredictor.getSampleCount());
+        assertFalse(mPredictor.predict(100 * MILLIS, mOut));
+    }
+
+    // 8 samples, every intervalMs, moving at the given speed in px/ms
+    private void addSamples(long startNanos, int intervalMs, float speedX, float speedY) {
+        for (int i = 0; i < 8; i++) {
+            final long time = i * intervalMs;
+            mPredictor.addSample(startNanos + time * MILLIS, time * speedX, time * speedY);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class TouchTraceTest {
+
+    @Test
+    public void writeAndRead() throws IOException {
+        TouchTrace trace = new TouchTrace(800, 600, 400, 300);
+        int index = trace.addEvent(TouchTrace.ACTION_DOWN, 0, 1, 0);
+        trace.setPointer(index, 0, 10.5f, 20.25f);
+        index = trace.addEvent(TouchTrace.ACTION_POINTER_DOWN, 1, 2, 8);
+        trace.setPointer(index, 0, 11, 21);
+        trace.setPointer(index + 1, 3, 100, 200);
+
+        TouchTrace copy = TouchTrace.read(new ByteArrayInputStream(toBytes(trace)));
+        assertEquals(800, copy.getDrawableWidth());
+        assertEquals(600, copy.getDrawableHeight());
+        assertEquals(400, copy.getViewWidth());
+        assertEquals(300, copy.getViewHeight());
+        assertEquals(2, copy.getEventCount());
+
+        assertEquals(TouchTrace.ACTION_DOWN, copy.getAction(0));
+        assertEquals(1, copy.getPointerCount(0));
+        assertEquals(10.5f, copy.getX(0, 0), 0);
+        assertEquals(20.25f, copy.getY(0, 0), 0);
+
+        assertEquals(TouchTrace.ACTION_POINTER_DOWN, copy.getAction(1));
+        assertEquals(1, copy.getActionIndex(1));
+        assertEquals(8, copy.getEventTime(1));
+        assertEquals(2, copy.getPointerCount(1));
+        assertEquals(3, copy.getPointerId(1, 1));
+        assertEquals(100f, copy.getX(1, 1), 0);
+        assertEquals(200f, copy.getY(1, 1), 0);
+    }
+
+    @Test
+    public void growsPastTheInitialCapacity() throws IOException {
+        TouchTrace trace = new TouchTrace(1, 1, 1, 1);
+        for (int i = 0; i < 500; i++) {
+            final int index = trace.addEvent(TouchTrace.ACTION_MOVE, 0, 3, i);
+            for (int p = 0; p < 3; p++) {
+                trace.setPointer(index + p, p, i, -p);
+            }
+        }
+
+        TouchTrace copy = TouchTrace.read(new ByteArrayInputStream(toBytes(trace)));
+        assertEquals(500, copy.getEventCount());
+        assertEquals(499, copy.getEventTime(499));
+        assertEquals(2, copy.getPointerId(499, 2));
+        assertEquals(499f, copy.getX(499, 2), 0);
+        assertEquals(-2f, copy.getY(499, 2), 0);
+    }
+
+    @Test (expected = IOException.class)
+    public void rejectsOtherStreams() throws IOException {
+        TouchTrace.read(new ByteArrayInputStream(new byte[]{'J', 'F', 'I', 'F', 0, 0, 0, 0}));
+    }
+
+    @Test (expected = IOException.class)
+    public void rejectsOtherVersions() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(TouchTrace.MAGIC);
+        out.writeShort(TouchTrace.VERSION + 1);
+        TouchTrace.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static byte[] toBytes(TouchTrace trace) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeTo(out);
+        return out.toByteArray();
+    }
+}
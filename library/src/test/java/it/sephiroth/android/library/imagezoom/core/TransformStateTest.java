@@ -0,0 +1,115 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransformStateTest {
+    private static final float EPSILON = 1e-4f;
+
+    private TransformState mState;
+
+    @Before
+    public void setUp() {
+        mState = new TransformState();
+        mState.setViewPort(0, 0, 400, 600);
+        mState.setImageSize(800, 600);
+        // fit the image width
+        mState.getBase().set(0.5f, 0.5f, 0, 150);
+        mState.invalidate();
+    }
+
+    @Test
+    public void everyChangeIncrementsTheVersion() {
+        int version = mState.getVersion();
+        mState.postTranslate(1, 1);
+        assertNotEquals(version, version = mState.getVersion());
+        mState.postScale(2, 0, 0);
+        assertNotEquals(version, version = mState.getVersion());
+        mState.setSupport(new Transform());
+        assertNotEquals(version, version = mState.getVersion());
+        mState.preScaleBase(2, 2);
+        assertNotEquals(version, mState.getVersion());
+    }
+
+    @Test
+    public void unchangedSizesKeepTheVersion() {
+        final int version = mState.getVersion();
+        mState.setImageSize(800, 600);
+        mState.setViewPort(0, 0, 400, 600);
+        assertEquals(version, mState.getVersion());
+    }
+
+    @Test
+    public void displayIsSupportAfterBase() {
+        mState.postScale(2, 200, 300);
+        Transform display = mState.getDisplay();
+        assertEquals(mState.getSupport().mapX(mState.getBase().mapX(100)), display.mapX(100), EPSILON);
+        assertEquals(mState.getSupport().mapY(mState.getBase().mapY(100)), display.mapY(100), EPSILON);
+    }
+
+    @Test
+    public void derivedValuesAreCachedUntilTheNextChange() {
+        Transform display = mState.getDisplay();
+        final float scale = display.getScaleX();
+        assertSame(display, mState.getDisplay());
+
+        mState.postScale(2, 0, 0);
+        assertEquals(scale * 2, mState.getDisplay().getScaleX(), EPSILON);
+    }
+
+    @Test
+    public void directChangesNeedInvalidate() {
+        mState.getDisplay();
+        mState.getSupport().postTranslate(10, 0);
+        assertEquals(0f, mState.getDisplay().getTranslateX(), EPSILON);
+        mState.invalidate();
+        assertEquals(10f, mState.getDisplay().getTranslateX(), EPSILON);
+    }
+
+    @Test
+    public void boundsAreMappedByTheDisplay() {
+        float[] bounds = new float[4];
+        mState.getBounds(bounds);
+        assertArrayEquals(new float[]{0, 150, 400, 450}, bounds, EPSILON);
+
+        Transform support = new Transform();
+        support.postScale(2, 2);
+        mState.getBounds(support, bounds);
+        assertArrayEquals(new float[]{0, 300, 800, 900}, bounds, EPSILON);
+    }
+
+    @Test
+    public void centerKeepsSmallImagesCentered() {
+        float[] center = new float[2];
+        mState.postTranslate(30, 40);
+        mState.getCenter(mState.getSupport(), true, true, center);
+        assertArrayEquals(new float[]{-30, -40}, center, EPSILON);
+
+        mState.getCenter(mState.getSupport(), false, true, center);
+        assertArrayEquals(new float[]{0, -40}, center, EPSILON);
+    }
+
+    @Test
+    public void centerRemovesEmptySpaceAtTheEdges() {
+        float[] center = new float[2];
+        Transform support = new Transform();
+        // 1600x1200 on screen, 100px right of the left edge
+        support.set(4, 4, 100, -700);
+        mState.getCenter(support, true, true, center);
+        assertArrayEquals(new float[]{-100, 0}, center, EPSILON);
+    }
+
+    @Test
+    public void canScrollOnlyWhenZoomedOrOutside() {
+        assertFalse(mState.canScroll());
+        mState.postScale(2, 200, 300);
+        assertTrue(mState.canScroll());
+    }
+}
@@ -0,0 +1,123 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransformTest {
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void newTransformIsIdentity() {
+        Transform transform = new Transform();
+        assertTrue(transform.isIdentity());
+        assertEquals(10f, transform.mapX(10f), 0);
+        assertEquals(20f, transform.mapY(20f), 0);
+    }
+
+    @Test
+    public void postScaleAroundPivotKeepsThePivot() {
+        Transform transform = new Transform();
+        transform.set(2, 2, 10, 20);
+        final float x = transform.mapX(5);
+        final float y = transform.mapY(5);
+
+        transform.postScale(3, 3, x, y);
+
+        assertEquals(6f, transform.getScaleX(), EPSILON);
+        assertEquals(6f, transform.getScaleY(), EPSILON);
+        assertEquals(x, transform.mapX(5), EPSILON);
+        assertEquals(y, transform.mapY(5), EPSILON);
+    }
+
+    @Test
+    public void postScaleScalesTheTranslation() {
+        Transform transform = new Transform();
+        transform.set(1, 1, 10, 20);
+        transform.postScale(2, 3);
+        assertEquals(transformOf(2, 3, 20, 60), transform);
+    }
+
+    @Test
+    public void preScaleKeepsTheTranslation() {
+        Transform transform = transformOf(2, 2, 10, 20);
+        transform.preScale(3, 4);
+        assertEquals(transformOf(6, 8, 10, 20), transform);
+    }
+
+    @Test
+    public void setConcatAppliesTheSecondTransformFirst() {
+        Transform a = transformOf(2, 3, 5, 7);
+        Transform b = transformOf(4, 5, 11, 13);
+        Transform result = new Transform();
+        result.setConcat(a, b);
+
+        assertEquals(a.mapX(b.mapX(17)), result.mapX(17), EPSILON);
+        assertEquals(a.mapY(b.mapY(19)), result.mapY(19), EPSILON);
+    }
+
+    @Test
+    public void setConcatSupportsAliasing() {
+        Transform a = transformOf(2, 3, 5, 7);
+        Transform b = transformOf(4, 5, 11, 13);
+        Transform expected = new Transform();
+        expected.setConcat(a, b);
+
+        a.setConcat(a, b);
+        assertEquals(expected, a);
+    }
+
+    @Test
+    public void invertMapsBack() {
+        Transform transform = transformOf(2, 4, 10, -20);
+        Transform inverse = new Transform();
+        assertTrue(transform.invert(inverse));
+        assertEquals(33f, inverse.mapX(transform.mapX(33)), EPSILON);
+        assertEquals(-7f, inverse.mapY(transform.mapY(-7)), EPSILON);
+    }
+
+    @Test
+    public void invertFailsWithZeroScale() {
+        Transform transform = transformOf(0, 1, 10, 10);
+        Transform out = transformOf(5, 5, 5, 5);
+        assertFalse(transform.invert(out));
+        assertEquals(transformOf(5, 5, 5, 5), out);
+    }
+
+    @Test
+    public void mapRectSortsTheEdges() {
+        Transform transform = transformOf(-2, 1, 100, 0);
+        float[] rect = {0, 0, 10, 20};
+        transform.mapRect(rect);
+        assertArrayEquals(new float[]{80, 0, 100, 20}, rect, EPSILON);
+    }
+
+    @Test
+    public void valuesUseTheMatrixLayout() {
+        Transform transform = transformOf(2, 3, 4, 5);
+        float[] values = new float[9];
+        transform.getValues(values);
+        assertArrayEquals(new float[]{2, 0, 4, 0, 3, 5, 0, 0, 1}, values, 0);
+
+        Transform copy = new Transform();
+        copy.setValues(values);
+        assertEquals(transform, copy);
+        assertEquals(transform.hashCode(), copy.hashCode());
+    }
+
+    @Test
+    public void equalsComparesAllTheValues() {
+        assertNotEquals(transformOf(1, 1, 0, 0), transformOf(1, 1, 0, 1));
+        assertNotEquals(transformOf(1, 1, 0, 0), transformOf(1, 2, 0, 0));
+    }
+
+    private static Transform transformOf(float scaleX, float scaleY, float translateX, float translateY) {
+        Transform transform = new Transform();
+        transform.set(scaleX, scaleY, translateX, translateY);
+        return transform;
+    }
+}
@@ -0,0 +1,256 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZoomEngineTest {
+    private static final float EPSILON = 1e-3f;
+
+    private ZoomEngine mEngine;
+
+    @Before
+    public void setUp() {
+        // 800x600 content in a 400x600 viewport: the base transform halves the content
+        mEngine = newEngine(400, 600);
+    }
+
+    @Test
+    public void layoutContentFitsAndCentersTheContent() {
+        assertEquals(0.5f, mEngine.getBaseScale(), EPSILON);
+        assertEquals(1f, mEngine.getScale(), EPSILON);
+        assertArrayEquals(new float[]{0, 150, 400, 450}, getBounds(), EPSILON);
+    }
+
+    @Test
+    public void layoutContentUsesTheFitMode() {
+        mEngine.setFitMode(FitMode.FIT_HEIGHT);
+        mEngine.layoutContent(null);
+        assertEquals(2f, mEngine.getScale(), EPSILON);
+        assertArrayEquals(new float[]{-200, 0, 600, 600}, getBounds(), EPSILON);
+    }
+
+    @Test
+    public void layoutContentUsesTheInitialSupport() {
+        Transform support = new Transform();
+        support.postScale(3, 3);
+        mEngine.layoutContent(support);
+        assertEquals(3f, mEngine.getScale(), EPSILON);
+        // the initial transform is centered
+        float[] bounds = getBounds();
+        assertEquals(0f, bounds[0], EPSILON);
+        assertEquals(0f, bounds[1], EPSILON);
+    }
+
+    @Test
+    public void defaultZoomLimits() {
+        assertEquals(1f, mEngine.getMinScale(), EPSILON);
+        assertEquals(8f, mEngine.getMaxScale(), EPSILON);
+        assertEquals(ZoomEngine.ZOOM_INVALID, mEngine.getMinZoomLimit(), 0);
+        assertEquals(ZoomEngine.ZOOM_INVALID, mEngine.getMaxZoomLimit(), 0);
+    }
+
+    @Test
+    public void zoomToIsClampedToTheLimits() {
+        mEngine.zoomTo(100);
+        assertEquals(8f, mEngine.getScale(), EPSILON);
+        mEngine.zoomTo(0.1f);
+        assertEquals(1f, mEngine.getScale(), EPSILON);
+    }
+
+    @Test
+    public void explicitZoomLimits() {
+        mEngine.setZoomLimits(3, 0.5f);
+        assertEquals(0.5f, mEngine.getMinZoomLimit(), 0);
+        assertEquals(3f, mEngine.getMaxZoomLimit(), 0);
+
+        mEngine.layoutContent(null);
+        mEngine.zoomTo(10);
+        assertEquals(3f, mEngine.getScale(), EPSILON);
+        mEngine.zoomTo(0.1f);
+        assertEquals(0.5f, mEngine.getScale(), EPSILON);
+    }
+
+    @Test
+    public void minZoomAboveOneIsIgnoredWhenFitting() {
+        mEngine.setZoomLimits(2, 3);
+        assertEquals(ZoomEngine.ZOOM_INVALID, mEngine.getMinZoomLimit(), 0);
+        assertEquals(3f, mEngine.getMaxZoomLimit(), 0);
+        assertEquals(1f, mEngine.getMinScale(), EPSILON);
+    }
+
+    @Test
+    public void clampToLimitsAppliesNewLimits() {
+        mEngine.zoomTo(6);
+        mEngine.setZoomLimits(0.5f, 2);
+        mEngine.clampToLimits();
+        assertEquals(2f, mEngine.getScale(), EPSILON);
+        assertContentCoversViewPort();
+    }
+
+    @Test
+    public void zoomAndPanByKeepsTheViewPortCovered() {
+        mEngine.zoomAndPanBy(2, 200, 300, 1000, 0);
+        assertEquals(2f, mEngine.getScale(), EPSILON);
+        assertEquals(0f, getBounds()[0], EPSILON);
+        assertContentCoversViewPort();
+
+        mEngine.zoomAndPanBy(100, 200, 300, 0, 0);
+        assertEquals(8f, mEngine.getScale(), EPSILON);
+    }
+
+    @Test
+    public void panByCentersSmallContent() {
+        mEngine.panBy(0, 100);
+        assertArrayEquals(new float[]{0, 150, 400, 450}, getBounds(), EPSILON);
+    }
+
+    @Test
+    public void flingBounds() {
+        float[] out = new float[4];
+        mEngine.getFlingBounds(out);
+        assertArrayEquals(new float[]{0, 0, 0, 0}, out, EPSILON);
+
+        mEngine.zoomTo(2);
+        mEngine.getFlingBounds(out);
+        assertArrayEquals(new float[]{-200, 200, 0, 0}, out, EPSILON);
+    }
+
+    @Test
+    public void scrollDestinationIsClamped() {
+        mEngine.zoomTo(2);
+        final int version = mEngine.getState().getVersion();
+        Transform out = mEngine.getScrollDestination(1000, 0, new Transform());
+        // the current state is not modified
+        assertEquals(version, mEngine.getState().getVersion());
+
+        float[] bounds = new float[4];
+        mEngine.getState().getBounds(out, bounds);
+        assertEquals(0f, bounds[0], EPSILON);
+    }
+
+    @Test
+    public void zoomDestinationIsCentered() {
+        float[] focus = new float[2];
+        Transform out = mEngine.getZoomDestination(2, 0, 0, new Transform(), focus);
+        assertEquals(2f, out.getScaleX(), EPSILON);
+
+        float[] bounds = new float[4];
+        mEngine.getState().getBounds(out, bounds);
+        assertTrue(bounds[0] <= 0 && bounds[2] >= 400);
+        assertTrue(bounds[1] <= 0 && bounds[3] >= 600);
+
+        // zooming around the focus point reaches the destination
+        mEngine.zoomTo(2, focus[0], focus[1]);
+        assertArrayEquals(getValues(out), getValues(mEngine.getState().getSupport()), EPSILON);
+    }
+
+    @Test
+    public void contentPointRoundTrip() {
+        mEngine.zoomAndPanBy(3, 100, 100, 0, 0);
+        float[] point = new float[2];
+        assertTrue(mEngine.getContentPoint(123, 456, point));
+
+        Transform display = mEngine.getDisplay();
+        assertEquals(123f, display.mapX(point[0]), EPSILON);
+        assertEquals(456f, display.mapY(point[1]), EPSILON);
+    }
+
+    @Test
+    public void focusSurvivesAViewPortChange() {
+        mEngine.zoomAndPanBy(4, 100, 200, 0, 0);
+        float[] focus = new float[2];
+        assertTrue(mEngine.getFocus(focus));
+
+        ZoomEngine other = newEngine(600, 400);
+        other.restoreFocus(mEngine.getScale(), focus[0], focus[1]);
+        float[] restored = new float[2];
+        assertTrue(other.getFocus(restored));
+        assertArrayEquals(focus, restored, EPSILON);
+    }
+
+    @Test
+    public void focusNeedsContent() {
+        ZoomEngine engine = new ZoomEngine();
+        engine.setViewPort(0, 0, 400, 600);
+        assertFalse(engine.getFocus(new float[2]));
+    }
+
+    @Test
+    public void layoutViewPortKeepsTheUserScale() {
+        mEngine.zoomTo(4);
+        mEngine.setViewPort(0, 0, 600, 400);
+        mEngine.layoutViewPort(200, -200, true);
+
+        // the content is now fitted by its height, scaled by 0.666: the same pixels are magnified
+        assertEquals(2f / 3, mEngine.getBaseScale(), EPSILON);
+        assertEquals(3f, mEngine.getScale(), EPSILON);
+        assertContentCoversViewPort();
+    }
+
+    @Test
+    public void layoutViewPortResetsTheScaleIfNotUserScaled() {
+        mEngine.zoomTo(4);
+        mEngine.setViewPort(0, 0, 600, 400);
+        mEngine.layoutViewPort(200, -200, false);
+        assertEquals(1f, mEngine.getScale(), EPSILON);
+    }
+
+    @Test
+    public void saveAndRestoreState() {
+        mEngine.setZoomLimits(0.5f, 6);
+        mEngine.zoomAndPanBy(3, 50, 50, -20, 30);
+        LayoutState state = new LayoutState();
+        mEngine.saveState(state);
+        assertTrue(state.isValid());
+
+        ZoomEngine other = new ZoomEngine();
+        other.setViewPort(0, 0, 400, 600);
+        other.setContentSize(800, 600);
+        assertTrue(other.restoreState(state));
+        assertEquals(mEngine.getDisplay(), other.getDisplay());
+        assertEquals(6f, other.getMaxZoomLimit(), 0);
+    }
+
+    @Test
+    public void restoreStateNeedsTheSameGeometry() {
+        LayoutState state = new LayoutState();
+        mEngine.saveState(state);
+
+        ZoomEngine other = newEngine(600, 400);
+        final Transform display = new Transform(other.getDisplay());
+        assertFalse(other.restoreState(state));
+        assertEquals(display, other.getDisplay());
+    }
+
+    private static ZoomEngine newEngine(float width, float height) {
+        ZoomEngine engine = new ZoomEngine();
+        engine.setViewPort(0, 0, width, height);
+        engine.setContentSize(800, 600);
+        engine.layoutContent(null);
+        return engine;
+    }
+
+    private float[] getBounds() {
+        float[] bounds = new float[4];
+        mEngine.getBounds(bounds);
+        return bounds;
+    }
+
+    private static float[] getValues(Transform transform) {
+        float[] values = new float[9];
+        transform.getValues(values);
+        return values;
+    }
+
+    private void assertContentCoversViewPort() {
+        float[] bounds = getBounds();
+        TransformState state = mEngine.getState();
+        assertTrue(bounds[0] <= state.getViewPortLeft() + EPSILON && bounds[2] >= state.getViewPortRight() - EPSILON);
+        assertTrue(bounds[1] <= state.getViewPortTop() + EPSILON && bounds[3] >= state.getViewPortBottom() - EPSILON);
+    }
+}
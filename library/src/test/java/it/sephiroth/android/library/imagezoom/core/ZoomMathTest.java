@@ -0,0 +1,68 @@
+package it.sephiroth.android.library.imagezoom.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ZoomMathTest {
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void baseTransformFitsAndCenters() {
+        Transform out = new Transform();
+        assertSame(out, ZoomMath.getBaseTransform(800, 600, 10, 20, 410, 620, out));
+        assertEquals(0.5f, out.getScaleX(), EPSILON);
+        assertEquals(0.5f, out.getScaleY(), EPSILON);
+        assertEquals(10f, out.getTranslateX(), EPSILON);
+        assertEquals(20f + 150f, out.getTranslateY(), EPSILON);
+    }
+
+    @Test
+    public void baseTransformEnlargesSmallImages() {
+        Transform out = ZoomMath.getBaseTransform(100, 100, 0, 0, 400, 600, new Transform());
+        assertEquals(4f, out.getScaleX(), EPSILON);
+        assertEquals(100f, out.getTranslateY(), EPSILON);
+    }
+
+    @Test
+    public void defaultScale() {
+        // 100x100 image enlarged 4 times to fit a 400x600 view
+        assertEquals(1f, ZoomMath.getDefaultScale(FitMode.FIT_TO_SCREEN, 4, 4, 100, 100, 400, 600), EPSILON);
+        assertEquals(0.25f, ZoomMath.getDefaultScale(FitMode.FIT_IF_BIGGER, 4, 4, 100, 100, 400, 600), EPSILON);
+        assertEquals(1.5f, ZoomMath.getDefaultScale(FitMode.FIT_HEIGHT, 4, 4, 100, 100, 400, 600), EPSILON);
+        assertEquals(1f, ZoomMath.getDefaultScale(FitMode.FIT_WIDTH, 4, 4, 100, 100, 400, 600), EPSILON);
+        assertEquals(0.25f, ZoomMath.getDefaultScale(FitMode.NONE, 4, 4, 100, 100, 400, 600), EPSILON);
+
+        // 800x600 image halved
+        assertEquals(1f, ZoomMath.getDefaultScale(FitMode.FIT_IF_BIGGER, 0.5f, 0.5f, 800, 600, 400, 600), EPSILON);
+        assertEquals(2f, ZoomMath.getDefaultScale(FitMode.NONE, 0.5f, 0.5f, 800, 600, 400, 600), EPSILON);
+    }
+
+    @Test
+    public void zoomLimits() {
+        assertEquals(1f, ZoomMath.computeMinZoom(0.5f), EPSILON);
+        assertEquals(0.25f, ZoomMath.computeMinZoom(4), EPSILON);
+        assertEquals(2f * ZoomMath.MAX_ZOOM_FACTOR, ZoomMath.computeMaxZoom(800, 600, 400, 600), EPSILON);
+        assertEquals(0.25f * ZoomMath.MAX_ZOOM_FACTOR, ZoomMath.computeMaxZoom(100, 100, 400, 600), EPSILON);
+    }
+
+    @Test
+    public void centerOffset() {
+        // smaller than the viewport: centered
+        assertEquals(50f, ZoomMath.getCenterOffset(0, 100, 0, 200), EPSILON);
+        assertEquals(-50f, ZoomMath.getCenterOffset(100, 200, 0, 200), EPSILON);
+        // bigger: empty space removed
+        assertEquals(-10f, ZoomMath.getCenterOffset(10, 400, 0, 200), EPSILON);
+        assertEquals(10f, ZoomMath.getCenterOffset(-200, 190, 0, 200), EPSILON);
+        assertEquals(0f, ZoomMath.getCenterOffset(-100, 300, 0, 200), EPSILON);
+    }
+
+    @Test
+    public void doubleTap() {
+        final float step = ZoomMath.getDoubleTapStep(1, 8);
+        assertEquals(4f, step, EPSILON);
+        assertEquals(5f, ZoomMath.getDoubleTapTarget(1, step, 8, 1), EPSILON);
+        assertEquals(1f, ZoomMath.getDoubleTapTarget(5, step, 8, 1), EPSILON);
+    }
+}
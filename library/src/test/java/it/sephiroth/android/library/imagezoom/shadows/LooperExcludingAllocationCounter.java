@@ -0,0 +1,57 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import it.sephiroth.android.library.imagezoom.utils.AllocationCounter;
+
+/**
+ * An {@link AllocationCounter} which does not count what Robolectric allocates to schedule the looper
+ * messages: a runnable and a reflective proxy for every message posted or removed, while on Android the
+ * messages are pooled. Everything else allocated by the thread, including the messages, is counted.<br />
+ * Requires the {@link ShadowMeasuredMessageQueue} and {@link ShadowMeasuredMessage} shadows.
+ */
+public final class LooperExcludingAllocationCounter extends AllocationCounter {
+    private static LooperExcludingAllocationCounter sActive;
+
+    private final AllocationCounter mCounter = AllocationCounter.create();
+    private long mExcluded;
+    private long mExcludedStart;
+    // the message queue calls can be nested
+    private int mDepth;
+
+    @Override
+    public void start() {
+        mCounter.start();
+        mExcluded = 0;
+        mDepth = 0;
+        sActive = this;
+    }
+
+    @Override
+    public long getCount() {
+        return mCounter.getCount() - mExcluded;
+    }
+
+    @Override
+    public void stop() {
+        sActive = null;
+        mCounter.stop();
+    }
+
+    @Override
+    public String getUnit() {
+        return mCounter.getUnit();
+    }
+
+    static void beginExcluded() {
+        final LooperExcludingAllocationCounter counter = sActive;
+        if (null != counter && counter.mDepth++ == 0) {
+            counter.mExcludedStart = counter.mCounter.getCount();
+        }
+    }
+
+    static void endExcluded() {
+        final LooperExcludingAllocationCounter counter = sActive;
+        if (null != counter && --counter.mDepth == 0) {
+            counter.mExcluded += counter.mCounter.getCount() - counter.mExcludedStart;
+        }
+    }
+}
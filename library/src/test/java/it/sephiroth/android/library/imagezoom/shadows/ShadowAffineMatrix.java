@@ -0,0 +1,295 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+
+/**
+ * Robolectric shadow of {@link Matrix} keeping the affine values in plain fields, so that, like the
+ * framework, setting, reading and concatenating matrices does not allocate. The default shadow
+ * copies the values and records every operation as a string.<br />
+ * Perspective is not supported: {@link #setValues(float[])} ignores it and {@link #getValues(float[])}
+ * always returns { 0, 0, 1 }.
+ */
+@Implements (Matrix.class)
+public class ShadowAffineMatrix {
+    // row major: x' = mValues[0] * x + mValues[1] * y + mValues[2], y' = mValues[3] * x + mValues[4] * y + mValues[5]
+    private final float[] mValues = {1, 0, 0, 0, 1, 0};
+    private final float[] mTmp = new float[6];
+
+    @Implementation
+    public void __constructor__(Matrix src) {
+        set(src);
+    }
+
+    @Implementation
+    public boolean isIdentity() {
+        return mValues[0] == 1 && mValues[1] == 0 && mValues[2] == 0 && mValues[3] == 0 && mValues[4] == 1 && mValues[5] == 0;
+    }
+
+    @Implementation
+    public boolean isAffine() {
+        return true;
+    }
+
+    @Implementation
+    public boolean rectStaysRect() {
+        return (mValues[1] == 0 && mValues[3] == 0) || (mValues[0] == 0 && mValues[4] == 0);
+    }
+
+    @Implementation
+    public void set(Matrix src) {
+        if (null == src) {
+            reset();
+        } else {
+            System.arraycopy(shadowOf(src).mValues, 0, mValues, 0, 6);
+        }
+    }
+
+    @Implementation
+    public void reset() {
+        setAll(1, 0, 0, 0, 1, 0);
+    }
+
+    @Implementation
+    public void setTranslate(float dx, float dy) {
+        setAll(1, 0, dx, 0, 1, dy);
+    }
+
+    @Implementation
+    public void setScale(float sx, float sy, float px, float py) {
+        setAll(sx, 0, px - sx * px, 0, sy, py - sy * py);
+    }
+
+    @Implementation
+    public void setScale(float sx, float sy) {
+        setAll(sx, 0, 0, 0, sy, 0);
+    }
+
+    @Implementation
+    public void setRotate(float degrees, float px, float py) {
+        final double radians = Math.toRadians(degrees);
+        setSinCos((float) Math.sin(radians), (float) Math.cos(radians), px, py);
+    }
+
+    @Implementation
+    public void setRotate(float degrees) {
+        setRotate(degrees, 0, 0);
+    }
+
+    @Implementation
+    public void setSinCos(float sin, float cos, float px, float py) {
+        setAll(cos, -sin, px - cos * px + sin * py, sin, cos, py - sin * px - cos * py);
+    }
+
+    @Implementation
+    public void setSinCos(float sin, float cos) {
+        setSinCos(sin, cos, 0, 0);
+    }
+
+    @Implementation
+    public void setSkew(float kx, float ky, float px, float py) {
+        setAll(1, kx, -kx * py, ky, 1, -ky * px);
+    }
+
+    @Implementation
+    public void setSkew(float kx, float ky) {
+        setSkew(kx, ky, 0, 0);
+    }
+
+    @Implementation
+    public boolean setConcat(Matrix a, Matrix b) {
+        concat(shadowOf(a).mValues, shadowOf(b).mValues, mValues);
+        return true;
+    }
+
+    @Implementation
+    public boolean preTranslate(float dx, float dy) {
+        return preConcat(1, 0, dx, 0, 1, dy);
+    }
+
+    @Implementation
+    public boolean preScale(float sx, float sy, float px, float py) {
+        return preConcat(sx, 0, px - sx * px, 0, sy, py - sy * py);
+    }
+
+    @Implementation
+    public boolean preScale(float sx, float sy) {
+        return preConcat(sx, 0, 0, 0, sy, 0);
+    }
+
+    @Implementation
+    public boolean preConcat(Matrix other) {
+        final float[] values = shadowOf(other).mValues;
+        return preConcat(values[0], values[1], values[2], values[3], values[4], values[5]);
+    }
+
+    @Implementation
+    public boolean postTranslate(float dx, float dy) {
+        mValues[2] += dx;
+        mValues[5] += dy;
+        return true;
+    }
+
+    @Implementation
+    public boolean postScale(float sx, float sy, float px, float py) {
+        return postConcat(sx, 0, px - sx * px, 0, sy, py - sy * py);
+    }
+
+    @Implementation
+    public boolean postScale(float sx, float sy) {
+        return postConcat(sx, 0, 0, 0, sy, 0);
+    }
+
+    @Implementation
+    public boolean postConcat(Matrix other) {
+        final float[] values = shadowOf(other).mValues;
+        return postConcat(values[0], values[1], values[2], values[3], values[4], values[5]);
+    }
+
+    @Implementation
+    public boolean invert(Matrix inverse) {
+        final float determinant = mValues[0] * mValues[4] - mValues[1] * mValues[3];
+        if (determinant == 0) {
+            return false;
+        }
+        shadowOf(inverse).setAll(
+            mValues[4] / determinant, -mValues[1] / determinant, (mValues[1] * mValues[5] - mValues[4] * mValues[2]) / determinant,
+            -mValues[3] / determinant, mValues[0] / determinant, (mValues[3] * mValues[2] - mValues[0] * mValues[5]) / determinant
+        );
+        return true;
+    }
+
+    @Implementation
+    public void mapPoints(float[] dst, int dstIndex, float[] src, int srcIndex, int pointCount) {
+        for (int i = 0; i < pointCount; i++) {
+            final float x = src[srcIndex + i * 2];
+            final float y = src[srcIndex + i * 2 + 1];
+            dst[dstIndex + i * 2] = mValues[0] * x + mValues[1] * y + mValues[2];
+            dst[dstIndex + i * 2 + 1] = mValues[3] * x + mValues[4] * y + mValues[5];
+        }
+    }
+
+    @Implementation
+    public boolean mapRect(RectF dst, RectF src) {
+        final float left = src.left;
+        final float top = src.top;
+        final float right = src.right;
+        final float bottom = src.bottom;
+        final float x0 = mapX(left, top);
+        final float y0 = mapY(left, top);
+        final float x1 = mapX(right, top);
+        final float y1 = mapY(right, top);
+        final float x2 = mapX(left, bottom);
+        final float y2 = mapY(left, bottom);
+        final float x3 = mapX(right, bottom);
+        final float y3 = mapY(right, bottom);
+        dst.set(
+            Math.min(Math.min(x0, x1), Math.min(x2, x3)), Math.min(Math.min(y0, y1), Math.min(y2, y3)),
+            Math.max(Math.max(x0, x1), Math.max(x2, x3)), Math.max(Math.max(y0, y1), Math.max(y2, y3))
+        );
+        return rectStaysRect();
+    }
+
+    @Implementation
+    public void getValues(float[] values) {
+        System.arraycopy(mValues, 0, values, 0, 6);
+        values[Matrix.MPERSP_0] = 0;
+        values[Matrix.MPERSP_1] = 0;
+        values[Matrix.MPERSP_2] = 1;
+    }
+
+    @Implementation
+    public void setValues(float[] values) {
+        System.arraycopy(values, 0, mValues, 0, 6);
+    }
+
+    @Override
+    @Implementation
+    public boolean equals(Object o) {
+        if (!(o instanceof Matrix)) {
+            return false;
+        }
+        final float[] values = shadowOf((Matrix) o).mValues;
+        for (int i = 0; i < 6; i++) {
+            if (Float.compare(mValues[i], values[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @Implementation
+    public int hashCode() {
+        int result = 0;
+        for (float value : mValues) {
+            result = 31 * result + Float.floatToIntBits(value);
+        }
+        return result;
+    }
+
+    private void setAll(float sx, float kx, float tx, float ky, float sy, float ty) {
+        mValues[0] = sx;
+        mValues[1] = kx;
+        mValues[2] = tx;
+        mValues[3] = ky;
+        mValues[4] = sy;
+        mValues[5] = ty;
+    }
+
+    // this = this * other
+    private boolean preConcat(float sx, float kx, float tx, float ky, float sy, float ty) {
+        mTmp[0] = sx;
+        mTmp[1] = kx;
+        mTmp[2] = tx;
+        mTmp[3] = ky;
+        mTmp[4] = sy;
+        mTmp[5] = ty;
+        concat(mValues, mTmp, mValues);
+        return true;
+    }
+
+    // this = other * this
+    private boolean postConcat(float sx, float kx, float tx, float ky, float sy, float ty) {
+        mTmp[0] = sx;
+        mTmp[1] = kx;
+        mTmp[2] = tx;
+        mTmp[3] = ky;
+        mTmp[4] = sy;
+        mTmp[5] = ty;
+        concat(mTmp, mValues, mValues);
+        return true;
+    }
+
+    private float mapX(float x, float y) {
+        return mValues[0] * x + mValues[1] * y + mValues[2];
+    }
+
+    private float mapY(float x, float y) {
+        return mValues[3] * x + mValues[4] * y + mValues[5];
+    }
+
+    // out = a * b, out can be a or b
+    private static void concat(float[] a, float[] b, float[] out) {
+        final float sx = a[0] * b[0] + a[1] * b[3];
+        final float kx = a[0] * b[1] + a[1] * b[4];
+        final float tx = a[0] * b[2] + a[1] * b[5] + a[2];
+        final float ky = a[3] * b[0] + a[4] * b[3];
+        final float sy = a[3] * b[1] + a[4] * b[4];
+        final float ty = a[3] * b[2] + a[4] * b[5] + a[5];
+        out[0] = sx;
+        out[1] = kx;
+        out[2] = tx;
+        out[3] = ky;
+        out[4] = sy;
+        out[5] = ty;
+    }
+
+    private static ShadowAffineMatrix shadowOf(Matrix matrix) {
+        return Shadow.extract(matrix);
+    }
+}
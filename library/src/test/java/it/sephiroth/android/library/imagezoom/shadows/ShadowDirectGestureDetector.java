@@ -0,0 +1,13 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.view.GestureDetector;
+
+import org.robolectric.annotation.Implements;
+
+/**
+ * Replaces the default Robolectric shadow of {@link GestureDetector}, which creates a proxy for every
+ * touch event, so that the framework implementation is called directly.
+ */
+@Implements (GestureDetector.class)
+public class ShadowDirectGestureDetector {
+}
@@ -0,0 +1,28 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.view.View;
+import android.widget.ImageView;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowView;
+
+/**
+ * Robolectric shadow of {@link ImageView} calling the framework {@link View#invalidate()} through a
+ * single proxy. The default shadow creates a new proxy every time the view is invalidated, that is for
+ * every change of the image matrix.
+ */
+@Implements (ImageView.class)
+public class ShadowDirectImageView extends ShadowView {
+    private View mDirect;
+
+    @Override
+    @Implementation
+    public void invalidate() {
+        if (null == mDirect) {
+            mDirect = Shadow.directlyOn(realView, View.class);
+        }
+        mDirect.invalidate();
+    }
+}
@@ -0,0 +1,81 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.view.Choreographer;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowChoreographer;
+
+/**
+ * Robolectric shadow of {@link Choreographer} whose frames are stepped by the test, with
+ * {@link #doFrame(long)}. Like the framework, posting a frame callback does not allocate: the default
+ * shadow posts a new runnable to the main looper for every callback.
+ */
+@Implements (Choreographer.class)
+public class ShadowFrameChoreographer extends ShadowChoreographer {
+    private static final int MAX_CALLBACKS = 16;
+
+    private final Choreographer.FrameCallback[] mCallbacks = new Choreographer.FrameCallback[MAX_CALLBACKS];
+    private final Choreographer.FrameCallback[] mRunning = new Choreographer.FrameCallback[MAX_CALLBACKS];
+    private int mCount;
+
+    /**
+     * Returns the shadow of the choreographer of the current thread
+     */
+    public static ShadowFrameChoreographer get() {
+        return Shadow.extract(Choreographer.getInstance());
+    }
+
+    @Override
+    @Implementation
+    public void postFrameCallbackDelayed(Choreographer.FrameCallback callback, long delayMillis) {
+        if (mCount == MAX_CALLBACKS) {
+            throw new IllegalStateException("too many frame callbacks");
+        }
+        mCallbacks[mCount++] = callback;
+    }
+
+    @Override
+    @Implementation
+    public void removeFrameCallback(Choreographer.FrameCallback callback) {
+        int count = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mCallbacks[i] != callback) {
+                mCallbacks[count++] = mCallbacks[i];
+            }
+        }
+        for (int i = count; i < mCount; i++) {
+            mCallbacks[i] = null;
+        }
+        mCount = count;
+    }
+
+    /**
+     * Returns true if a frame callback is pending
+     */
+    public boolean hasFrameCallbacks() {
+        return mCount > 0;
+    }
+
+    /**
+     * Run the callbacks posted before this frame. The callbacks they post run at the next frame
+     *
+     * @return the number of callbacks run
+     */
+    public int doFrame(long frameTimeNanos) {
+        final int count = mCount;
+        System.arraycopy(mCallbacks, 0, mRunning, 0, count);
+        for (int i = 0; i < count; i++) {
+            mCallbacks[i] = null;
+        }
+        mCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            final Choreographer.FrameCallback callback = mRunning[i];
+            mRunning[i] = null;
+            callback.doFrame(frameTimeNanos);
+        }
+        return count;
+    }
+}
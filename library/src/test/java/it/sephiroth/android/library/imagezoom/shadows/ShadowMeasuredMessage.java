@@ -0,0 +1,25 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.os.Message;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowMessage;
+
+/**
+ * The default Robolectric shadow of {@link Message}, with the allocations of {@link #recycleUnchecked()},
+ * which removes the message from the scheduler, excluded from a {@link LooperExcludingAllocationCounter}.
+ */
+@Implements (Message.class)
+public class ShadowMeasuredMessage extends ShadowMessage {
+    @Override
+    @Implementation
+    public void recycleUnchecked() {
+        LooperExcludingAllocationCounter.beginExcluded();
+        try {
+            super.recycleUnchecked();
+        } finally {
+            LooperExcludingAllocationCounter.endExcluded();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.os.Message;
+import android.os.MessageQueue;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowMessageQueue;
+
+/**
+ * The default Robolectric shadow of {@link MessageQueue}, with the allocations of
+ * {@link #enqueueMessage(Message, long)} excluded from a {@link LooperExcludingAllocationCounter}.
+ */
+@Implements (MessageQueue.class)
+public class ShadowMeasuredMessageQueue extends ShadowMessageQueue {
+    @Override
+    @Implementation
+    public boolean enqueueMessage(Message msg, long when) {
+        LooperExcludingAllocationCounter.beginExcluded();
+        try {
+            return super.enqueueMessage(msg, when);
+        } finally {
+            LooperExcludingAllocationCounter.endExcluded();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.view.MotionEvent;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.shadow.api.Shadow;
+
+import it.sephiroth.android.library.imagezoom.utils.GestureTrace;
+
+/**
+ * Robolectric shadow of {@link MotionEvent} supporting the multi pointer events created by
+ * {@link GestureTrace#obtainEvent(int, long, long)}, which the default shadow does not implement.<br />
+ * Like the framework, recycled events are kept in a pool and reused, so obtaining an event does not
+ * allocate once the pool is warm.
+ */
+@Implements (MotionEvent.class)
+public class ShadowMultiTouchMotionEvent {
+    private static final int MAX_POINTERS = 10;
+    private static final int MAX_RECYCLED = 10;
+    private static final Object POOL_LOCK = new Object();
+    private static final MotionEvent[] POOL = new MotionEvent[MAX_RECYCLED];
+    private static int sPoolSize;
+
+    @RealObject
+    private MotionEvent mRealObject;
+    private int mAction;
+    private long mDownTime;
+    private long mEventTime;
+    private int mPointerCount;
+    private final int[] mPointerIds = new int[MAX_POINTERS];
+    private final float[] mX = new float[MAX_POINTERS];
+    private final float[] mY = new float[MAX_POINTERS];
+    private int mSource;
+
+    @Implementation
+    public static MotionEvent obtain(
+        long downTime, long eventTime, int action, int pointerCount, MotionEvent.PointerProperties[] pointerProperties,
+        MotionEvent.PointerCoords[] pointerCoords, int metaState, int buttonState, float xPrecision, float yPrecision,
+        int deviceId, int edgeFlags, int source, int flags) {
+        final MotionEvent event = obtainInstance();
+        final ShadowMultiTouchMotionEvent shadow = Shadow.extract(event);
+        shadow.mDownTime = downTime;
+        shadow.mEventTime = eventTime;
+        shadow.mAction = action;
+        shadow.mPointerCount = pointerCount;
+        shadow.mSource = source;
+        for (int i = 0; i < pointerCount; i++) {
+            shadow.mPointerIds[i] = pointerProperties[i].id;
+            shadow.mX[i] = pointerCoords[i].x;
+            shadow.mY[i] = pointerCoords[i].y;
+        }
+        return event;
+    }
+
+    @Implementation
+    public static MotionEvent obtain(long downTime, long eventTime, int action, float x, float y, int metaState) {
+        final MotionEvent event = obtainInstance();
+        final ShadowMultiTouchMotionEvent shadow = Shadow.extract(event);
+        shadow.mDownTime = downTime;
+        shadow.mEventTime = eventTime;
+        shadow.mAction = action;
+        shadow.mPointerCount = 1;
+        shadow.mSource = 0;
+        shadow.mPointerIds[0] = 0;
+        shadow.mX[0] = x;
+        shadow.mY[0] = y;
+        return event;
+    }
+
+    @Implementation
+    public static MotionEvent obtain(MotionEvent other) {
+        final MotionEvent event = obtainInstance();
+        final ShadowMultiTouchMotionEvent shadow = Shadow.extract(event);
+        final ShadowMultiTouchMotionEvent source = Shadow.extract(other);
+        shadow.mDownTime = source.mDownTime;
+        shadow.mEventTime = source.mEventTime;
+        shadow.mAction = source.mAction;
+        shadow.mPointerCount = source.mPointerCount;
+        shadow.mSource = source.mSource;
+        System.arraycopy(source.mPointerIds, 0, shadow.mPointerIds, 0, source.mPointerCount);
+        System.arraycopy(source.mX, 0, shadow.mX, 0, source.mPointerCount);
+        System.arraycopy(source.mY, 0, shadow.mY, 0, source.mPointerCount);
+        return event;
+    }
+
+    private static MotionEvent obtainInstance() {
+        synchronized (POOL_LOCK) {
+            if (sPoolSize > 0) {
+                final MotionEvent event = POOL[--sPoolSize];
+                POOL[sPoolSize] = null;
+                return event;
+            }
+        }
+        return Shadow.newInstanceOf(MotionEvent.class);
+    }
+
+    @Implementation
+    public final void recycle() {
+        synchronized (POOL_LOCK) {
+            if (sPoolSize < MAX_RECYCLED) {
+                POOL[sPoolSize++] = mRealObject;
+            }
+        }
+    }
+
+    @Implementation
+    public final int getAction() {
+        return mAction;
+    }
+
+    @Implementation
+    public final void setAction(int action) {
+        mAction = action;
+    }
+
+    @Implementation
+    public final int getActionMasked() {
+        return mAction & MotionEvent.ACTION_MASK;
+    }
+
+    @Implementation
+    public final int getActionIndex() {
+        return (mAction & MotionEvent.ACTION_POINTER_INDEX_MASK) >> MotionEvent.ACTION_POINTER_INDEX_SHIFT;
+    }
+
+    @Implementation
+    public final long getDownTime() {
+        return mDownTime;
+    }
+
+    @Implementation
+    public final long getEventTime() {
+        return mEventTime;
+    }
+
+    @Implementation
+    public final int getPointerCount() {
+        return mPointerCount;
+    }
+
+    @Implementation
+    public final int getPointerId(int pointerIndex) {
+        return mPointerIds[pointerIndex];
+    }
+
+    @Implementation
+    public final int findPointerIndex(int pointerId) {
+        for (int i = 0; i < mPointerCount; i++) {
+            if (mPointerIds[i] == pointerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Implementation
+    public final float getX() {
+        return mX[0];
+    }
+
+    @Implementation
+    public final float getY() {
+        return mY[0];
+    }
+
+    @Implementation
+    public final float getX(int pointerIndex) {
+        return mX[pointerIndex];
+    }
+
+    @Implementation
+    public final float getY(int pointerIndex) {
+        return mY[pointerIndex];
+    }
+
+    @Implementation
+    public final float getRawX() {
+        return mX[0];
+    }
+
+    @Implementation
+    public final float getRawY() {
+        return mY[0];
+    }
+
+    @Implementation
+    public final int getHistorySize() {
+        return 0;
+    }
+
+    @Implementation
+    public final int getToolType(int pointerIndex) {
+        return MotionEvent.TOOL_TYPE_FINGER;
+    }
+
+    @Implementation
+    public final int getSource() {
+        return mSource;
+    }
+
+    @Implementation
+    public final void setSource(int source) {
+        mSource = source;
+    }
+
+    @Implementation
+    public final void setLocation(float x, float y) {
+        offsetLocation(x - mX[0], y - mY[0]);
+    }
+
+    @Implementation
+    public final void offsetLocation(float deltaX, float deltaY) {
+        for (int i = 0; i < mPointerCount; i++) {
+            mX[i] += deltaX;
+            mY[i] += deltaY;
+        }
+    }
+}
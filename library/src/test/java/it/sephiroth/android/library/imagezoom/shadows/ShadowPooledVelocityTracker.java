@@ -0,0 +1,126 @@
+package it.sephiroth.android.library.imagezoom.shadows;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Robolectric shadow of {@link VelocityTracker} which, like the framework, does not allocate while
+ * tracking: the samples of every pointer are kept in fixed size ring buffers.<br />
+ * The velocity is the mean velocity over the samples of the last {@link #HORIZON_MS}. The default
+ * shadow allocates for every movement and boxes the computed velocities.
+ */
+@Implements (VelocityTracker.class)
+public class ShadowPooledVelocityTracker {
+    private static final int MAX_POINTER_ID = 31;
+    private static final int HISTORY = 20;
+    private static final long HORIZON_MS = 100;
+
+    private final long[][] mTimes = new long[MAX_POINTER_ID + 1][HISTORY];
+    private final float[][] mX = new float[MAX_POINTER_ID + 1][HISTORY];
+    private final float[][] mY = new float[MAX_POINTER_ID + 1][HISTORY];
+    // index of the newest sample, and number of samples, of every pointer
+    private final int[] mHead = new int[MAX_POINTER_ID + 1];
+    private final int[] mCount = new int[MAX_POINTER_ID + 1];
+    private final float[] mVelocityX = new float[MAX_POINTER_ID + 1];
+    private final float[] mVelocityY = new float[MAX_POINTER_ID + 1];
+    private int mActivePointerId;
+
+    @Implementation
+    public void clear() {
+        for (int id = 0; id <= MAX_POINTER_ID; id++) {
+            mCount[id] = 0;
+            mVelocityX[id] = 0;
+            mVelocityY[id] = 0;
+        }
+    }
+
+    @Implementation
+    public void addMovement(MotionEvent event) {
+        final int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            clear();
+        } else if (action != MotionEvent.ACTION_MOVE && action != MotionEvent.ACTION_POINTER_DOWN) {
+            return;
+        }
+
+        mActivePointerId = event.getPointerId(0);
+        for (int i = 0; i < event.getPointerCount(); i++) {
+            final int id = event.getPointerId(i);
+            if (action == MotionEvent.ACTION_POINTER_DOWN && i == event.getActionIndex()) {
+                mCount[id] = 0;
+            }
+            for (int h = 0; h < event.getHistorySize(); h++) {
+                add(id, event.getHistoricalEventTime(h), event.getHistoricalX(i, h), event.getHistoricalY(i, h));
+            }
+            add(id, event.getEventTime(), event.getX(i), event.getY(i));
+        }
+    }
+
+    @Implementation
+    public void computeCurrentVelocity(int units) {
+        computeCurrentVelocity(units, Float.MAX_VALUE);
+    }
+
+    @Implementation
+    public void computeCurrentVelocity(int units, float maxVelocity) {
+        for (int id = 0; id <= MAX_POINTER_ID; id++) {
+            mVelocityX[id] = 0;
+            mVelocityY[id] = 0;
+            if (mCount[id] < 2) {
+                continue;
+            }
+
+            final int newest = mHead[id];
+            int oldest = newest;
+            for (int i = 1; i < mCount[id]; i++) {
+                final int index = (newest + HISTORY - i) % HISTORY;
+                if (mTimes[id][newest] - mTimes[id][index] > HORIZON_MS) {
+                    break;
+                }
+                oldest = index;
+            }
+
+            final long duration = mTimes[id][newest] - mTimes[id][oldest];
+            if (duration > 0) {
+                mVelocityX[id] = clamp((mX[id][newest] - mX[id][oldest]) * units / duration, maxVelocity);
+                mVelocityY[id] = clamp((mY[id][newest] - mY[id][oldest]) * units / duration, maxVelocity);
+            }
+        }
+    }
+
+    @Implementation
+    public float getXVelocity() {
+        return mVelocityX[mActivePointerId];
+    }
+
+    @Implementation
+    public float getYVelocity() {
+        return mVelocityY[mActivePointerId];
+    }
+
+    @Implementation
+    public float getXVelocity(int id) {
+        return mVelocityX[id];
+    }
+
+    @Implementation
+    public float getYVelocity(int id) {
+        return mVelocityY[id];
+    }
+
+    private void add(int id, long time, float x, float y) {
+        final int head = mCount[id] == 0 ? 0 : (mHead[id] + 1) % HISTORY;
+        mTimes[id][head] = time;
+        mX[id][head] = x;
+        mY[id][head] = y;
+        mHead[id] = head;
+        mCount[id] = Math.min(mCount[id] + 1, HISTORY);
+    }
+
+    private static float clamp(float velocity, float max) {
+        return Math.max(-max, Math.min(max, velocity));
+    }
+}
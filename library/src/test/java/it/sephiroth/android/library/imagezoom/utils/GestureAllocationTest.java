@@ -0,0 +1,111 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouch;
+import it.sephiroth.android.library.imagezoom.shadows.LooperExcludingAllocationCounter;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowAffineMatrix;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowDirectGestureDetector;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowDirectImageView;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowFrameChoreographer;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowMeasuredMessage;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowMeasuredMessageQueue;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowMultiTouchMotionEvent;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowPooledVelocityTracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Replays the recorded gestures in src/test/resources/traces and checks that, once warmed up, handling
+ * the touch events and stepping the animation frames does not allocate.<br />
+ * The result only holds for the test shadows: they do not allocate, like the framework classes they
+ * replace, where the stock Robolectric shadows allocate on every call. The allocations of the Robolectric
+ * message queue, used by the {@link android.view.GestureDetector} timeouts, are not counted.
+ * {@link GestureReplayTest} checks the behavior under the stock shadows.
+ */
+@RunWith (RobolectricTestRunner.class)
+@Config (manifest = Config.NONE, sdk = 25, shadows = {
+    ShadowAffineMatrix.class, ShadowDirectGestureDetector.class, ShadowDirectImageView.class, ShadowFrameChoreographer.class,
+    ShadowMeasuredMessage.class, ShadowMeasuredMessageQueue.class, ShadowMultiTouchMotionEvent.class,
+    ShadowPooledVelocityTracker.class
+})
+public class GestureAllocationTest {
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long FRAME_NANOS = 16666667L;
+    private static final int MAX_FRAMES = 600;
+    private static final int WARM_UP_RUNS = 5;
+
+    private ImageViewTouch mView;
+    private ShadowFrameChoreographer mChoreographer;
+
+    @Before
+    public void setUp() {
+        mView = new ImageViewTouch(RuntimeEnvironment.application, null);
+        mChoreographer = ShadowFrameChoreographer.get();
+    }
+
+    @Test
+    public void gesturesDoNotAllocate() throws IOException {
+        final AllocationCounter counter = new LooperExcludingAllocationCounter();
+        assumeTrue("bytes".equals(counter.getUnit()));
+
+        for (String name : new String[]{"pinch", "fling", "doubletap"}) {
+            final GestureTrace trace = GestureReplayTest.readTrace(name);
+            // warm up: the first runs load classes, create the lazily allocated objects, and the JIT compiles the methods
+            for (int i = 0; i < WARM_UP_RUNS; i++) {
+                replay(trace, AllocationCounter.create());
+                runFrames();
+                reset();
+            }
+
+            final GestureReplay.Result result = replay(trace, counter);
+            for (int i = 0; i < result.getEventCount(); i++) {
+                assertEquals(name + ": bytes allocated by event " + i + ", action " + trace.getAction(i), 0,
+                    result.getEventAllocations(i));
+            }
+
+            counter.start();
+            final long before = counter.getCount();
+            runFrames();
+            final long allocated = counter.getCount() - before;
+            counter.stop();
+            assertEquals(name + ": bytes allocated by the animation frames", 0, allocated);
+            reset();
+        }
+    }
+
+    private GestureReplay.Result replay(GestureTrace trace, AllocationCounter counter) {
+        GestureReplayTest.setUpView(mView, trace);
+        return GestureReplay.replay(mView, trace, counter);
+    }
+
+    // run the gesture detector timeouts, so that the next replay starts from an idle detector, and reset the image
+    private void reset() {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        mView.resetDisplay();
+    }
+
+    // step the animations started by the gestures
+    private void runFrames() {
+        long frameTime = SystemClock.uptimeMillis() * NANOS_PER_MILLI;
+        int frames = 0;
+        while (mChoreographer.hasFrameCallbacks()) {
+            assertTrue("the animation does not end", frames < MAX_FRAMES);
+            frameTime += FRAME_NANOS;
+            mChoreographer.doFrame(frameTime);
+            frames++;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package it.sephiroth.android.library.imagezoom.utils;
+
+import android.graphics.Bitmap;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import it.sephiroth.android.library.imagezoom.ImageViewTouch;
+import it.sephiroth.android.library.imagezoom.ImageViewTouchBase;
+import it.sephiroth.android.library.imagezoom.graphics.FastBitmapDrawable;
+import it.sephiroth.android.library.imagezoom.shadows.ShadowMultiTouchMotionEvent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Replays the recorded gestures in src/test/resources/traces and checks the final image matrix, the number
+ * of image matrix commits and the number of animation frames.<br />
+ * The stock Robolectric shadows are used, except for {@link MotionEvent}: the stock shadow cannot create the
+ * events of {@link GestureTrace#obtainEvent(int, long, long)}. The main looper is paused, so the animations
+ * started by the gestures only run when the test idles it. See {@link GestureAllocationTest} for the
+ * allocation check.
+ */
+@RunWith (RobolectricTestRunner.class)
+@Config (manifest = Config.NONE, sdk = 25, shadows = ShadowMultiTouchMotionEvent.class)
+public class GestureReplayTest {
+    private static final long FRAME_NANOS = 16666667L;
+    private static final float EPSILON = 0.01f;
+
+    private ImageViewTouch mView;
+    private final FrameCounter mFrameCounter = new FrameCounter();
+
+    @Before
+    public void setUp() {
+        ShadowLooper.pauseMainLooper();
+        // the frame times of the stock shadow start at 0, before the motions start at the current uptime,
+        // so the first frames of an animation do not move the image
+        ShadowChoreographer.setFrameInterval(FRAME_NANOS);
+        mView = new ImageViewTouch(RuntimeEnvironment.application, null);
+        mView.setOnMetricsListener(mFrameCounter);
+    }
+
+    @Test
+    public void pinch() throws IOException {
+        final GestureReplay.Result result = replay(readTrace("pinch"));
+
+        assertArrayEquals(new float[]{0.9612f, 0, -653.259f, 0, 0.9612f, 128.046f, 0, 0, 1}, result.getFinalMatrix(), EPSILON);
+        assertEquals(72, result.getTotalCommits());
+        assertEquals(0, runFrames());
+    }
+
+    @Test
+    public void fling() throws IOException {
+        replay(readTrace("fling"));
+
+        assertEquals(55, runFrames());
+        assertArrayEquals(new float[]{1.8021f, 0, -3245.09f, 0, 1.8021f, -1089.393f, 0, 0, 1}, getMatrix(), EPSILON);
+    }
+
+    @Test
+    public void doubleTap() throws IOException {
+        final GestureReplay.Result result = replay(readTrace("doubletap"));
+
+        assertArrayEquals(new float[]{0.45f, 0, 0, 0, 0.45f, 537, 0, 0, 1}, result.getFinalMatrix(), EPSILON);
+        assertEquals(19, runFrames());
+        assertArrayEquals(new float[]{2.45f, 0, -1333.334f, 0, 2.45f, -802.751f, 0, 0, 1}, getMatrix(), EPSILON);
+    }
+
+    private GestureReplay.Result replay(GestureTrace trace) {
+        setUpView(mView, trace);
+        return GestureReplay.replay(mView, trace);
+    }
+
+    // run the animations started by the gestures, and the gesture detector timeouts; returns the number of frames
+    private int runFrames() {
+        mFrameCounter.mFrames = 0;
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        return mFrameCounter.mFrames;
+    }
+
+    private float[] getMatrix() {
+        final float[] values = new float[9];
+        mView.getImageViewMatrix().getValues(values);
+        return values;
+    }
+
+    /**
+     * Lay out the view with the recorded viewport and assign it a drawable of the recorded size, if it has none
+     */
+    static void setUpView(ImageViewTouch view, GestureTrace trace) {
+        if (null == view.getDrawable()) {
+            // the drawable is applied at the first layout
+            view.measure(
+                View.MeasureSpec.makeMeasureSpec(trace.getViewWidth(), View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(trace.getViewHeight(), View.MeasureSpec.EXACTLY)
+            );
+            view.layout(0, 0, trace.getViewWidth(), trace.getViewHeight());
+            view.setImageDrawable(new FastBitmapDrawable(
+                Bitmap.createBitmap(trace.getDrawableWidth(), trace.getDrawableHeight(), Bitmap.Config.ARGB_8888)));
+        }
+    }
+
+    static GestureTrace readTrace(String name) throws IOException {
+        final InputStream stream = GestureReplayTest.class.getResourceAsStream("/traces/" + name + ".trace");
+        try {
+            return GestureTrace.read(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    // counts the frames of the completed animations
+    private static final class FrameCounter implements ImageViewTouchBase.OnMetricsListener {
+        int mFrames;
+
+        @Override
+        public void onFrameDrawn(ImageViewTouchBase.Gesture gesture, long drawNanos, long inputLatencyMs) {
+        }
+
+        @Override
+        public void onAnimationCompleted(ImageViewTouchBase.Gesture gesture, int frames, int droppedFrames) {
+            mFrames += frames;
+        }
+
+        @Override
+        public void onLayoutMeasured(long layoutNanos, boolean drawableChanged) {
+        }
+
+        @Override
+        public void onGestureCompleted(ImageViewTouchBase.Gesture gesture, long durationMs) {
+        }
+    }
+}